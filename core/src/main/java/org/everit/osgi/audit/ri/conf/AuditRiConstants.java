@@ -20,10 +20,102 @@ public final class AuditRiConstants {
 
     public static final String SERVICE_FACTORY_PID = "org.everit.osgi.audit.ri.conf.AuditComponent";
 
+    public static final String RETENTION_SERVICE_FACTORY_PID = "org.everit.osgi.audit.ri.conf.RetentionComponent";
+
     public static final String PROP_TRASACTION_HELPER = "transactionHelper.target";
 
     public static final String PROP_QUERYDSL_SUPPORT = "querydslSupport.target";
 
     public static final String PROP_RESOURCE_SERVICE = "resourceService.target";
 
+    public static final String PROP_EVENT_DATA_BATCH_SIZE = "eventDataBatchSize";
+
+    public static final int DEFAULT_EVENT_DATA_BATCH_SIZE = 100;
+
+    public static final String PROP_EVENT_BATCH_SIZE = "eventBatchSize";
+
+    public static final int DEFAULT_EVENT_BATCH_SIZE = 100;
+
+    public static final String PROP_BATCH_GENERATED_KEYS = "batchGeneratedKeys";
+
+    public static final boolean DEFAULT_BATCH_GENERATED_KEYS = true;
+
+    public static final String PROP_EVENT_TYPE_CACHE_SIZE = "eventTypeCacheSize";
+
+    public static final int DEFAULT_EVENT_TYPE_CACHE_SIZE = 10000;
+
+    public static final String PROP_EVENT_LOOKUP_CHUNK_SIZE = "eventLookupChunkSize";
+
+    public static final int DEFAULT_EVENT_LOOKUP_CHUNK_SIZE = 500;
+
+    public static final String PROP_FIELD_CATALOG_TTL = "fieldCatalogTtl";
+
+    public static final int DEFAULT_FIELD_CATALOG_TTL = 60;
+
+    public static final String PROP_RESOURCE_ID_BLOCK_SIZE = "resourceIdBlockSize";
+
+    public static final int DEFAULT_RESOURCE_ID_BLOCK_SIZE = 0;
+
+    public static final String PROP_ASYNC_ENABLED = "asyncEnabled";
+
+    public static final boolean DEFAULT_ASYNC_ENABLED = false;
+
+    public static final String PROP_ASYNC_QUEUE_SIZE = "asyncQueueSize";
+
+    public static final int DEFAULT_ASYNC_QUEUE_SIZE = 10000;
+
+    public static final String PROP_ASYNC_FLUSH_INTERVAL = "asyncFlushInterval";
+
+    public static final int DEFAULT_ASYNC_FLUSH_INTERVAL = 200;
+
+    public static final String PROP_ASYNC_MAX_BATCH = "asyncMaxBatch";
+
+    public static final int DEFAULT_ASYNC_MAX_BATCH = 500;
+
+    public static final String PROP_ASYNC_BACKPRESSURE_POLICY = "asyncBackpressurePolicy";
+
+    public static final String DEFAULT_ASYNC_BACKPRESSURE_POLICY = "BLOCK";
+
+    public static final String PROP_ARCHIVE_DIRECTORY = "archiveDirectory";
+
+    public static final String DEFAULT_ARCHIVE_DIRECTORY = "";
+
+    public static final String PROP_ARCHIVE_SEGMENT_SIZE = "archiveSegmentSize";
+
+    public static final int DEFAULT_ARCHIVE_SEGMENT_SIZE = 1000;
+
+    public static final String PROP_SLOW_QUERY_THRESHOLD = "slowQueryThreshold";
+
+    public static final int DEFAULT_SLOW_QUERY_THRESHOLD = 0;
+
+    public static final String PROP_SLOW_QUERY_LOG_SIZE = "slowQueryLogSize";
+
+    public static final int DEFAULT_SLOW_QUERY_LOG_SIZE = 100;
+
+    public static final String PROP_SLOW_QUERY_EXPLAIN = "slowQueryExplain";
+
+    public static final boolean DEFAULT_SLOW_QUERY_EXPLAIN = false;
+
+    public static final String PROP_SLOW_QUERY_BINDINGS = "slowQueryBindings";
+
+    public static final boolean DEFAULT_SLOW_QUERY_BINDINGS = false;
+
+    public static final String PROP_HALF_OPEN_SAVE_TIMESTAMP_RANGE = "halfOpenSaveTimestampRange";
+
+    public static final boolean DEFAULT_HALF_OPEN_SAVE_TIMESTAMP_RANGE = false;
+
+    public static final String PROP_RETENTION_RULES = "retentionRules";
+
+    public static final String PROP_PURGE_CHUNK_SIZE = "purgeChunkSize";
+
+    public static final int DEFAULT_PURGE_CHUNK_SIZE = 1000;
+
+    public static final String PROP_PURGE_CHUNK_PAUSE = "purgeChunkPause";
+
+    public static final int DEFAULT_PURGE_CHUNK_PAUSE = 100;
+
+    public static final String PROP_PURGE_INTERVAL = "purgeInterval";
+
+    public static final int DEFAULT_PURGE_INTERVAL = 0;
+
 }
@@ -0,0 +1,39 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.conf;
+
+/**
+ * The possible behaviors of the asynchronous audit event writer when its queue is full.
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * The caller thread waits until there is free space in the queue.
+     */
+    BLOCK,
+
+    /**
+     * The event is discarded and the counter of dropped events is incremented.
+     */
+    DROP,
+
+    /**
+     * The event is persisted synchronously on the caller thread.
+     */
+    CALLER_RUNS
+
+}
@@ -0,0 +1,77 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The counters of an {@link AuditArchiveService#archiveEventsBefore(java.time.Instant)} call.
+ */
+public class ArchiveReport {
+
+    private final long eventCount;
+
+    private final long eventDataCount;
+
+    private final int segmentCount;
+
+    private final long elapsedNanos;
+
+    public ArchiveReport(final long eventCount, final long eventDataCount, final int segmentCount,
+            final long elapsedNanos) {
+        this.eventCount = eventCount;
+        this.eventDataCount = eventDataCount;
+        this.segmentCount = segmentCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * The number of events moved to the archive.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * The number of <code>event_data</code> rows moved to the archive.
+     */
+    public long getEventDataCount() {
+        return eventDataCount;
+    }
+
+    /**
+     * The number of segment files written.
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ArchiveReport [eventCount=" + eventCount + ", eventDataCount=" + eventDataCount + ", segmentCount="
+                + segmentCount + ", elapsedMillis=" + getElapsedMillis() + "]";
+    }
+
+}
@@ -0,0 +1,56 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.time.Instant;
+
+/**
+ * Moves old audit events from the database to compressed segment files in the configured archive directory. The
+ * archived events remain searchable: the event searches read the segments whose time range overlaps the searched
+ * range, after the events of the database.
+ */
+public interface AuditArchiveService {
+
+    /**
+     * Moves the events saved before the given instant to the archive. Each segment is written and its events are
+     * deleted from the database in one transaction, so an event is either in the database or in the archive.
+     *
+     * @param before
+     *            the events saved before this instant are archived, cannot be <code>null</code>.
+     * @return the counters of the run, never <code>null</code>.
+     * @throws NullPointerException
+     *             if <code>before</code> is <code>null</code>.
+     * @throws IllegalStateException
+     *             if no archive directory is configured.
+     */
+    ArchiveReport archiveEventsBefore(Instant before);
+
+    /**
+     * Deletes the archive segments that contain only events saved before the given instant. A whole segment is
+     * deleted at once, which is much cheaper than deleting the same events from the database.
+     *
+     * @param before
+     *            the segments with all events saved before this instant are deleted, cannot be <code>null</code>.
+     * @return the number of deleted events.
+     * @throws NullPointerException
+     *             if <code>before</code> is <code>null</code>.
+     * @throws IllegalStateException
+     *             if no archive directory is configured.
+     */
+    long deleteArchivedEventsBefore(Instant before);
+
+}
@@ -0,0 +1,57 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+/**
+ * Management of the caches of the audit component.
+ */
+public interface AuditCacheService {
+
+    /**
+     * The counters of the event type cache used by logging and event type lookups.
+     */
+    CacheStatistics getEventTypeCacheStatistics();
+
+    /**
+     * Removes every entry from the event type cache.
+     */
+    void invalidateAllEventTypes();
+
+    /**
+     * Removes one event type from the event type cache.
+     *
+     * @throws NullPointerException
+     *             if <code>applicationName</code> or <code>eventTypeName</code> is <code>null</code>.
+     */
+    void invalidateEventType(String applicationName, String eventTypeName);
+
+    /**
+     * Removes all event types of an application from the event type cache.
+     *
+     * @throws NullPointerException
+     *             if <code>applicationName</code> is <code>null</code>.
+     */
+    void invalidateEventTypes(String applicationName);
+
+    /**
+     * Removes every entry from the catalog of the event data names and types used by
+     * <code>getResultFieldsWithTypes</code> and the searches. The catalog is reloaded from the database on demand.
+     * Useful after events were deleted directly in the database.
+     */
+    void invalidateFieldCatalog();
+
+}
@@ -0,0 +1,215 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+/**
+ * A snapshot of the counters of the audit component, collected since the component was activated or the metrics were
+ * last reset.
+ */
+public class AuditMetrics {
+
+    private final long elapsedNanos;
+
+    private final long logEventCount;
+
+    private final LatencyHistogram logEventLatency;
+
+    private final long eventDataRowCount;
+
+    private final long searchCount;
+
+    private final long queryBuildNanos;
+
+    private final long queryExecutionNanos;
+
+    private final long mappingNanos;
+
+    private final long rowsRead;
+
+    private final long eventsReturned;
+
+    private final CacheStatistics eventTypeCacheStatistics;
+
+    private final int queuedEventCount;
+
+    private final long droppedEventCount;
+
+    private final long fieldCatalogHitCount;
+
+    private final long fieldCatalogLoadCount;
+
+    /**
+     * Constructor.
+     *
+     * @param elapsedNanos
+     *            the length of the measured period.
+     * @param logEventCount
+     *            the number of the logged events.
+     * @param logEventLatency
+     *            the latencies of the <code>logEvent</code> calls.
+     * @param eventDataRowCount
+     *            the number of the <code>event_data</code> rows written for the logged events.
+     * @param searchCount
+     *            the number of the event searches.
+     * @param queryBuildNanos
+     *            the time spent building the search queries.
+     * @param queryExecutionNanos
+     *            the time spent executing the search queries and reading their result rows.
+     * @param mappingNanos
+     *            the time spent mapping the result rows to events.
+     * @param rowsRead
+     *            the number of the result rows read by the searches.
+     * @param eventsReturned
+     *            the number of the events returned by the searches.
+     * @param eventTypeCacheStatistics
+     *            the counters of the event type cache.
+     * @param queuedEventCount
+     *            the number of the events waiting in the queue of the asynchronous writer when the snapshot was taken.
+     * @param droppedEventCount
+     *            the number of the events dropped by the asynchronous writer because its queue was full.
+     * @param fieldCatalogHitCount
+     *            the number of the event types whose fields were served from the field catalog.
+     * @param fieldCatalogLoadCount
+     *            the number of the event types whose fields were scanned from the database by the field catalog.
+     */
+    public AuditMetrics(final long elapsedNanos, final long logEventCount, final LatencyHistogram logEventLatency,
+            final long eventDataRowCount, final long searchCount, final long queryBuildNanos,
+            final long queryExecutionNanos, final long mappingNanos, final long rowsRead, final long eventsReturned,
+            final CacheStatistics eventTypeCacheStatistics, final int queuedEventCount,
+            final long droppedEventCount, final long fieldCatalogHitCount, final long fieldCatalogLoadCount) {
+        this.elapsedNanos = elapsedNanos;
+        this.logEventCount = logEventCount;
+        this.logEventLatency = logEventLatency;
+        this.eventDataRowCount = eventDataRowCount;
+        this.searchCount = searchCount;
+        this.queryBuildNanos = queryBuildNanos;
+        this.queryExecutionNanos = queryExecutionNanos;
+        this.mappingNanos = mappingNanos;
+        this.rowsRead = rowsRead;
+        this.eventsReturned = eventsReturned;
+        this.eventTypeCacheStatistics = eventTypeCacheStatistics;
+        this.queuedEventCount = queuedEventCount;
+        this.droppedEventCount = droppedEventCount;
+        this.fieldCatalogHitCount = fieldCatalogHitCount;
+        this.fieldCatalogLoadCount = fieldCatalogLoadCount;
+    }
+
+    public long getDroppedEventCount() {
+        return droppedEventCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getEventDataRowCount() {
+        return eventDataRowCount;
+    }
+
+    /**
+     * The average number of <code>event_data</code> rows written per logged event, <code>0</code> if no event was
+     * logged yet.
+     */
+    public double getEventDataRowsPerEvent() {
+        if (logEventCount == 0) {
+            return 0;
+        }
+        return (double) eventDataRowCount / logEventCount;
+    }
+
+    /**
+     * The average number of logged events per second over the measured period.
+     */
+    public double getEventsPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return logEventCount * 1e9 / elapsedNanos;
+    }
+
+    public long getEventsReturned() {
+        return eventsReturned;
+    }
+
+    public CacheStatistics getEventTypeCacheStatistics() {
+        return eventTypeCacheStatistics;
+    }
+
+    public long getFieldCatalogHitCount() {
+        return fieldCatalogHitCount;
+    }
+
+    public long getFieldCatalogLoadCount() {
+        return fieldCatalogLoadCount;
+    }
+
+    public long getLogEventCount() {
+        return logEventCount;
+    }
+
+    public LatencyHistogram getLogEventLatency() {
+        return logEventLatency;
+    }
+
+    public long getMappingNanos() {
+        return mappingNanos;
+    }
+
+    public int getQueuedEventCount() {
+        return queuedEventCount;
+    }
+
+    public long getQueryBuildNanos() {
+        return queryBuildNanos;
+    }
+
+    public long getQueryExecutionNanos() {
+        return queryExecutionNanos;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * The average number of result rows read per returned event, <code>0</code> if no event was returned yet. The
+     * searches read one row per event data, so a high value means many event data per event.
+     */
+    public double getRowsReadPerReturnedEvent() {
+        if (eventsReturned == 0) {
+            return 0;
+        }
+        return (double) rowsRead / eventsReturned;
+    }
+
+    public long getSearchCount() {
+        return searchCount;
+    }
+
+    @Override
+    public String toString() {
+        return "AuditMetrics [elapsedNanos=" + elapsedNanos + ", logEventCount=" + logEventCount
+                + ", logEventLatency=" + logEventLatency + ", eventDataRowCount=" + eventDataRowCount
+                + ", searchCount=" + searchCount + ", queryBuildNanos=" + queryBuildNanos
+                + ", queryExecutionNanos=" + queryExecutionNanos + ", mappingNanos=" + mappingNanos
+                + ", rowsRead=" + rowsRead + ", eventsReturned=" + eventsReturned
+                + ", eventTypeCacheStatistics=" + eventTypeCacheStatistics + ", queuedEventCount=" + queuedEventCount
+                + ", droppedEventCount=" + droppedEventCount + ", fieldCatalogHitCount=" + fieldCatalogHitCount
+                + ", fieldCatalogLoadCount=" + fieldCatalogLoadCount + "]";
+    }
+
+}
@@ -0,0 +1,35 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+/**
+ * Read access to the performance counters of the audit component.
+ */
+public interface AuditMetricsService {
+
+    /**
+     * Returns a snapshot of the counters. The counters are updated without locking, so a snapshot taken while events
+     * are logged may be slightly inconsistent.
+     */
+    AuditMetrics getMetrics();
+
+    /**
+     * Sets all counters to zero and starts a new measured period.
+     */
+    void resetMetrics();
+
+}
@@ -0,0 +1,139 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.conf.search.api.DataFilter;
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+
+/**
+ * Event search methods complementing the offset-based <code>findEvents</code> of the audit service.
+ */
+public interface AuditSearchService {
+
+    /**
+     * Returns one page of the events matching the criteria, ordered by save timestamp descending, then by id
+     * ascending. Instead of an offset, the page is positioned by the cursor of the previous page, so the database
+     * seeks directly to the first row of the page and deep pages cost the same as the first one. BINARY event data
+     * stored in the database is returned without content, see {@link BinaryEventDataService}.
+     *
+     * @param selectedAppIds
+     *            the ids of the applications to search in, cannot be <code>null</code>.
+     * @param selectedEventTypeIds
+     *            the ids of the event types to search for, <code>null</code> means all event types.
+     * @param dataFields
+     *            the names of the event data to load, <code>null</code> means all.
+     * @param dataFilters
+     *            the filters on event data, can be <code>null</code>.
+     * @param eventsFrom
+     *            the lower bound of the save timestamp, can be <code>null</code>.
+     * @param eventsTo
+     *            the upper bound of the save timestamp, can be <code>null</code>.
+     * @param after
+     *            the cursor returned with the previous page, <code>null</code> to get the first page.
+     * @param limit
+     *            the maximum number of events on the page.
+     * @return the page, never <code>null</code>.
+     */
+    EventPage findEvents(Long[] selectedAppIds, Long[] selectedEventTypeIds,
+            List<String> dataFields, List<DataFilter> dataFilters,
+            Instant eventsFrom, Instant eventsTo,
+            EventCursor after, long limit);
+
+    /**
+     * Returns the events matching the criteria with the given event data in the order of {@link #findEvents}, the
+     * result is computed with one database row per event instead of one row per event data. This makes table-like
+     * searches of many events with a few known fields cheaper.
+     *
+     * @param dataFields
+     *            the names and types of the event data to load, cannot be empty. Only NUMBER, STRING and TIMESTAMP
+     *            event data are supported. An event data with the same name but another type is not loaded.
+     * @param offset
+     *            the number of events to skip.
+     * @param limit
+     *            the maximum number of events to return.
+     * @return the events, never <code>null</code>.
+     * @throws IllegalArgumentException
+     *             if <code>dataFields</code> is empty or contains an unsupported type.
+     * @see #findEvents(Long[], Long[], List, List, Instant, Instant, EventCursor, long)
+     */
+    List<EventUi> findEventsPivoted(Long[] selectedAppIds, Long[] selectedEventTypeIds,
+            Map<String, EventDataType> dataFields, List<DataFilter> dataFilters,
+            Instant eventsFrom, Instant eventsTo,
+            long offset, long limit);
+
+    /**
+     * Loads many events by their ids like <code>AuditService.getEventById</code>, but with one query per chunk of
+     * ids instead of one query per event. The ids not found in the database are looked up in the archive.
+     *
+     * @param eventIds
+     *            the ids of the events, cannot be <code>null</code>.
+     * @param dataFields
+     *            the names of the event data to load, none means all.
+     * @return the events in the order of <code>eventIds</code>, with <code>null</code> at the position of the ids
+     *         that do not exist.
+     * @throws NullPointerException
+     *             if <code>eventIds</code> is <code>null</code>.
+     */
+    List<EventUi> getEventsByIds(long[] eventIds, String... dataFields);
+
+    /**
+     * Passes every event matching the criteria to the consumer in the order of {@link #findEvents}. The result is
+     * read from an open database cursor and only one event is kept in memory at a time, so the memory usage does not
+     * depend on the size of the result. Some drivers, e.g. the one of PostgreSQL, use a cursor only inside a
+     * transaction, so the search runs in a transaction, joining the one of the caller if there is one. The consumer is
+     * called on the caller thread inside that transaction while the database connection is in use, so it should not
+     * block for long, and an exception thrown by the consumer rolls back a transaction started by the search. BINARY
+     * event data stored in the database is passed without content,
+     * see {@link BinaryEventDataService}.
+     *
+     * @param fetchSize
+     *            the JDBC fetch size hint, <code>0</code> to use the default of the driver.
+     * @param consumer
+     *            receives the events, cannot be <code>null</code>.
+     * @return the number of events passed to the consumer.
+     * @see #findEvents(Long[], Long[], List, List, Instant, Instant, EventCursor, long)
+     */
+    long streamEvents(Long[] selectedAppIds, Long[] selectedEventTypeIds,
+            List<String> dataFields, List<DataFilter> dataFilters,
+            Instant eventsFrom, Instant eventsTo,
+            int fetchSize, Consumer<EventUi> consumer);
+
+    /**
+     * Counts the events matching the same criteria as {@link #findEvents}, grouped by application and event type, in
+     * a single aggregate query.
+     *
+     * @param maxCountedEvents
+     *            the maximum number of events to count, <code>0</code> counts all matching events. On very large
+     *            ranges a positive value bounds the cost of the query and the result is flagged as approximate if
+     *            more events match.
+     * @return the counts, never <code>null</code>.
+     * @throws IllegalArgumentException
+     *             if <code>maxCountedEvents</code> is negative.
+     * @see #findEvents(Long[], Long[], List, List, Instant, Instant, EventCursor, long)
+     */
+    EventCounts countEvents(Long[] selectedAppIds, Long[] selectedEventTypeIds,
+            List<DataFilter> dataFilters,
+            Instant eventsFrom, Instant eventsTo,
+            long maxCountedEvents);
+
+}
@@ -0,0 +1,62 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.everit.osgi.audit.dto.AuditEvent;
+
+/**
+ * Access to the content of BINARY event data. The searches of {@link AuditSearchService} return BINARY event data
+ * without content, the content is read on demand with this service. Large binary content can also be written from streams, without holding it in
+ * memory.
+ */
+public interface BinaryEventDataService {
+
+    /**
+     * Persists the event synchronously, with additional BINARY event data read from the streams. The content of the
+     * streams is passed to the JDBC driver as it is, it is not copied to the heap by the audit component. The streams
+     * are not closed.
+     *
+     * @param event
+     *            the event, cannot be <code>null</code>.
+     * @param binaryData
+     *            the streams of the additional BINARY event data by the name of the event data, cannot be
+     *            <code>null</code>.
+     * @throws IllegalArgumentException
+     *             if the application of the event does not exist.
+     */
+    void logEvent(AuditEvent event, Map<String, InputStream> binaryData);
+
+    /**
+     * Streams the content of a BINARY event data to the reader. The stream is read directly from the database, or
+     * from the archive if the event has been archived, and is valid only until the reader returns.
+     *
+     * @param eventId
+     *            the id of the event.
+     * @param dataName
+     *            the name of the event data, cannot be <code>null</code>.
+     * @param reader
+     *            processes the content, cannot be <code>null</code>.
+     * @return the value returned by the reader, or <code>null</code> if the event has no BINARY event data with the
+     *         given name (the reader is not called in that case).
+     */
+    <R> R readBinaryData(long eventId, String dataName, Function<InputStream, R> reader);
+
+}
@@ -0,0 +1,43 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.util.Collection;
+
+import org.everit.osgi.audit.dto.AuditEvent;
+
+/**
+ * Write path for persisting large amounts of audit events, e.g. when importing or replaying an audit log.
+ */
+public interface BulkAuditService {
+
+    /**
+     * Persists all events in one transaction. The event types are resolved (and created if necessary) once per
+     * distinct application and event type name pair, the <code>event</code> and <code>event_data</code> rows are
+     * inserted in JDBC batches.
+     *
+     * @param events
+     *            the events to persist, cannot be <code>null</code>.
+     * @return the counters of the run.
+     * @throws NullPointerException
+     *             if <code>events</code> is <code>null</code>.
+     * @throws IllegalArgumentException
+     *             if the application of one of the events does not exist.
+     */
+    BulkLogResult logEvents(Collection<AuditEvent> events);
+
+}
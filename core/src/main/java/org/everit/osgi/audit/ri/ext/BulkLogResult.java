@@ -0,0 +1,88 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The counters of a {@link BulkAuditService#logEvents(java.util.Collection)} call.
+ */
+public class BulkLogResult {
+
+    private final long eventCount;
+
+    private final long eventDataCount;
+
+    private final int eventTypeCount;
+
+    private final long elapsedNanos;
+
+    public BulkLogResult(final long eventCount, final long eventDataCount, final int eventTypeCount,
+            final long elapsedNanos) {
+        this.eventCount = eventCount;
+        this.eventDataCount = eventDataCount;
+        this.eventTypeCount = eventTypeCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * The number of persisted events.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * The number of persisted <code>event_data</code> rows.
+     */
+    public long getEventDataCount() {
+        return eventDataCount;
+    }
+
+    /**
+     * The throughput of the call.
+     */
+    public double getEventsPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return (eventCount * (double) TimeUnit.SECONDS.toNanos(1)) / elapsedNanos;
+    }
+
+    /**
+     * The number of distinct event types the events belong to.
+     */
+    public int getEventTypeCount() {
+        return eventTypeCount;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkLogResult [eventCount=" + eventCount + ", eventDataCount=" + eventDataCount + ", eventTypeCount="
+                + eventTypeCount + ", elapsedMillis=" + getElapsedMillis() + ", eventsPerSecond="
+                + getEventsPerSecond() + "]";
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The number of events matching a search, broken down by application and by event type.
+ */
+public class EventCounts {
+
+    private final long totalCount;
+
+    private final Map<Long, Long> countsByApplicationId;
+
+    private final Map<Long, Long> countsByEventTypeId;
+
+    private final boolean approximate;
+
+    public EventCounts(final long totalCount, final Map<Long, Long> countsByApplicationId,
+            final Map<Long, Long> countsByEventTypeId, final boolean approximate) {
+        this.totalCount = totalCount;
+        this.countsByApplicationId = Collections.unmodifiableMap(countsByApplicationId);
+        this.countsByEventTypeId = Collections.unmodifiableMap(countsByEventTypeId);
+        this.approximate = approximate;
+    }
+
+    /**
+     * The number of matching events per application id. Applications without matching events are not present.
+     */
+    public Map<Long, Long> getCountsByApplicationId() {
+        return countsByApplicationId;
+    }
+
+    /**
+     * The number of matching events per event type id. Event types without matching events are not present.
+     */
+    public Map<Long, Long> getCountsByEventTypeId() {
+        return countsByEventTypeId;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * <code>true</code> if more events match than the requested maximum. The total count is the maximum then, and
+     * the counts of the breakdown are lower bounds of the real counts.
+     */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position in the result of a keyset-paginated event search: the save timestamp and the id of the last event of a
+ * page. Events are ordered by save timestamp descending, then by id ascending, so the next page starts with the
+ * first event after this position in that order.
+ * <p>
+ * The cursor can be passed around as an opaque string with {@link #toToken()} and {@link #fromToken(String)}.
+ */
+public final class EventCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String TOKEN_VERSION = "1";
+
+    private static final String TOKEN_SEPARATOR = ":";
+
+    /**
+     * Parses a token created by {@link #toToken()}.
+     *
+     * @throws NullPointerException
+     *             if <code>token</code> is <code>null</code>.
+     * @throws IllegalArgumentException
+     *             if <code>token</code> is not a valid cursor token.
+     */
+    public static EventCursor fromToken(final String token) {
+        Objects.requireNonNull(token, "token cannot be null");
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(TOKEN_SEPARATOR);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor token: " + token, e);
+        }
+        if ((parts.length != 4) || !TOKEN_VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("invalid cursor token: " + token);
+        }
+        try {
+            return new EventCursor(Instant.ofEpochSecond(Long.parseLong(parts[1]), Integer.parseInt(parts[2])),
+                    Long.parseLong(parts[3]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor token: " + token, e);
+        }
+    }
+
+    private final Instant saveTimestamp;
+
+    private final long eventId;
+
+    public EventCursor(final Instant saveTimestamp, final long eventId) {
+        this.saveTimestamp = Objects.requireNonNull(saveTimestamp, "saveTimestamp cannot be null");
+        this.eventId = eventId;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof EventCursor)) {
+            return false;
+        }
+        EventCursor other = (EventCursor) obj;
+        return (eventId == other.eventId) && saveTimestamp.equals(other.saveTimestamp);
+    }
+
+    public long getEventId() {
+        return eventId;
+    }
+
+    public Instant getSaveTimestamp() {
+        return saveTimestamp;
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * saveTimestamp.hashCode()) + Long.hashCode(eventId);
+    }
+
+    /**
+     * Encodes the cursor into a URL-safe string.
+     */
+    public String toToken() {
+        String plain = TOKEN_VERSION + TOKEN_SEPARATOR + saveTimestamp.getEpochSecond() + TOKEN_SEPARATOR
+                + saveTimestamp.getNano() + TOKEN_SEPARATOR + eventId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        return "EventCursor [saveTimestamp=" + saveTimestamp + ", eventId=" + eventId + "]";
+    }
+
+}
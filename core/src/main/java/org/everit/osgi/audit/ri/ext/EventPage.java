@@ -0,0 +1,52 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.util.List;
+
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+
+/**
+ * One page of a keyset-paginated event search.
+ */
+public class EventPage {
+
+    private final List<EventUi> events;
+
+    private final EventCursor nextCursor;
+
+    public EventPage(final List<EventUi> events, final EventCursor nextCursor) {
+        this.events = events;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<EventUi> getEvents() {
+        return events;
+    }
+
+    /**
+     * The cursor to pass to get the next page, <code>null</code> if this is the last page.
+     */
+    public EventCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+}
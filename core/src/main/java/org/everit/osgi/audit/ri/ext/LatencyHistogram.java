@@ -0,0 +1,95 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of a latency histogram with power of two buckets. The bucket <code>i</code> counts the latencies from
+ * <code>2^i</code> (inclusive) to <code>2^(i+1)</code> (exclusive) microseconds, the bucket <code>0</code> also counts
+ * the latencies under one microsecond.
+ */
+public class LatencyHistogram {
+
+    private final long[] bucketCounts;
+
+    private final long totalNanos;
+
+    private final long count;
+
+    public LatencyHistogram(final long[] bucketCounts, final long totalNanos) {
+        this.bucketCounts = bucketCounts.clone();
+        this.totalNanos = totalNanos;
+        this.count = Arrays.stream(bucketCounts).sum();
+    }
+
+    public long[] getBucketCounts() {
+        return bucketCounts.clone();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The average latency in nanoseconds, <code>0</code> if nothing was recorded yet.
+     */
+    public long getMeanNanos() {
+        if (count == 0) {
+            return 0;
+        }
+        return totalNanos / count;
+    }
+
+    /**
+     * An estimate of a percentile of the latencies: the exclusive upper bound of the bucket that contains the
+     * percentile, in nanoseconds. <code>0</code> if nothing was recorded yet.
+     *
+     * @param percentile
+     *            the percentile between <code>0</code> and <code>100</code>.
+     * @throws IllegalArgumentException
+     *             if <code>percentile</code> is out of range.
+     */
+    public long getPercentileNanos(final double percentile) {
+        if ((percentile < 0) || (percentile > 100)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100, got: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil((percentile / 100) * count);
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if ((seen >= rank) && (seen > 0)) {
+                return (1L << (i + 1)) * 1000;
+            }
+        }
+        return (1L << bucketCounts.length) * 1000;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram [count=" + count + ", meanNanos=" + getMeanNanos() + ", p50Nanos="
+                + getPercentileNanos(50) + ", p99Nanos=" + getPercentileNanos(99) + "]";
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The counters of one run of the {@link AuditRetentionService}.
+ */
+public class PurgeReport {
+
+    private final long eventCount;
+
+    private final long eventDataCount;
+
+    private final int chunkCount;
+
+    private final long elapsedNanos;
+
+    public PurgeReport(final long eventCount, final long eventDataCount, final int chunkCount,
+            final long elapsedNanos) {
+        this.eventCount = eventCount;
+        this.eventDataCount = eventDataCount;
+        this.chunkCount = chunkCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * The number of committed delete transactions.
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * The time spent by the run, including the pauses between the chunks.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * The number of deleted <code>event</code> rows.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * The number of deleted <code>event_data</code> rows.
+     */
+    public long getEventDataCount() {
+        return eventDataCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PurgeReport [eventCount=" + eventCount + ", eventDataCount=" + eventDataCount + ", chunkCount="
+                + chunkCount + ", elapsedMillis=" + getElapsedMillis() + "]";
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A query of the audit component that took longer than the configured threshold.
+ */
+public class SlowQuery {
+
+    private final Instant timestamp;
+
+    private final String operation;
+
+    private final String sql;
+
+    private final List<Object> bindings;
+
+    private final long rowCount;
+
+    private final long eventCount;
+
+    private final long buildNanos;
+
+    private final long executionNanos;
+
+    private final long mappingNanos;
+
+    private final String explainPlan;
+
+    /**
+     * Constructor.
+     *
+     * @param timestamp
+     *            when the query finished.
+     * @param operation
+     *            the name of the service method that ran the query.
+     * @param sql
+     *            the SQL of the query, <code>null</code> if the operation ran more than one query.
+     * @param bindings
+     *            the values bound to the parameters of the SQL, masked unless the logging of the bindings is
+     *            enabled.
+     * @param rowCount
+     *            the number of the result rows.
+     * @param eventCount
+     *            the number of the returned events, or other result objects.
+     * @param buildNanos
+     *            the time spent building the query.
+     * @param executionNanos
+     *            the time spent executing the query and reading the result rows.
+     * @param mappingNanos
+     *            the time spent mapping the result rows.
+     * @param explainPlan
+     *            the plan of the query reported by the database, <code>null</code> if not captured.
+     */
+    public SlowQuery(final Instant timestamp, final String operation, final String sql, final List<Object> bindings,
+            final long rowCount, final long eventCount, final long buildNanos, final long executionNanos,
+            final long mappingNanos, final String explainPlan) {
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.sql = sql;
+        this.bindings = Collections.unmodifiableList(new ArrayList<>(bindings));
+        this.rowCount = rowCount;
+        this.eventCount = eventCount;
+        this.buildNanos = buildNanos;
+        this.executionNanos = executionNanos;
+        this.mappingNanos = mappingNanos;
+        this.explainPlan = explainPlan;
+    }
+
+    public List<Object> getBindings() {
+        return bindings;
+    }
+
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    public long getElapsedNanos() {
+        return buildNanos + executionNanos + mappingNanos;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public long getExecutionNanos() {
+        return executionNanos;
+    }
+
+    public String getExplainPlan() {
+        return explainPlan;
+    }
+
+    public long getMappingNanos() {
+        return mappingNanos;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQuery [timestamp=" + timestamp + ", operation=" + operation + ", elapsedNanos="
+                + getElapsedNanos() + ", rowCount=" + rowCount + ", eventCount=" + eventCount + ", sql=" + sql
+                + ", bindings=" + bindings + "]";
+    }
+
+}
@@ -0,0 +1,37 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.ext;
+
+import java.util.List;
+
+/**
+ * Access to the queries of the audit component that took longer than the configured threshold. Only the most recent
+ * slow queries are kept, the oldest ones are dropped when the log is full.
+ */
+public interface SlowQueryService {
+
+    /**
+     * Removes all entries from the slow query log.
+     */
+    void clearSlowQueries();
+
+    /**
+     * Returns the slow queries in the log, the most recent first.
+     */
+    List<SlowQuery> getSlowQueries();
+
+}
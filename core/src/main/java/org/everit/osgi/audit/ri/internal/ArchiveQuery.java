@@ -0,0 +1,170 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.conf.search.api.DataFilter;
+import org.everit.osgi.audit.ri.ext.EventCursor;
+
+/**
+ * The criteria of an event search evaluated on the archive segments, with the same meaning as in
+ * {@link ComplexEventLoader}.
+ */
+public class ArchiveQuery {
+
+    private final Set<Long> selectedAppIds;
+
+    private final Set<Long> selectedEventTypeIds;
+
+    private final Set<String> dataFields;
+
+    private final Map<String, EventDataType> dataFieldTypes;
+
+    private final List<DataFilter> dataFilters;
+
+    private final Instant eventsFrom;
+
+    private final Instant eventsTo;
+
+    private final EventCursor after;
+
+    private boolean halfOpenSaveTimestampRange;
+
+    public ArchiveQuery(final Long[] selectedAppIds, final Long[] selectedEventTypeIds,
+            final List<String> dataFields, final List<DataFilter> dataFilters,
+            final Instant eventsFrom, final Instant eventsTo, final EventCursor after) {
+        this(selectedAppIds, selectedEventTypeIds, dataFields, null, dataFilters, eventsFrom, eventsTo, after);
+    }
+
+    /**
+     * Creates the query of a pivoted search, which loads an event data only if it has the requested type.
+     *
+     * @param dataFieldTypes
+     *            the names and types of the event data to load, cannot be <code>null</code>.
+     */
+    public ArchiveQuery(final Long[] selectedAppIds, final Long[] selectedEventTypeIds,
+            final Map<String, EventDataType> dataFieldTypes, final List<DataFilter> dataFilters,
+            final Instant eventsFrom, final Instant eventsTo, final EventCursor after) {
+        this(selectedAppIds, selectedEventTypeIds, new ArrayList<>(dataFieldTypes.keySet()), dataFieldTypes,
+                dataFilters, eventsFrom, eventsTo, after);
+    }
+
+    private ArchiveQuery(final Long[] selectedAppIds, final Long[] selectedEventTypeIds,
+            final List<String> dataFields, final Map<String, EventDataType> dataFieldTypes,
+            final List<DataFilter> dataFilters,
+            final Instant eventsFrom, final Instant eventsTo, final EventCursor after) {
+        this.dataFieldTypes = dataFieldTypes;
+        this.selectedAppIds = new HashSet<>(Arrays.asList(
+                Objects.requireNonNull(selectedAppIds, "selectedAppIds cannot be null")));
+        this.selectedEventTypeIds = selectedEventTypeIds == null ? null
+                : new HashSet<>(Arrays.asList(selectedEventTypeIds));
+        this.dataFields = dataFields == null ? null : new HashSet<>(dataFields);
+        this.dataFilters = dataFilters == null ? Collections.emptyList() : dataFilters;
+        this.eventsFrom = eventsFrom;
+        this.eventsTo = eventsTo;
+        this.after = after;
+    }
+
+    public EventCursor getAfter() {
+        return after;
+    }
+
+    public List<DataFilter> getDataFilters() {
+        return dataFilters;
+    }
+
+    public Instant getEventsFrom() {
+        return eventsFrom;
+    }
+
+    public Instant getEventsTo() {
+        return eventsTo;
+    }
+
+    public boolean isSelectedApplication(final long applicationId) {
+        return selectedAppIds.contains(applicationId);
+    }
+
+    /**
+     * Returns whether an event data with the given name and type is loaded.
+     */
+    public boolean isSelectedDataField(final String name, final EventDataType type) {
+        if (dataFieldTypes != null) {
+            return type == dataFieldTypes.get(name);
+        }
+        return (dataFields == null) || dataFields.contains(name);
+    }
+
+    public boolean isSelectedEventType(final long eventTypeId) {
+        return (selectedEventTypeIds == null) || selectedEventTypeIds.contains(eventTypeId);
+    }
+
+    /**
+     * Returns whether the save timestamp is within the bounds of the query. The bounds are the same as the bounds of
+     * the database searches: <code>[eventsFrom, eventsTo)</code> in the half-open mode, otherwise both are inclusive
+     * if both are set and a single bound is exclusive.
+     */
+    public boolean matchesSaveTimestamp(final Instant saveTimestamp) {
+        if (halfOpenSaveTimestampRange) {
+            return ((eventsFrom == null) || !saveTimestamp.isBefore(eventsFrom))
+                    && ((eventsTo == null) || saveTimestamp.isBefore(eventsTo));
+        }
+        if ((eventsFrom != null) && (eventsTo != null)) {
+            return !saveTimestamp.isBefore(eventsFrom) && !saveTimestamp.isAfter(eventsTo);
+        } else if (eventsFrom != null) {
+            return saveTimestamp.isAfter(eventsFrom);
+        } else if (eventsTo != null) {
+            return saveTimestamp.isBefore(eventsTo);
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the segment may contain matching events, decided by its save timestamp range only.
+     */
+    public boolean overlaps(final ArchiveSegmentHeader segment) {
+        if ((eventsFrom != null) && segment.getMaxSaveTimestamp().isBefore(eventsFrom)) {
+            return false;
+        }
+        if ((eventsTo != null) && (halfOpenSaveTimestampRange ? !segment.getMinSaveTimestamp().isBefore(eventsTo)
+                : segment.getMinSaveTimestamp().isAfter(eventsTo))) {
+            return false;
+        }
+        // all events of the segment precede the cursor in the descending order
+        return (after == null) || !segment.getMinSaveTimestamp().isAfter(after.getSaveTimestamp());
+    }
+
+    /**
+     * Matches the save timestamps with the half-open range <code>[eventsFrom, eventsTo)</code> if <code>true</code>,
+     * like {@link ComplexEventLoader#withHalfOpenSaveTimestampRange(boolean)}.
+     */
+    public ArchiveQuery withHalfOpenSaveTimestampRange(final boolean halfOpenSaveTimestampRange) {
+        this.halfOpenSaveTimestampRange = halfOpenSaveTimestampRange;
+        return this;
+    }
+
+}
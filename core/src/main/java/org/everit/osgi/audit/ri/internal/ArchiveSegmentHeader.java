@@ -0,0 +1,120 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * The fixed-size header of an archive segment file: the range of the save timestamps and the number of the events in
+ * the segment. The headers of all segments are kept in memory as the index of the archive.
+ */
+public class ArchiveSegmentHeader {
+
+    static final int MAGIC = 0x41554453; // "AUDS"
+
+    static final int VERSION = 1;
+
+    static final int HEADER_LENGTH = 44;
+
+    /**
+     * Reads the header of a segment file through a memory mapping of its first bytes.
+     *
+     * @throws IOException
+     *             if the file cannot be read or it is not an archive segment.
+     */
+    public static ArchiveSegmentHeader read(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_LENGTH) {
+                throw new IOException("not an archive segment, too short: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+                throw new IOException("not an archive segment or unsupported version: " + path);
+            }
+            Instant minSaveTimestamp = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+            Instant maxSaveTimestamp = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+            int eventCount = buffer.getInt();
+            int uncompressedLength = buffer.getInt();
+            int compressedLength = buffer.getInt();
+            if ((HEADER_LENGTH + (long) compressedLength) != channel.size()) {
+                throw new IOException("truncated archive segment: " + path);
+            }
+            return new ArchiveSegmentHeader(path, minSaveTimestamp, maxSaveTimestamp, eventCount,
+                    uncompressedLength, compressedLength);
+        }
+    }
+
+    private final Path path;
+
+    private final Instant minSaveTimestamp;
+
+    private final Instant maxSaveTimestamp;
+
+    private final int eventCount;
+
+    private final int uncompressedLength;
+
+    private final int compressedLength;
+
+    public ArchiveSegmentHeader(final Path path, final Instant minSaveTimestamp, final Instant maxSaveTimestamp,
+            final int eventCount, final int uncompressedLength, final int compressedLength) {
+        this.path = path;
+        this.minSaveTimestamp = minSaveTimestamp;
+        this.maxSaveTimestamp = maxSaveTimestamp;
+        this.eventCount = eventCount;
+        this.uncompressedLength = uncompressedLength;
+        this.compressedLength = compressedLength;
+    }
+
+    public int getCompressedLength() {
+        return compressedLength;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public Instant getMaxSaveTimestamp() {
+        return maxSaveTimestamp;
+    }
+
+    public Instant getMinSaveTimestamp() {
+        return minSaveTimestamp;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getUncompressedLength() {
+        return uncompressedLength;
+    }
+
+    /**
+     * Returns a copy of the header describing the same segment at another path.
+     */
+    ArchiveSegmentHeader withPath(final Path newPath) {
+        return new ArchiveSegmentHeader(newPath, minSaveTimestamp, maxSaveTimestamp, eventCount,
+                uncompressedLength, compressedLength);
+    }
+
+}
@@ -0,0 +1,468 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.everit.osgi.audit.dto.EventData;
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.conf.search.api.DataFilter;
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+import org.everit.osgi.audit.ri.ext.EventCursor;
+
+/**
+ * Reads an archive segment written by {@link ArchiveSegmentWriter}. The file is memory-mapped and decompressed chunk
+ * by chunk straight into column arrays, the uncompressed body is never held in memory as a whole. The search criteria
+ * are evaluated on the columns and only the matching events are materialized.
+ */
+public class ArchiveSegmentReader {
+
+    /**
+     * Reads the remaining bytes of a buffer, used to feed the memory-mapped compressed body to the inflater.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int readLength = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, readLength);
+            return readLength;
+        }
+
+    }
+
+    /**
+     * Decodes the columns from the inflated body.
+     */
+    private interface BodyReader<T> {
+
+        T read(DataInputStream in) throws IOException;
+
+    }
+
+    private static final int INFLATE_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Opens a segment. The column arrays are decoded while the body is inflated, so apart from the columns only one
+     * chunk of the compressed and one chunk of the uncompressed body is on the heap at a time.
+     *
+     * @throws IOException
+     *             if the segment cannot be read, or it is truncated or corrupt.
+     */
+    public static ArchiveSegmentReader open(final ArchiveSegmentHeader header) throws IOException {
+        return read(header, true, ArchiveSegmentReader::new);
+    }
+
+    /**
+     * Inflates the body of a segment and decodes it with the body reader.
+     *
+     * @param wholeBody
+     *            whether the body reader decodes the whole body, which is then checked to end where the body ends. If
+     *            <code>false</code>, the rest of the body is not inflated.
+     */
+    private static <T> T read(final ArchiveSegmentHeader header, final boolean wholeBody,
+            final BodyReader<T> bodyReader) throws IOException {
+        try (FileChannel channel = FileChannel.open(header.getPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    ArchiveSegmentHeader.HEADER_LENGTH, header.getCompressedLength());
+            Inflater inflater = new Inflater();
+            try {
+                int chunkSize = Math.min(INFLATE_CHUNK_SIZE, Math.max(1, header.getCompressedLength()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new InflaterInputStream(new ByteBufferInputStream(mapped), inflater, chunkSize),
+                        INFLATE_CHUNK_SIZE));
+                T rval = bodyReader.read(in);
+                if (wholeBody
+                        && ((in.read() != -1) || (inflater.getBytesWritten() != header.getUncompressedLength()))) {
+                    throw new IOException("corrupt archive segment: " + header.getPath());
+                }
+                return rval;
+            } catch (EOFException | ZipException e) {
+                throw new IOException("corrupt archive segment: " + header.getPath(), e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Reads the event id column of a segment, the first column of the body. The rest of the body is not inflated.
+     */
+    public static long[] readEventIds(final ArchiveSegmentHeader header) throws IOException {
+        return read(header, false, (in) -> readLongs(in, in.readInt()));
+    }
+
+    private static int[] readInts(final DataInputStream in, final int length) throws IOException {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static long[] readLongs(final DataInputStream in, final int length) throws IOException {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String[] readStrings(final DataInputStream in, final int length) throws IOException {
+        String[] values = new String[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    private final int eventCount;
+
+    private final long[] eventIds;
+
+    private final long[] saveSeconds;
+
+    private final int[] saveNanos;
+
+    private final long[] applicationIds;
+
+    private final long[] eventTypeIds;
+
+    private final String[] appNameDictionary;
+
+    private final int[] appNameCodes;
+
+    private final String[] typeNameDictionary;
+
+    private final int[] typeNameCodes;
+
+    /**
+     * The index of the first event data row of each event, the rows of event <code>i</code> end at
+     * <code>firstDataRows[i + 1]</code>.
+     */
+    private final int[] firstDataRows;
+
+    private final String[] dataNameDictionary;
+
+    private final int[] dataNameCodes;
+
+    private final EventDataType[] dataTypes;
+
+    /**
+     * The index of the value of each event data row in the column of its type.
+     */
+    private final int[] valueIndexes;
+
+    private final double[] numberValues;
+
+    private final long[] timestampSeconds;
+
+    private final int[] timestampNanos;
+
+    private final String[] stringValues;
+
+    private final String[] textValues;
+
+    private final byte[][] binaryValues;
+
+    private ArchiveSegmentReader(final DataInputStream in) throws IOException {
+        eventCount = in.readInt();
+        eventIds = readLongs(in, eventCount);
+        saveSeconds = readLongs(in, eventCount);
+        saveNanos = readInts(in, eventCount);
+        applicationIds = readLongs(in, eventCount);
+        eventTypeIds = readLongs(in, eventCount);
+        appNameDictionary = readStrings(in, in.readInt());
+        appNameCodes = readInts(in, eventCount);
+        typeNameDictionary = readStrings(in, in.readInt());
+        typeNameCodes = readInts(in, eventCount);
+        int[] dataCounts = readInts(in, eventCount);
+        firstDataRows = new int[eventCount + 1];
+        for (int i = 0; i < eventCount; i++) {
+            firstDataRows[i + 1] = firstDataRows[i] + dataCounts[i];
+        }
+        int dataRowCount = in.readInt();
+        dataNameDictionary = readStrings(in, in.readInt());
+        dataNameCodes = readInts(in, dataRowCount);
+        String[] typeDictionary = readStrings(in, in.readInt());
+        int[] typeCodes = readInts(in, dataRowCount);
+        dataTypes = new EventDataType[dataRowCount];
+        valueIndexes = new int[dataRowCount];
+        int[] valueCounts = new int[EventDataType.values().length];
+        for (int row = 0; row < dataRowCount; row++) {
+            EventDataType type = EventDataRowMapper.toEventDataType(typeDictionary[typeCodes[row]]);
+            dataTypes[row] = type;
+            valueIndexes[row] = valueCounts[type.ordinal()]++;
+        }
+        numberValues = new double[valueCounts[EventDataType.NUMBER.ordinal()]];
+        for (int i = 0; i < numberValues.length; i++) {
+            numberValues[i] = in.readDouble();
+        }
+        int timestampCount = valueCounts[EventDataType.TIMESTAMP.ordinal()];
+        timestampSeconds = new long[timestampCount];
+        timestampNanos = new int[timestampCount];
+        for (int i = 0; i < timestampCount; i++) {
+            timestampSeconds[i] = in.readLong();
+            timestampNanos[i] = in.readInt();
+        }
+        stringValues = readStrings(in, valueCounts[EventDataType.STRING.ordinal()]);
+        textValues = readStrings(in, valueCounts[EventDataType.TEXT.ordinal()]);
+        binaryValues = new byte[valueCounts[EventDataType.BINARY.ordinal()]][];
+        for (int i = 0; i < binaryValues.length; i++) {
+            binaryValues[i] = readBytes(in);
+        }
+    }
+
+    private void addEventData(final EventUi.Builder builder, final int row) {
+        String name = dataNameDictionary[dataNameCodes[row]];
+        int valueIndex = valueIndexes[row];
+        switch (dataTypes[row]) {
+        case NUMBER:
+            builder.numberData(name, numberValues[valueIndex]);
+            break;
+        case STRING:
+            builder.stringData(name, stringValues[valueIndex]);
+            break;
+        case TEXT:
+            builder.textData(name, textValues[valueIndex]);
+            break;
+        case TIMESTAMP:
+            builder.timestampData(name, timestampValue(valueIndex));
+            break;
+        case BINARY:
+            builder.binaryData(name, binaryValues[valueIndex]);
+            break;
+        default:
+            throw new IllegalStateException("unknown event data type: " + dataTypes[row]);
+        }
+    }
+
+    private int compareValue(final int row, final EventData operands) {
+        int valueIndex = valueIndexes[row];
+        switch (dataTypes[row]) {
+        case NUMBER:
+            return Double.compare(numberValues[valueIndex], operands.getNumberValue());
+        case STRING:
+        case TEXT:
+            return textValue(row).compareTo(operands.getTextValue());
+        case TIMESTAMP:
+            return timestampValue(valueIndex).compareTo(operands.getTimestampValue());
+        case BINARY:
+        default:
+            throw new IllegalArgumentException("unsupported event data type in filter: " + dataTypes[row]);
+        }
+    }
+
+    /**
+     * Counts the matching events of the segment by application and event type, without materializing them.
+     *
+     * @param maxCountedEvents
+     *            the maximum number of events to count.
+     * @return the number of counted events.
+     */
+    public long count(final ArchiveQuery query, final long maxCountedEvents,
+            final Map<Long, Long> countsByApplicationId, final Map<Long, Long> countsByEventTypeId) {
+        long count = 0;
+        for (int event = 0; (event < eventCount) && (count < maxCountedEvents); event++) {
+            if (matches(event, query)) {
+                countsByApplicationId.merge(applicationIds[event], 1L, Long::sum);
+                countsByEventTypeId.merge(eventTypeIds[event], 1L, Long::sum);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Passes the events of the segment with the given ids to the consumer.
+     *
+     * @param dataFieldFilter
+     *            decides by name and type whether an event data is loaded.
+     */
+    public void findEvents(final Set<Long> selectedEventIds, final BiPredicate<String, EventDataType> dataFieldFilter,
+            final Consumer<EventUi> consumer) {
+        for (int event = 0; event < eventCount; event++) {
+            if (selectedEventIds.contains(eventIds[event])) {
+                consumer.accept(toEvent(event, dataFieldFilter));
+            }
+        }
+    }
+
+    /**
+     * Returns whether the event data row satisfies the filter, in the same way as the EXISTS predicate of
+     * {@link ComplexEventLoader}: same name, same type and a non-null value matching the operator.
+     */
+    private boolean matches(final int row, final DataFilter dataFilter) {
+        EventData operands = dataFilter.getOperands();
+        if ((dataTypes[row] != operands.getEventDataType())
+                || !dataNameDictionary[dataNameCodes[row]].equals(operands.getName())) {
+            return false;
+        }
+        String textValue = textValue(row);
+        boolean textType = (dataTypes[row] == EventDataType.STRING) || (dataTypes[row] == EventDataType.TEXT);
+        if (textType && (textValue == null)) {
+            return false;
+        }
+        switch (dataFilter.getOperator()) {
+        case EQ:
+            return compareValue(row, operands) == 0;
+        case LT:
+            return compareValue(row, operands) < 0;
+        case GT:
+            return compareValue(row, operands) > 0;
+        case STARTS_WITH:
+            return (textValue != null) && textValue.startsWith(operands.getTextValue());
+        default:
+            throw new IllegalArgumentException("unsupported operator: " + dataFilter.getOperator());
+        }
+    }
+
+    private boolean matches(final int event, final ArchiveQuery query) {
+        if (!query.isSelectedApplication(applicationIds[event]) || !query.isSelectedEventType(eventTypeIds[event])) {
+            return false;
+        }
+        Instant saveTimestamp = saveTimestamp(event);
+        if (!query.matchesSaveTimestamp(saveTimestamp)) {
+            return false;
+        }
+        EventCursor after = query.getAfter();
+        if (after != null) {
+            int cmp = saveTimestamp.compareTo(after.getSaveTimestamp());
+            if ((cmp > 0) || ((cmp == 0) && (eventIds[event] <= after.getEventId()))) {
+                return false;
+            }
+        }
+        for (DataFilter dataFilter : query.getDataFilters()) {
+            boolean found = false;
+            for (int row = firstDataRows[event]; !found && (row < firstDataRows[event + 1]); row++) {
+                found = matches(row, dataFilter);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Instant saveTimestamp(final int event) {
+        return Instant.ofEpochSecond(saveSeconds[event], saveNanos[event]);
+    }
+
+    /**
+     * Passes the matching events of the segment to the consumer in the order of the searches.
+     *
+     * @param consumer
+     *            receives the events, returns <code>false</code> to stop the scan.
+     * @return <code>false</code> if the consumer stopped the scan.
+     */
+    public boolean scan(final ArchiveQuery query, final Predicate<EventUi> consumer) {
+        for (int event = 0; event < eventCount; event++) {
+            if (matches(event, query) && !consumer.test(toEvent(event, query::isSelectedDataField))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The value of a STRING or TEXT event data row, <code>null</code> for the other types.
+     */
+    private String textValue(final int row) {
+        switch (dataTypes[row]) {
+        case STRING:
+            return stringValues[valueIndexes[row]];
+        case TEXT:
+            return textValues[valueIndexes[row]];
+        default:
+            return null;
+        }
+    }
+
+    private Instant timestampValue(final int valueIndex) {
+        return Instant.ofEpochSecond(timestampSeconds[valueIndex], timestampNanos[valueIndex]);
+    }
+
+    private EventUi toEvent(final int event, final BiPredicate<String, EventDataType> dataFieldFilter) {
+        EventUi.Builder builder = new EventUi.Builder()
+                .eventId(eventIds[event])
+                .typeName(typeNameDictionary[typeNameCodes[event]])
+                .appName(appNameDictionary[appNameCodes[event]])
+                .saveTimestamp(saveTimestamp(event));
+        for (int row = firstDataRows[event]; row < firstDataRows[event + 1]; row++) {
+            if (dataFieldFilter.test(dataNameDictionary[dataNameCodes[row]], dataTypes[row])) {
+                addEventData(builder, row);
+            }
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,228 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+import org.everit.osgi.audit.dto.EventData;
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+
+/**
+ * Writes archive segment files. After the {@link ArchiveSegmentHeader header}, a segment contains one deflate
+ * compressed block with the values stored column by column: first the event columns (id, save timestamp,
+ * application id, event type id, application name, event type name, number of event data), then the event data
+ * columns (name, type) and one column per value type holding only the values of that type. The strings that repeat
+ * (names) are stored once in a dictionary followed by the codes of the rows. Similar values stored next to each other
+ * compress well and the reader can evaluate the search criteria on the event columns without materializing the
+ * events.
+ */
+public final class ArchiveSegmentWriter {
+
+    /**
+     * Stores each distinct string once, the rows refer to them by code.
+     */
+    private static class StringDictionary {
+
+        private final Map<String, Integer> codes = new LinkedHashMap<>();
+
+        private final List<Integer> rows = new ArrayList<>();
+
+        void add(final String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                codes.put(value, code);
+            }
+            rows.add(code);
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeInt(codes.size());
+            for (String value : codes.keySet()) {
+                writeString(out, value);
+            }
+            for (Integer code : rows) {
+                out.writeInt(code);
+            }
+        }
+
+    }
+
+    /**
+     * Writes the events to a new segment file. The events must be in the order of the searches: save timestamp
+     * descending, then id ascending.
+     *
+     * @return the header of the written segment.
+     */
+    public static ArchiveSegmentHeader write(final Path path, final List<ArchivedEvent> events) throws IOException {
+        if (events.isEmpty()) {
+            throw new IllegalArgumentException("events cannot be empty");
+        }
+        Instant minSaveTimestamp = null;
+        Instant maxSaveTimestamp = null;
+        for (ArchivedEvent archivedEvent : events) {
+            Instant saveTimestamp = archivedEvent.getEvent().getSaveTimeStamp();
+            if ((minSaveTimestamp == null) || saveTimestamp.isBefore(minSaveTimestamp)) {
+                minSaveTimestamp = saveTimestamp;
+            }
+            if ((maxSaveTimestamp == null) || saveTimestamp.isAfter(maxSaveTimestamp)) {
+                maxSaveTimestamp = saveTimestamp;
+            }
+        }
+        byte[] body = writeBody(events);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            deflater.write(body);
+        }
+        byte[] compressedBody = compressed.toByteArray();
+        ByteBuffer header = ByteBuffer.allocate(ArchiveSegmentHeader.HEADER_LENGTH);
+        header.putInt(ArchiveSegmentHeader.MAGIC)
+                .putInt(ArchiveSegmentHeader.VERSION)
+                .putLong(minSaveTimestamp.getEpochSecond())
+                .putInt(minSaveTimestamp.getNano())
+                .putLong(maxSaveTimestamp.getEpochSecond())
+                .putInt(maxSaveTimestamp.getNano())
+                .putInt(events.size())
+                .putInt(body.length)
+                .putInt(compressedBody.length);
+        header.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer content = ByteBuffer.wrap(compressedBody);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        return new ArchiveSegmentHeader(path, minSaveTimestamp, maxSaveTimestamp, events.size(), body.length,
+                compressedBody.length);
+    }
+
+    private static byte[] writeBody(final List<ArchivedEvent> events) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(events.size());
+        for (ArchivedEvent archivedEvent : events) {
+            out.writeLong(archivedEvent.getEvent().getId());
+        }
+        for (ArchivedEvent archivedEvent : events) {
+            out.writeLong(archivedEvent.getEvent().getSaveTimeStamp().getEpochSecond());
+        }
+        for (ArchivedEvent archivedEvent : events) {
+            out.writeInt(archivedEvent.getEvent().getSaveTimeStamp().getNano());
+        }
+        for (ArchivedEvent archivedEvent : events) {
+            out.writeLong(archivedEvent.getApplicationId());
+        }
+        for (ArchivedEvent archivedEvent : events) {
+            out.writeLong(archivedEvent.getEventTypeId());
+        }
+        StringDictionary appNames = new StringDictionary();
+        StringDictionary typeNames = new StringDictionary();
+        List<EventData> eventDataRows = new ArrayList<>();
+        for (ArchivedEvent archivedEvent : events) {
+            EventUi event = archivedEvent.getEvent();
+            appNames.add(event.getAppName());
+            typeNames.add(event.getName());
+            eventDataRows.addAll(event.getEventData().values());
+        }
+        appNames.write(out);
+        typeNames.write(out);
+        for (ArchivedEvent archivedEvent : events) {
+            out.writeInt(archivedEvent.getEvent().getEventData().size());
+        }
+        writeEventDataColumns(out, eventDataRows);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static void writeEventDataColumns(final DataOutputStream out, final List<EventData> eventDataRows)
+            throws IOException {
+        out.writeInt(eventDataRows.size());
+        StringDictionary names = new StringDictionary();
+        StringDictionary types = new StringDictionary();
+        for (EventData eventData : eventDataRows) {
+            names.add(eventData.getName());
+            types.add(eventData.getEventDataType().toString());
+        }
+        names.write(out);
+        types.write(out);
+        for (EventData eventData : eventDataRows) {
+            if (eventData.getEventDataType() == EventDataType.NUMBER) {
+                out.writeDouble(eventData.getNumberValue());
+            }
+        }
+        for (EventData eventData : eventDataRows) {
+            if (eventData.getEventDataType() == EventDataType.TIMESTAMP) {
+                Instant timestamp = eventData.getTimestampValue();
+                out.writeLong(timestamp.getEpochSecond());
+                out.writeInt(timestamp.getNano());
+            }
+        }
+        for (EventData eventData : eventDataRows) {
+            if (eventData.getEventDataType() == EventDataType.STRING) {
+                writeString(out, eventData.getTextValue());
+            }
+        }
+        for (EventData eventData : eventDataRows) {
+            if (eventData.getEventDataType() == EventDataType.TEXT) {
+                writeString(out, eventData.getTextValue());
+            }
+        }
+        for (EventData eventData : eventDataRows) {
+            if (eventData.getEventDataType() == EventDataType.BINARY) {
+                writeBytes(out, eventData.getBinaryValue());
+            }
+        }
+    }
+
+    /**
+     * Writes a nullable string with its length, {@link DataOutputStream#writeUTF(String)} is limited to 64 KiB.
+     */
+    static void writeString(final DataOutputStream out, final String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ArchiveSegmentWriter() {
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.Objects;
+
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+
+/**
+ * An event read from the hot tables to be written to an archive segment, with the ids the searches filter by.
+ */
+public class ArchivedEvent {
+
+    private final long applicationId;
+
+    private final long eventTypeId;
+
+    private final EventUi event;
+
+    public ArchivedEvent(final long applicationId, final long eventTypeId, final EventUi event) {
+        this.applicationId = applicationId;
+        this.eventTypeId = eventTypeId;
+        this.event = Objects.requireNonNull(event, "event cannot be null");
+    }
+
+    public long getApplicationId() {
+        return applicationId;
+    }
+
+    public EventUi getEvent() {
+        return event;
+    }
+
+    public long getEventTypeId() {
+        return eventTypeId;
+    }
+
+}
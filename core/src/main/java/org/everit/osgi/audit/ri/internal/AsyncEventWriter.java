@@ -0,0 +1,275 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.everit.osgi.audit.dto.AuditEvent;
+import org.everit.osgi.audit.ri.conf.BackpressurePolicy;
+
+/**
+ * Buffers audit events in a bounded queue and persists them on a background thread. The events taken from the queue
+ * are handed over to the batch persister in groups of at most <code>maxBatch</code> events, so many events share one
+ * transaction.
+ */
+public class AsyncEventWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncEventWriter.class.getName());
+
+    /**
+     * The minimum time between two warnings about dropped events.
+     */
+    private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final BlockingQueue<AuditEvent> queue;
+
+    private final Consumer<List<AuditEvent>> batchPersister;
+
+    private final Consumer<AuditEvent> singlePersister;
+
+    private final long flushIntervalNanos;
+
+    private final int maxBatch;
+
+    private final BackpressurePolicy backpressurePolicy;
+
+    private final AuditMetricsRecorder metrics;
+
+    private final AtomicLong droppedEventCount = new AtomicLong();
+
+    /**
+     * The number of the dropped events not reported in a warning yet.
+     */
+    private final AtomicLong unreportedDropCount = new AtomicLong();
+
+    private final AtomicLong lastDropWarningNanos = new AtomicLong(System.nanoTime() - DROP_WARNING_INTERVAL_NANOS);
+
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    /**
+     * Held for reading by the callers of {@link #submit(AuditEvent)} while they check {@link #running} and put the
+     * event into the queue, and for writing by {@link #shutdown()} while it stops the writer. So no event can be put
+     * into the queue after the final drain of the shutdown.
+     */
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor.
+     *
+     * @param batchPersister
+     *            persists a group of events in one transaction.
+     * @param singlePersister
+     *            persists one event, used on the caller thread by {@link BackpressurePolicy#CALLER_RUNS}, after
+     *            shutdown and when a whole batch fails.
+     * @param queueSize
+     *            the capacity of the queue.
+     * @param flushInterval
+     *            the maximum time in milliseconds an event waits for the batch it belongs to to be filled.
+     * @param maxBatch
+     *            the maximum number of events persisted in one transaction.
+     * @param backpressurePolicy
+     *            the behavior of {@link #submit(AuditEvent)} when the queue is full.
+     * @param threadName
+     *            the name of the background thread.
+     * @param metrics
+     *            records the dropped events.
+     */
+    public AsyncEventWriter(final Consumer<List<AuditEvent>> batchPersister,
+            final Consumer<AuditEvent> singlePersister,
+            final int queueSize, final long flushInterval, final int maxBatch,
+            final BackpressurePolicy backpressurePolicy, final String threadName,
+            final AuditMetricsRecorder metrics) {
+        this.batchPersister = batchPersister;
+        this.singlePersister = singlePersister;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        this.maxBatch = maxBatch;
+        this.backpressurePolicy = backpressurePolicy;
+        this.metrics = metrics;
+        writerThread = new Thread(this::run, threadName);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private List<AuditEvent> collectBatch(final AuditEvent first) throws InterruptedException {
+        List<AuditEvent> batch = new ArrayList<>(maxBatch);
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        queue.drainTo(batch, maxBatch - batch.size());
+        while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            if ((remaining <= 0) || !running) {
+                break;
+            }
+            AuditEvent event = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (event == null) {
+                break;
+            }
+            batch.add(event);
+            queue.drainTo(batch, maxBatch - batch.size());
+        }
+        return batch;
+    }
+
+    /**
+     * Counts a dropped event and logs a warning, at most once per {@link #DROP_WARNING_INTERVAL_NANOS}.
+     */
+    private void dropEvent(final AuditEvent event) {
+        droppedEventCount.incrementAndGet();
+        metrics.recordDroppedEvent();
+        unreportedDropCount.incrementAndGet();
+        long now = System.nanoTime();
+        long lastWarningNanos = lastDropWarningNanos.get();
+        if (((now - lastWarningNanos) >= DROP_WARNING_INTERVAL_NANOS)
+                && lastDropWarningNanos.compareAndSet(lastWarningNanos, now)) {
+            LOGGER.log(Level.WARNING, "The audit event queue is full, dropped " + unreportedDropCount.getAndSet(0)
+                    + " events since the last warning, the last one is [" + event.getName() + "] of application ["
+                    + event.getApplicationName() + "]");
+        }
+    }
+
+    /**
+     * Puts the event into the queue, applying the backpressure policy if the queue is full.
+     *
+     * @return <code>false</code> if the event must be persisted on the caller thread.
+     */
+    private boolean enqueue(final AuditEvent event) {
+        if (queue.offer(event)) {
+            return true;
+        }
+        switch (backpressurePolicy) {
+        case BLOCK:
+            // the writer thread keeps taking events until shutdown() gets the write lock, so this put returns
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropEvent(event);
+            }
+            return true;
+        case DROP:
+            dropEvent(event);
+            return true;
+        case CALLER_RUNS:
+            return false;
+        default:
+            throw new IllegalStateException("unknown backpressure policy: " + backpressurePolicy);
+        }
+    }
+
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    public int getQueuedEventCount() {
+        return queue.size();
+    }
+
+    /**
+     * Persists the batch, or the events of the batch one by one if the batch fails. Errors are caught too, so the
+     * writer thread keeps running and the submitters waiting for space in the queue are not blocked forever.
+     */
+    private void persistBatch(final List<AuditEvent> batch) {
+        try {
+            batchPersister.accept(batch);
+        } catch (Throwable e) {
+            LOGGER.log(Level.WARNING, "Persisting a batch of " + batch.size()
+                    + " audit events failed, persisting them one by one", e);
+            for (AuditEvent event : batch) {
+                try {
+                    singlePersister.accept(event);
+                } catch (Throwable e2) {
+                    LOGGER.log(Level.SEVERE, "Could not persist audit event [" + event.getName() + "] of application ["
+                            + event.getApplicationName() + "]", e2);
+                }
+            }
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditEvent first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    persistBatch(collectBatch(first));
+                }
+            } catch (InterruptedException e) {
+                // the events still in the queue are persisted by shutdown()
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the background thread after all queued events are persisted. Events submitted after this method is
+     * called are persisted on the caller thread.
+     */
+    public void shutdown() {
+        submitLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+        boolean interrupted = false;
+        while (writerThread.isAlive()) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        AuditEvent event;
+        while ((event = queue.poll()) != null) {
+            singlePersister.accept(event);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Puts the event into the queue. If the queue is full, the configured {@link BackpressurePolicy} decides what
+     * happens with the event.
+     */
+    public void submit(final AuditEvent event) {
+        boolean handedOver;
+        submitLock.readLock().lock();
+        try {
+            handedOver = running && enqueue(event);
+        } finally {
+            submitLock.readLock().unlock();
+        }
+        if (!handedOver) {
+            singlePersister.accept(event);
+        }
+    }
+
+}
@@ -16,36 +16,77 @@
  */
 package org.everit.osgi.audit.ri.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.sql.Blob;
+import java.sql.SQLException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.PropertyOption;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.everit.osgi.audit.dto.AuditEvent;
 import org.everit.osgi.audit.dto.AuditEventType;
+import org.everit.osgi.audit.dto.EventData;
 import org.everit.osgi.audit.dto.EventDataType;
 import org.everit.osgi.audit.ri.conf.AuditRiConstants;
+import org.everit.osgi.audit.ri.conf.BackpressurePolicy;
 import org.everit.osgi.audit.ri.dto.AuditApplication;
+import org.everit.osgi.audit.ri.ext.ArchiveReport;
+import org.everit.osgi.audit.ri.ext.AuditArchiveService;
+import org.everit.osgi.audit.ri.ext.AuditCacheService;
+import org.everit.osgi.audit.ri.ext.AuditMetrics;
+import org.everit.osgi.audit.ri.ext.AuditMetricsService;
+import org.everit.osgi.audit.ri.ext.AuditSearchService;
+import org.everit.osgi.audit.ri.ext.BinaryEventDataService;
+import org.everit.osgi.audit.ri.ext.BulkAuditService;
+import org.everit.osgi.audit.ri.ext.BulkLogResult;
+import org.everit.osgi.audit.ri.ext.CacheStatistics;
+import org.everit.osgi.audit.ri.ext.EventCounts;
+import org.everit.osgi.audit.ri.ext.EventCursor;
+import org.everit.osgi.audit.ri.ext.EventPage;
+import org.everit.osgi.audit.ri.ext.SlowQuery;
+import org.everit.osgi.audit.ri.ext.SlowQueryService;
 import org.everit.osgi.audit.ri.schema.qdsl.QApplication;
-import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
 import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
 import org.everit.osgi.audit.ri.schema.qdsl.QEventType;
 import org.everit.osgi.querydsl.support.QuerydslSupport;
 import org.everit.osgi.resource.ResourceService;
 import org.everit.osgi.transaction.helper.api.TransactionHelper;
 
-import com.mysema.query.Tuple;
 import com.mysema.query.sql.SQLQuery;
 import com.mysema.query.sql.dml.SQLInsertClause;
 import com.mysema.query.types.ConstructorExpression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.expr.BooleanExpression;
+import com.mysema.query.types.expr.Param;
 import com.mysema.query.types.template.BooleanTemplate;
 
 @Component(name = AuditRiConstants.SERVICE_FACTORY_PID, metatype = true, configurationFactory = true,
@@ -53,10 +94,128 @@ import com.mysema.query.types.template.BooleanTemplate;
 @Properties({
         @Property(name = AuditRiConstants.PROP_TRASACTION_HELPER),
         @Property(name = AuditRiConstants.PROP_QUERYDSL_SUPPORT),
-        @Property(name = AuditRiConstants.PROP_RESOURCE_SERVICE)
+        @Property(name = AuditRiConstants.PROP_RESOURCE_SERVICE),
+        @Property(name = AuditRiConstants.PROP_EVENT_DATA_BATCH_SIZE,
+                intValue = AuditRiConstants.DEFAULT_EVENT_DATA_BATCH_SIZE),
+        @Property(name = AuditRiConstants.PROP_EVENT_BATCH_SIZE, intValue = AuditRiConstants.DEFAULT_EVENT_BATCH_SIZE),
+        @Property(name = AuditRiConstants.PROP_BATCH_GENERATED_KEYS,
+                boolValue = AuditRiConstants.DEFAULT_BATCH_GENERATED_KEYS),
+        @Property(name = AuditRiConstants.PROP_EVENT_TYPE_CACHE_SIZE,
+                intValue = AuditRiConstants.DEFAULT_EVENT_TYPE_CACHE_SIZE),
+        @Property(name = AuditRiConstants.PROP_EVENT_LOOKUP_CHUNK_SIZE,
+                intValue = AuditRiConstants.DEFAULT_EVENT_LOOKUP_CHUNK_SIZE),
+        @Property(name = AuditRiConstants.PROP_FIELD_CATALOG_TTL,
+                intValue = AuditRiConstants.DEFAULT_FIELD_CATALOG_TTL),
+        @Property(name = AuditRiConstants.PROP_RESOURCE_ID_BLOCK_SIZE,
+                intValue = AuditRiConstants.DEFAULT_RESOURCE_ID_BLOCK_SIZE),
+        @Property(name = AuditRiConstants.PROP_ARCHIVE_DIRECTORY, value = AuditRiConstants.DEFAULT_ARCHIVE_DIRECTORY),
+        @Property(name = AuditRiConstants.PROP_ARCHIVE_SEGMENT_SIZE,
+                intValue = AuditRiConstants.DEFAULT_ARCHIVE_SEGMENT_SIZE),
+        @Property(name = AuditRiConstants.PROP_SLOW_QUERY_THRESHOLD,
+                intValue = AuditRiConstants.DEFAULT_SLOW_QUERY_THRESHOLD),
+        @Property(name = AuditRiConstants.PROP_SLOW_QUERY_LOG_SIZE,
+                intValue = AuditRiConstants.DEFAULT_SLOW_QUERY_LOG_SIZE),
+        @Property(name = AuditRiConstants.PROP_SLOW_QUERY_EXPLAIN,
+                boolValue = AuditRiConstants.DEFAULT_SLOW_QUERY_EXPLAIN),
+        @Property(name = AuditRiConstants.PROP_SLOW_QUERY_BINDINGS,
+                boolValue = AuditRiConstants.DEFAULT_SLOW_QUERY_BINDINGS),
+        @Property(name = AuditRiConstants.PROP_HALF_OPEN_SAVE_TIMESTAMP_RANGE,
+                boolValue = AuditRiConstants.DEFAULT_HALF_OPEN_SAVE_TIMESTAMP_RANGE),
+        @Property(name = AuditRiConstants.PROP_ASYNC_ENABLED, boolValue = AuditRiConstants.DEFAULT_ASYNC_ENABLED),
+        @Property(name = AuditRiConstants.PROP_ASYNC_QUEUE_SIZE, intValue = AuditRiConstants.DEFAULT_ASYNC_QUEUE_SIZE),
+        @Property(name = AuditRiConstants.PROP_ASYNC_FLUSH_INTERVAL,
+                intValue = AuditRiConstants.DEFAULT_ASYNC_FLUSH_INTERVAL),
+        @Property(name = AuditRiConstants.PROP_ASYNC_MAX_BATCH, intValue = AuditRiConstants.DEFAULT_ASYNC_MAX_BATCH),
+        @Property(name = AuditRiConstants.PROP_ASYNC_BACKPRESSURE_POLICY,
+                value = AuditRiConstants.DEFAULT_ASYNC_BACKPRESSURE_POLICY,
+                options = {
+                        @PropertyOption(name = "BLOCK", value = "BLOCK"),
+                        @PropertyOption(name = "DROP", value = "DROP"),
+                        @PropertyOption(name = "CALLER_RUNS", value = "CALLER_RUNS")
+                })
 })
 @Service
-public class AuditComponent implements AuditService {
+public class AuditComponent implements AuditService, BulkAuditService, AuditCacheService, AuditSearchService,
+        BinaryEventDataService, AuditArchiveService, AuditMetricsService, SlowQueryService {
+
+    private static final Param<String> APPLICATION_NAME = new Param<>(String.class, "applicationName");
+
+    private static final Param<Long> APPLICATION_ID = new Param<>(Long.class, "applicationId");
+
+    private static final Param<String> EVENT_TYPE_NAME = new Param<>(String.class, "eventTypeName");
+
+    private static final CompiledQuery<Application> APPLICATION_BY_NAME = new CompiledQuery<>(
+            (query) -> query.from(QApplication.application)
+                    .where(QApplication.application.applicationName.eq(APPLICATION_NAME)),
+            new Path<?>[] { QApplication.application.applicationId,
+                    QApplication.application.applicationName,
+                    QApplication.application.resourceId },
+            (row) -> new Application((Long) row[0], (String) row[1], (Long) row[2]),
+            APPLICATION_NAME);
+
+    private static final CompiledQuery<CachedEventType> EVENT_TYPE_BY_APP_ID_AND_NAME = new CompiledQuery<>(
+            (query) -> query.from(QEventType.eventType)
+                    .where(QEventType.eventType.applicationId.eq(APPLICATION_ID)
+                            .and(QEventType.eventType.name.eq(EVENT_TYPE_NAME))),
+            cachedEventTypeColumns(),
+            AuditComponent::toCachedEventType,
+            APPLICATION_ID, EVENT_TYPE_NAME);
+
+    private static final CompiledQuery<CachedEventType> EVENT_TYPE_BY_APP_NAME_AND_NAME = new CompiledQuery<>(
+            (query) -> query.from(QEventType.eventType)
+                    .innerJoin(QApplication.application)
+                    .on(QEventType.eventType.applicationId.eq(QApplication.application.applicationId))
+                    .where(QApplication.application.applicationName.eq(APPLICATION_NAME)
+                            .and(QEventType.eventType.name.eq(EVENT_TYPE_NAME))),
+            cachedEventTypeColumns(),
+            AuditComponent::toCachedEventType,
+            APPLICATION_NAME, EVENT_TYPE_NAME);
+
+    private static final CompiledQuery<EventType> EVENT_TYPES_BY_APP_ID = new CompiledQuery<>(
+            (query) -> query.from(QEventType.eventType)
+                    .where(QEventType.eventType.applicationId.eq(APPLICATION_ID)),
+            eventTypeColumns(),
+            AuditComponent::toEventType,
+            APPLICATION_ID);
+
+    private static final CompiledQuery<EventType> EVENT_TYPE_BY_APP_ID_AND_NAME_DTO = new CompiledQuery<>(
+            (query) -> query.from(QEventType.eventType)
+                    .where(QEventType.eventType.applicationId.eq(APPLICATION_ID))
+                    .where(QEventType.eventType.name.eq(EVENT_TYPE_NAME)),
+            eventTypeColumns(),
+            AuditComponent::toEventType,
+            APPLICATION_ID, EVENT_TYPE_NAME);
+
+    /**
+     * The filter of the event data loaded from the archive by the lookups by id, the same as the event data name
+     * predicate of these lookups in the database.
+     */
+    private static BiPredicate<String, EventDataType> archivedDataFieldFilter(final String[] dataFields) {
+        if ((dataFields == null) || (dataFields.length == 0)) {
+            return (name, type) -> true;
+        }
+        Set<String> names = new HashSet<>(Arrays.asList(dataFields));
+        return (name, type) -> names.contains(name);
+    }
+
+    private static Path<?>[] cachedEventTypeColumns() {
+        QEventType qEventType = QEventType.eventType;
+        return new Path<?>[] { qEventType.eventTypeId, qEventType.name, qEventType.applicationId,
+                qEventType.resourceId };
+    }
+
+    private static Path<?>[] eventTypeColumns() {
+        QEventType qEventType = QEventType.eventType;
+        return new Path<?>[] { qEventType.eventTypeId, qEventType.name, qEventType.applicationId };
+    }
+
+    private static CachedEventType toCachedEventType(final Object[] row) {
+        return new CachedEventType((Long) row[0], (String) row[1], (Long) row[2], (Long) row[3]);
+    }
+
+    private static EventType toEventType(final Object[] row) {
+        return new EventType((Long) row[0], (String) row[1], (Long) row[2]);
+    }
 
     @Reference(bind = "setTransactionHelper")
     private TransactionHelper transactionHelper;
@@ -67,6 +226,134 @@ public class AuditComponent implements AuditService {
     @Reference(bind = "setResourceService")
     private ResourceService resourceService;
 
+    private int eventDataBatchSize = AuditRiConstants.DEFAULT_EVENT_DATA_BATCH_SIZE;
+
+    private int eventBatchSize = AuditRiConstants.DEFAULT_EVENT_BATCH_SIZE;
+
+    private boolean batchGeneratedKeys = AuditRiConstants.DEFAULT_BATCH_GENERATED_KEYS;
+
+    private EventTypeCache eventTypeCache = new EventTypeCache(AuditRiConstants.DEFAULT_EVENT_TYPE_CACHE_SIZE);
+
+    private int eventLookupChunkSize = AuditRiConstants.DEFAULT_EVENT_LOOKUP_CHUNK_SIZE;
+
+    /**
+     * The allocator of the resource ids of the new applications and event types, <code>null</code> if the resources
+     * are created one by one in the transaction of the caller.
+     */
+    private volatile ResourceIdAllocator resourceIdAllocator;
+
+    private final AuditMetricsRecorder metrics = new AuditMetricsRecorder();
+
+    private FieldCatalog fieldCatalog = new FieldCatalog(AuditRiConstants.DEFAULT_FIELD_CATALOG_TTL, metrics);
+
+    private final SingleFlight<EventTypeKey, CachedEventType> eventTypeResolutions = new SingleFlight<>();
+
+    private final SingleFlight<String, Application> applicationResolutions = new SingleFlight<>();
+
+    private SlowQueryLog slowQueryLog = new SlowQueryLog(AuditRiConstants.DEFAULT_SLOW_QUERY_THRESHOLD,
+            AuditRiConstants.DEFAULT_SLOW_QUERY_LOG_SIZE, AuditRiConstants.DEFAULT_SLOW_QUERY_EXPLAIN,
+            AuditRiConstants.DEFAULT_SLOW_QUERY_BINDINGS);
+
+    /**
+     * The writer of the asynchronous mode, <code>null</code> if events are persisted on the caller thread.
+     */
+    private volatile AsyncEventWriter asyncEventWriter;
+
+    /**
+     * The archive of the old events, <code>null</code> if no archive directory is configured.
+     */
+    private volatile EventArchive eventArchive;
+
+    private int archiveSegmentSize = AuditRiConstants.DEFAULT_ARCHIVE_SEGMENT_SIZE;
+
+    private boolean halfOpenSaveTimestampRange = AuditRiConstants.DEFAULT_HALF_OPEN_SAVE_TIMESTAMP_RANGE;
+
+    @Activate
+    public void activate(final Map<String, Object> componentProperties) {
+        eventDataBatchSize = ComponentProperties.getIntProperty(componentProperties,
+                AuditRiConstants.PROP_EVENT_DATA_BATCH_SIZE, AuditRiConstants.DEFAULT_EVENT_DATA_BATCH_SIZE);
+        eventBatchSize = ComponentProperties.getIntProperty(componentProperties,
+                AuditRiConstants.PROP_EVENT_BATCH_SIZE, AuditRiConstants.DEFAULT_EVENT_BATCH_SIZE);
+        batchGeneratedKeys = ComponentProperties.getBooleanProperty(componentProperties,
+                AuditRiConstants.PROP_BATCH_GENERATED_KEYS, AuditRiConstants.DEFAULT_BATCH_GENERATED_KEYS);
+        eventTypeCache = new EventTypeCache(ComponentProperties.getIntProperty(componentProperties,
+                AuditRiConstants.PROP_EVENT_TYPE_CACHE_SIZE, AuditRiConstants.DEFAULT_EVENT_TYPE_CACHE_SIZE));
+        eventLookupChunkSize = ComponentProperties.getIntProperty(componentProperties,
+                AuditRiConstants.PROP_EVENT_LOOKUP_CHUNK_SIZE, AuditRiConstants.DEFAULT_EVENT_LOOKUP_CHUNK_SIZE);
+        fieldCatalog = new FieldCatalog(ComponentProperties.getNonNegativeIntProperty(componentProperties,
+                AuditRiConstants.PROP_FIELD_CATALOG_TTL, AuditRiConstants.DEFAULT_FIELD_CATALOG_TTL), metrics);
+        int resourceIdBlockSize = ComponentProperties.getNonNegativeIntProperty(componentProperties,
+                AuditRiConstants.PROP_RESOURCE_ID_BLOCK_SIZE, AuditRiConstants.DEFAULT_RESOURCE_ID_BLOCK_SIZE);
+        resourceIdAllocator = resourceIdBlockSize == 0 ? null
+                : new ResourceIdAllocator(resourceIdBlockSize, this::reserveResourceIds);
+        archiveSegmentSize = ComponentProperties.getIntProperty(componentProperties,
+                AuditRiConstants.PROP_ARCHIVE_SEGMENT_SIZE, AuditRiConstants.DEFAULT_ARCHIVE_SEGMENT_SIZE);
+        String archiveDirectory = ComponentProperties.getStringProperty(componentProperties,
+                AuditRiConstants.PROP_ARCHIVE_DIRECTORY, AuditRiConstants.DEFAULT_ARCHIVE_DIRECTORY);
+        if (!archiveDirectory.isEmpty()) {
+            eventArchive = new EventArchive(Paths.get(archiveDirectory));
+        }
+        slowQueryLog = new SlowQueryLog(
+                ComponentProperties.getNonNegativeIntProperty(componentProperties,
+                        AuditRiConstants.PROP_SLOW_QUERY_THRESHOLD, AuditRiConstants.DEFAULT_SLOW_QUERY_THRESHOLD),
+                ComponentProperties.getIntProperty(componentProperties,
+                        AuditRiConstants.PROP_SLOW_QUERY_LOG_SIZE, AuditRiConstants.DEFAULT_SLOW_QUERY_LOG_SIZE),
+                ComponentProperties.getBooleanProperty(componentProperties,
+                        AuditRiConstants.PROP_SLOW_QUERY_EXPLAIN, AuditRiConstants.DEFAULT_SLOW_QUERY_EXPLAIN),
+                ComponentProperties.getBooleanProperty(componentProperties,
+                        AuditRiConstants.PROP_SLOW_QUERY_BINDINGS, AuditRiConstants.DEFAULT_SLOW_QUERY_BINDINGS));
+        halfOpenSaveTimestampRange = ComponentProperties.getBooleanProperty(componentProperties,
+                AuditRiConstants.PROP_HALF_OPEN_SAVE_TIMESTAMP_RANGE,
+                AuditRiConstants.DEFAULT_HALF_OPEN_SAVE_TIMESTAMP_RANGE);
+        if (ComponentProperties.getBooleanProperty(componentProperties, AuditRiConstants.PROP_ASYNC_ENABLED,
+                AuditRiConstants.DEFAULT_ASYNC_ENABLED)) {
+            String policyName = ComponentProperties.getStringProperty(componentProperties,
+                    AuditRiConstants.PROP_ASYNC_BACKPRESSURE_POLICY,
+                    AuditRiConstants.DEFAULT_ASYNC_BACKPRESSURE_POLICY);
+            BackpressurePolicy backpressurePolicy;
+            try {
+                backpressurePolicy = BackpressurePolicy.valueOf(policyName.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("[" + AuditRiConstants.PROP_ASYNC_BACKPRESSURE_POLICY
+                        + "] must be one of " + Arrays.toString(BackpressurePolicy.values()) + ", got: "
+                        + policyName, e);
+            }
+            asyncEventWriter = new AsyncEventWriter(this::persistEvents, this::persistEvent,
+                    ComponentProperties.getIntProperty(componentProperties,
+                            AuditRiConstants.PROP_ASYNC_QUEUE_SIZE, AuditRiConstants.DEFAULT_ASYNC_QUEUE_SIZE),
+                    ComponentProperties.getIntProperty(componentProperties,
+                            AuditRiConstants.PROP_ASYNC_FLUSH_INTERVAL, AuditRiConstants.DEFAULT_ASYNC_FLUSH_INTERVAL),
+                    ComponentProperties.getIntProperty(componentProperties,
+                            AuditRiConstants.PROP_ASYNC_MAX_BATCH, AuditRiConstants.DEFAULT_ASYNC_MAX_BATCH),
+                    backpressurePolicy,
+                    "audit-event-writer-" + componentProperties.get("service.pid"), metrics);
+        }
+    }
+
+    /**
+     * Loads a result page of an offset-based search from the database, merged with the archived events if the
+     * archive may have matching events. The merge needs the first <code>offset + limit</code> events of the database.
+     *
+     * @param databaseLoader
+     *            loads the events of the database with the given offset and limit.
+     */
+    private List<EventUi> findEventsInTiers(final ArchiveQuery query, final long offset, final long limit,
+            final BiFunction<Long, Long, List<EventUi>> databaseLoader) {
+        EventArchive archive = eventArchive;
+        if ((archive == null) || !archive.overlaps(query.getEventsFrom(), query.getEventsTo())) {
+            return databaseLoader.apply(offset, limit);
+        }
+        return EventTierMerger.merge(databaseLoader.apply(0L, offset + limit), archive.iterator(query), offset,
+                limit);
+    }
+
+    @Override
+    public ArchiveReport archiveEventsBefore(final Instant before) {
+        Objects.requireNonNull(before, "before cannot be null");
+        return new EventArchiver(transactionHelper, querydslSupport, requireArchive(), archiveSegmentSize)
+                .archiveEventsBefore(before);
+    }
+
     @Override
     public Application createApplication(final String appName) {
         return createApplication(appName, null);
@@ -80,7 +367,7 @@ public class AuditComponent implements AuditService {
 
             return querydslSupport.execute((connection, configuration) -> {
 
-                Long insertedResourceId = Optional.ofNullable(resourceId).orElseGet(resourceService::createResource);
+                Long insertedResourceId = Optional.ofNullable(resourceId).orElseGet(this::createResource);
 
                 QApplication qApplication = QApplication.application;
                 Long appId = new SQLInsertClause(connection, configuration, qApplication)
@@ -93,12 +380,23 @@ public class AuditComponent implements AuditService {
         });
     }
 
-    private EventType createEventType(final Application app, final String eventTypeName) {
+    /**
+     * Returns the id of a new resource, taken from the reserved block if one is configured.
+     */
+    private Long createResource() {
+        ResourceIdAllocator allocator = resourceIdAllocator;
+        if (allocator == null) {
+            return resourceService.createResource();
+        }
+        return allocator.next();
+    }
+
+    private CachedEventType createEventType(final Application app, final String eventTypeName) {
         return transactionHelper.required(() -> {
 
             return querydslSupport.execute((connection, configuration) -> {
 
-                Long resourceId = resourceService.createResource();
+                Long resourceId = createResource();
 
                 QEventType qEventType = QEventType.eventType;
 
@@ -108,27 +406,67 @@ public class AuditComponent implements AuditService {
                         .set(qEventType.resourceId, resourceId)
                         .executeWithKey(qEventType.eventTypeId);
 
-                return new EventType(eventTypeId, eventTypeName, app.getApplicationId());
+                return new CachedEventType(eventTypeId, eventTypeName, app.getApplicationId(), resourceId);
             });
         });
     }
 
     @Override
-    public Application findApplicationByName(final String applicationName) {
-        Objects.requireNonNull(applicationName, "applicationName cannot be null");
-
-        return querydslSupport.execute((connection, configuration) -> {
+    public void clearSlowQueries() {
+        slowQueryLog.clear();
+    }
 
-            QApplication qApplication = QApplication.application;
+    @Override
+    public EventCounts countEvents(final Long[] selectedAppIds, final Long[] selectedEventTypeIds,
+            final List<DataFilter> dataFilters,
+            final Instant eventsFrom, final Instant eventsTo,
+            final long maxCountedEvents) {
+        if (maxCountedEvents < 0) {
+            throw new IllegalArgumentException("maxCountedEvents cannot be negative, got: " + maxCountedEvents);
+        }
+        EventCounts databaseCounts = querydslSupport.execute((connection, configuration) -> {
 
-            return new SQLQuery(connection, configuration)
-                    .from(qApplication)
-                    .where(qApplication.applicationName.eq(applicationName))
-                    .uniqueResult(ConstructorExpression.create(Application.class,
-                            qApplication.applicationId,
-                            qApplication.applicationName,
-                            qApplication.resourceId));
+            return new ComplexEventLoader(connection, configuration,
+                    selectedAppIds,
+                    selectedEventTypeIds, null,
+                    dataFilters, eventsFrom, eventsTo, 0, -1)
+                    .withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange)
+                    .countEvents(maxCountedEvents);
         });
+        EventArchive archive = eventArchive;
+        if ((archive == null) || !archive.overlaps(eventsFrom, eventsTo)) {
+            return databaseCounts;
+        }
+        return archive.countEvents(new ArchiveQuery(selectedAppIds, selectedEventTypeIds, (List<String>) null,
+                dataFilters, eventsFrom, eventsTo, null).withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange),
+                maxCountedEvents, databaseCounts);
+    }
+
+    /**
+     * Persists all events that are still in the queue of the asynchronous writer before the component stops. The
+     * writer is kept after the shutdown, so the <code>logEvent</code> calls still running persist their events on
+     * the caller thread.
+     */
+    @Deactivate
+    public void deactivate() {
+        resourceIdAllocator = null;
+        if (asyncEventWriter != null) {
+            asyncEventWriter.shutdown();
+        }
+    }
+
+    @Override
+    public long deleteArchivedEventsBefore(final Instant before) {
+        Objects.requireNonNull(before, "before cannot be null");
+        return requireArchive().deleteSegmentsBefore(before);
+    }
+
+    @Override
+    public Application findApplicationByName(final String applicationName) {
+        Objects.requireNonNull(applicationName, "applicationName cannot be null");
+
+        return querydslSupport.execute((connection, configuration) -> APPLICATION_BY_NAME
+                .uniqueResult(connection, configuration, applicationName));
     }
 
     @Override
@@ -137,26 +475,81 @@ public class AuditComponent implements AuditService {
             final Instant eventsFrom, final Instant eventsTo,
             final long offset, final long limit) {
 
-        return querydslSupport.execute((connection, configuration) -> {
+        return findEventsInTiers(new ArchiveQuery(selectedAppIds, selectedEventTypeIds, dataFields, dataFilters,
+                eventsFrom, eventsTo, null).withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange),
+                offset, limit,
+                (databaseOffset, databaseLimit) -> querydslSupport.execute((connection, configuration) -> {
+
+                    return new ComplexEventLoader(connection, configuration,
+                            selectedAppIds,
+                            selectedEventTypeIds, dataFields,
+                            dataFilters, eventsFrom, eventsTo, databaseOffset, databaseLimit)
+                            .withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange)
+                            .withFieldCatalog(fieldCatalog)
+                            .withMetrics(metrics)
+                            .withSlowQueryLog(slowQueryLog)
+                            .loadEvents();
+                }));
+    }
+
+    @Override
+    public List<EventUi> findEventsPivoted(final Long[] selectedAppIds, final Long[] selectedEventTypeIds,
+            final Map<String, EventDataType> dataFields, final List<DataFilter> dataFilters,
+            final Instant eventsFrom, final Instant eventsTo,
+            final long offset, final long limit) {
+        Objects.requireNonNull(dataFields, "dataFields cannot be null");
+        return findEventsInTiers(new ArchiveQuery(selectedAppIds, selectedEventTypeIds, dataFields, dataFilters,
+                eventsFrom, eventsTo, null).withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange),
+                offset, limit,
+                (databaseOffset, databaseLimit) -> querydslSupport.execute((connection, configuration) -> {
+
+                    return new ComplexEventLoader(connection, configuration,
+                            selectedAppIds,
+                            selectedEventTypeIds, null,
+                            dataFilters, eventsFrom, eventsTo, databaseOffset, databaseLimit)
+                            .withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange)
+                            .loadPivotedEvents(dataFields);
+                }));
+    }
+
+    @Override
+    public EventPage findEvents(final Long[] selectedAppIds, final Long[] selectedEventTypeIds,
+            final List<String> dataFields, final List<DataFilter> dataFilters,
+            final Instant eventsFrom, final Instant eventsTo,
+            final EventCursor after, final long limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive, got: " + limit);
+        }
+        List<EventUi> events = querydslSupport.execute((connection, configuration) -> {
 
             return new ComplexEventLoader(connection, configuration,
                     selectedAppIds,
                     selectedEventTypeIds, dataFields,
-                    dataFilters, eventsFrom, eventsTo, offset, limit).loadEvents();
+                    dataFilters, eventsFrom, eventsTo, after, limit)
+                    .withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange)
+                    .withFieldCatalog(fieldCatalog)
+                    .withoutBinaryContent()
+                    .withMetrics(metrics)
+                    .withSlowQueryLog(slowQueryLog)
+                    .loadEvents(limit + 1);
         });
+        EventArchive archive = eventArchive;
+        if ((archive != null) && archive.overlaps(eventsFrom, eventsTo)) {
+            events = EventTierMerger.merge(events, archive.iterator(new ArchiveQuery(selectedAppIds,
+                    selectedEventTypeIds, dataFields, dataFilters, eventsFrom, eventsTo, after)
+                    .withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange)), 0, limit + 1);
+        }
+        return ComplexEventLoader.toEventPage(events, limit);
     }
 
-    private EventType findEventType(final long applicationId, final String eventTypeName) {
-        return querydslSupport.execute((connection, configuration) -> {
-            QEventType qEventType = QEventType.eventType;
-            return new SQLQuery(connection, configuration)
-                    .from(qEventType)
-                    .where(qEventType.applicationId.eq(applicationId).and(qEventType.name.eq(eventTypeName)))
-                    .uniqueResult(ConstructorExpression.create(EventType.class,
-                            qEventType.eventTypeId,
-                            qEventType.name,
-                            qEventType.applicationId));
-        });
+    private CachedEventType findEventType(final long applicationId, final String eventTypeName) {
+        return querydslSupport.execute((connection, configuration) -> EVENT_TYPE_BY_APP_ID_AND_NAME
+                .uniqueResult(connection, configuration, applicationId, eventTypeName));
+    }
+
+    private CachedEventType findEventType(final EventTypeKey key) {
+        return querydslSupport.execute((connection, configuration) -> EVENT_TYPE_BY_APP_NAME_AND_NAME
+                .uniqueResult(connection, configuration, key.getApplicationName(), key.getEventTypeName()));
     }
 
     @Override
@@ -218,21 +611,25 @@ public class AuditComponent implements AuditService {
         Objects.requireNonNull(applicationName, "applicationName cannot be null");
         Objects.requireNonNull(eventTypeName, "eventTypeName cannot be null");
 
-        AuditEventType cachedAuditEventType = auditEventTypeCache.get(new AuditEventTypeKey(applicationName,
-                eventTypeName));
-        if (cachedAuditEventType != null) {
-            return cachedAuditEventType;
+        EventTypeKey key = new EventTypeKey(applicationName, eventTypeName);
+        CachedEventType cachedEventType = eventTypeCache.get(key);
+        if (cachedEventType != null) {
+            return cachedEventType.toAuditEventType();
         }
 
-        return transactionHelper.required(() -> {
-
-            AuditEventType auditEventType = selectAuditEventType(applicationName, eventTypeName);
-            if (auditEventType != null) {
-                auditEventTypeCache.put(new AuditEventTypeKey(applicationName, eventTypeName), auditEventType);
-            }
+        // only a committed event type may be cached, the lookup in a new transaction does not see uncommitted ones
+        CachedEventType committedEventType = transactionHelper.requiresNew(() -> findEventType(key));
+        if (committedEventType != null) {
+            eventTypeCache.put(key, committedEventType);
+            return committedEventType.toAuditEventType();
+        }
+        CachedEventType eventType = transactionHelper.required(() -> findEventType(key));
+        return eventType == null ? null : eventType.toAuditEventType();
+    }
 
-            return auditEventType;
-        });
+    @Override
+    public CacheStatistics getEventTypeCacheStatistics() {
+        return eventTypeCache.getStatistics();
     }
 
     @Override
@@ -260,7 +657,7 @@ public class AuditComponent implements AuditService {
 
     @Override
     public EventUi getEventById(final long eventId, final String... dataFields) {
-        return querydslSupport.execute((connection, configuration) -> {
+        EventUi event = querydslSupport.execute((connection, configuration) -> {
             QEventData qEventData = QEventData.eventData;
             SingleEventLoader singleEventLoader = new SingleEventLoader(connection, configuration);
             if ((dataFields == null) || (dataFields.length == 0)) {
@@ -269,105 +666,467 @@ public class AuditComponent implements AuditService {
                 return singleEventLoader.loadEvent(eventId, qEventData.eventDataName.in(dataFields));
             }
         });
+        EventArchive archive = eventArchive;
+        if ((event != null) || (archive == null)) {
+            return event;
+        }
+        return archive.findEventsByIds(Collections.singleton(eventId), archivedDataFieldFilter(dataFields))
+                .get(eventId);
+    }
+
+    @Override
+    public List<EventUi> getEventsByIds(final long[] eventIds, final String... dataFields) {
+        Objects.requireNonNull(eventIds, "eventIds cannot be null");
+        BooleanExpression eventDataPred = ((dataFields == null) || (dataFields.length == 0))
+                ? BooleanTemplate.TRUE
+                : QEventData.eventData.eventDataName.in(dataFields);
+        Set<Long> distinctIds = new LinkedHashSet<>();
+        for (long eventId : eventIds) {
+            distinctIds.add(eventId);
+        }
+        List<Long> idList = new ArrayList<>(distinctIds);
+        Map<Long, EventUi> eventsById = new HashMap<>();
+        querydslSupport.execute((connection, configuration) -> {
+            for (int from = 0; from < idList.size(); from += eventLookupChunkSize) {
+                List<Long> chunk = idList.subList(from, Math.min(from + eventLookupChunkSize, idList.size()));
+                new SingleEventLoader(connection, configuration)
+                        .loadEvents(chunk, eventDataPred)
+                        .forEach((event) -> eventsById.put(event.getId(), event));
+            }
+            return null;
+        });
+        EventArchive archive = eventArchive;
+        if ((archive != null) && (eventsById.size() < idList.size())) {
+            List<Long> missingIds = new ArrayList<>(idList);
+            missingIds.removeAll(eventsById.keySet());
+            eventsById.putAll(archive.findEventsByIds(missingIds, archivedDataFieldFilter(dataFields)));
+        }
+        List<EventUi> rval = new ArrayList<>(eventIds.length);
+        for (long eventId : eventIds) {
+            rval.add(eventsById.get(eventId));
+        }
+        return rval;
     }
 
     @Override
     public EventType getEventTypeByNameForApplication(final long applicationId, final String eventName)
             throws IllegalArgumentException {
         Objects.requireNonNull(eventName, "eventName cannot be null");
-        return querydslSupport.execute((connection, configuration) -> {
-            QEventType qEventType = QEventType.eventType;
-            return new SQLQuery(connection, configuration)
-                    .from(qEventType)
-                    .where(qEventType.applicationId.eq(applicationId))
-                    .where(qEventType.name.eq(eventName))
-                    .uniqueResult(ConstructorExpression.create(EventType.class,
-                            qEventType.eventTypeId,
-                            qEventType.name,
-                            qEventType.applicationId));
-        });
+        return querydslSupport.execute((connection, configuration) -> EVENT_TYPE_BY_APP_ID_AND_NAME_DTO
+                .uniqueResult(connection, configuration, applicationId, eventName));
     }
 
     @Override
     public List<EventType> getEventTypesByApplication(final long applicationId) {
-        return querydslSupport.execute((connection, configuration) -> {
-            QEventType qEventType = QEventType.eventType;
-            return new SQLQuery(connection, configuration)
-                    .from(qEventType)
-                    .where(qEventType.applicationId.eq(applicationId))
-                    .list(ConstructorExpression.create(EventType.class,
-                            qEventType.eventTypeId,
-                            qEventType.name,
-                            qEventType.applicationId));
-        });
+        return querydslSupport.execute((connection, configuration) -> EVENT_TYPES_BY_APP_ID
+                .list(connection, configuration, applicationId));
+    }
+
+    @Override
+    public AuditMetrics getMetrics() {
+        AsyncEventWriter writer = asyncEventWriter;
+        return metrics.snapshot(eventTypeCache.getStatistics(), writer == null ? 0 : writer.getQueuedEventCount());
     }
 
     @Override
     public Application getOrCreateApplication(final String applicationName) {
-        return Optional.ofNullable(findApplicationByName(applicationName)).orElseGet(
-                () -> createApplication(applicationName));
+        Objects.requireNonNull(applicationName, "applicationName cannot be null");
+        // an application created in the transaction of the caller would block the insert of a new transaction
+        Application app = transactionHelper.required(() -> findApplicationByName(applicationName));
+        if (app != null) {
+            return app;
+        }
+        // concurrent callers wait for the first one, which returns only after its transaction is committed
+        return applicationResolutions.execute(applicationName, () -> findOrCreateCommitted(
+                () -> findApplicationByName(applicationName), () -> createApplication(applicationName)));
     }
 
     @Override
     public EventType getOrCreateEventType(final String applicationName, final String eventTypeName) {
         Objects.requireNonNull(applicationName, "applicationName cannot be null");
         Objects.requireNonNull(eventTypeName, "eventTypeName cannot be null");
-        return transactionHelper.required(() -> {
-
-            Application app = requireAppByName(applicationName);
-            return Optional.ofNullable(findEventType(app.getApplicationId(), eventTypeName))
-                    .orElseGet(() -> createEventType(app, eventTypeName));
-
-        });
+        return resolveEventType(new EventTypeKey(applicationName, eventTypeName)).toEventType();
     }
 
     @Override
     public EventType[] getOrCreateEventTypesForApplication(final String applicationName, final String[] eventTypeNames) {
         Objects.requireNonNull(applicationName, "applicationName cannot be null");
         Objects.requireNonNull(eventTypeNames, "eventTypeNames cannot be null");
-        return transactionHelper.required(() -> {
-            requireAppByName(applicationName);
-            EventType[] rval = new EventType[eventTypeNames.length];
-            int idx = 0;
+        Set<String> distinctNames = new LinkedHashSet<>();
+        for (String typeName : eventTypeNames) {
+            distinctNames.add(Objects.requireNonNull(typeName, "eventTypeNames cannot contain null"));
+        }
+        Map<String, CachedEventType> eventTypes = new HashMap<>();
+        List<String> uncachedNames = new ArrayList<>();
+        for (String typeName : distinctNames) {
+            CachedEventType eventType = eventTypeCache.get(new EventTypeKey(applicationName, typeName));
+            if (eventType == null) {
+                uncachedNames.add(typeName);
+            } else {
+                eventTypes.put(typeName, eventType);
+            }
+        }
+        if (uncachedNames.isEmpty()) {
+            transactionHelper.required(() -> requireAppByName(applicationName));
+        } else {
+            Map<String, CachedEventType> committedEventTypes;
+            try {
+                // looked up and created in a new transaction, so only committed event types get into the cache
+                committedEventTypes = transactionHelper.requiresNew(() -> {
+                    Application app = findApplicationByName(applicationName);
+                    return app == null ? null : findOrCreateEventTypes(app, uncachedNames);
+                });
+            } catch (RuntimeException e) {
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+                // another caller created some of the event types concurrently. Only the new transaction of the batch
+                // is rolled back, so the event types are resolved one by one, each in a new transaction again.
+                committedEventTypes = null;
+            }
+            if (committedEventTypes == null) {
+                // the application is not committed yet, or the batch failed, resolve the event types one by one
+                transactionHelper.required(() -> requireAppByName(applicationName));
+                return Arrays.stream(eventTypeNames)
+                        .map((typeName) -> getOrCreateEventType(applicationName, typeName))
+                        .toArray(EventType[]::new);
+            }
+            committedEventTypes.forEach((typeName, eventType) -> eventTypeCache
+                    .put(new EventTypeKey(applicationName, typeName), eventType));
+            eventTypes.putAll(committedEventTypes);
+        }
+        return Arrays.stream(eventTypeNames)
+                .map((typeName) -> eventTypes.get(typeName).toEventType())
+                .toArray(EventType[]::new);
+    }
+
+    /**
+     * Looks up or creates a row in a new transaction, so the returned value is committed and can be shared with other
+     * threads. If the insert failed because another node created the row since the lookup, the failed transaction is
+     * rolled back and the row is looked up again in another new transaction.
+     */
+    private <T> T findOrCreateCommitted(final Supplier<T> finder, final Supplier<T> creator) {
+        try {
+            return transactionHelper.requiresNew(() -> Optional.ofNullable(finder.get()).orElseGet(creator));
+        } catch (RuntimeException e) {
+            if (!isDuplicateKey(e)) {
+                throw e;
+            }
+            T rval = transactionHelper.requiresNew(() -> finder.get());
+            if (rval == null) {
+                throw e;
+            }
+            return rval;
+        }
+    }
+
+    /**
+     * Looks up or creates the event type in a new transaction, so the returned event type is committed and can be
+     * shared with other threads.
+     *
+     * @return the event type or <code>null</code> if the application is not committed.
+     */
+    private CachedEventType findOrCreateCommittedEventType(final EventTypeKey key) {
+        Application app = transactionHelper.requiresNew(() -> findApplicationByName(key.getApplicationName()));
+        if (app == null) {
+            return null;
+        }
+        return findOrCreateCommitted(() -> findEventType(app.getApplicationId(), key.getEventTypeName()),
+                () -> createEventType(app, key.getEventTypeName()));
+    }
+
+    /**
+     * Looks up the event types with one query per chunk of names and creates the missing ones with one batched
+     * insert.
+     */
+    private Map<String, CachedEventType> findOrCreateEventTypes(final Application app,
+            final List<String> eventTypeNames) {
+        return querydslSupport.execute((connection, configuration) -> {
+            EventTypeBatchResolver resolver = new EventTypeBatchResolver(connection, configuration,
+                    app.getApplicationId(), eventLookupChunkSize);
+            Map<String, CachedEventType> rval = resolver.findEventTypes(eventTypeNames);
+            Map<String, Long> resourceIds = new LinkedHashMap<>();
             for (String typeName : eventTypeNames) {
-                rval[idx++] = getOrCreateEventType(applicationName, typeName);
+                if (!rval.containsKey(typeName)) {
+                    resourceIds.put(typeName, createResource());
+                }
             }
+            rval.putAll(resolver.insertEventTypes(resourceIds));
             return rval;
         });
     }
 
     @Override
     public List<FieldWithType> getResultFieldsWithTypes(final Long[] selectedAppId, final Long[] selectedEventTypeId) {
+        Objects.requireNonNull(selectedEventTypeId, "selectedEventTypeId cannot be null");
         return querydslSupport.execute((connection, configuration) -> {
+            long startNanos = System.nanoTime();
+            Map<String, Set<EventDataType>> fieldTypes = fieldCatalog.getFieldTypes(connection, configuration,
+                    Arrays.asList(selectedAppId), Arrays.asList(selectedEventTypeId));
+            long loadedNanos = System.nanoTime();
+            List<FieldWithType> rval = fieldTypes.entrySet().stream()
+                    .flatMap((field) -> field.getValue().stream()
+                            .map((type) -> new FieldWithType(field.getKey(), type, null)))
+                    .collect(Collectors.toList());
+            long mappedNanos = System.nanoTime();
+            if (slowQueryLog.isSlow(mappedNanos - startNanos)) {
+                // the fields may come from more than one catalog query, so there is no single SQL to log
+                slowQueryLog.record("getResultFieldsWithTypes", connection, null, fieldTypes.size(),
+                        rval.size(), 0, loadedNanos - startNanos, mappedNanos - loadedNanos);
+            }
+            return rval;
+        });
+    }
 
-            QEvent qEvent = QEvent.event;
-            QEventType qEventType = QEventType.eventType;
-            QEventData qEventData = QEventData.eventData;
+    @Override
+    public List<SlowQuery> getSlowQueries() {
+        return slowQueryLog.getEntries();
+    }
 
-            List<Tuple> rawResult = new SQLQuery(connection, configuration)
-                    .from(qEvent)
-                    .join(qEventData).on(qEvent.eventId.eq(qEventData.eventId))
-                    .join(qEventType).on(qEvent.eventTypeId.eq(qEventType.eventTypeId))
-                    .where(qEventType.applicationId.in(Arrays.asList(selectedAppId))
-                            .and(qEventType.eventTypeId.in(Arrays.asList(selectedEventTypeId))))
-                    .distinct()
-                    .list(qEventData.eventDataName, qEventData.eventDataType);
-
-            return rawResult.stream().map((row) ->
-                    new FieldWithType(
-                            row.get(qEventData.eventDataName),
-                            EventDataType.valueOf(row.get(qEventData.eventDataType)),
-                            null))
-                    .collect(Collectors.toList());
+    @Override
+    public void invalidateAllEventTypes() {
+        eventTypeCache.invalidateAll();
+    }
+
+    @Override
+    public void invalidateEventType(final String applicationName, final String eventTypeName) {
+        eventTypeCache.invalidate(new EventTypeKey(applicationName, eventTypeName));
+    }
+
+    @Override
+    public void invalidateEventTypes(final String applicationName) {
+        Objects.requireNonNull(applicationName, "applicationName cannot be null");
+        eventTypeCache.invalidateApplication(applicationName);
+    }
+
+    @Override
+    public void invalidateFieldCatalog() {
+        fieldCatalog.invalidateAll();
+    }
+
+    /**
+     * Whether the exception was caused by an integrity constraint violation (SQLSTATE class 23), e.g. a duplicate
+     * unique key.
+     */
+    private static boolean isDuplicateKey(final RuntimeException e) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if ((sqlState != null) && sqlState.startsWith("23")) {
+                    return true;
+                }
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    @Override
+    public BulkLogResult logEvents(final Collection<AuditEvent> events) {
+        BulkLogResult result = persistEvents(events);
+        metrics.recordLoggedEvents(result.getEventCount());
+        return result;
+    }
+
+    /**
+     * Persists the events in one transaction, used by {@link #logEvents(Collection)} and the asynchronous writer.
+     */
+    private BulkLogResult persistEvents(final Collection<AuditEvent> events) {
+        Objects.requireNonNull(events, "events cannot be null");
+        long startNanos = System.nanoTime();
+        List<AuditEvent> eventList = new ArrayList<>(events);
+        Map<EventTypeKey, Long> eventTypeIds = new LinkedHashMap<>();
+        try {
+            return transactionHelper.required(() -> {
+                resolveEventTypeIds(eventList, eventTypeIds);
+                long eventDataCount = querydslSupport.execute((connection, configuration) -> {
+                    return new BulkEventPersister(connection, configuration,
+                            eventBatchSize, eventDataBatchSize, batchGeneratedKeys, fieldCatalog)
+                            .persist(eventList, eventTypeIds);
+                });
+                metrics.recordEventDataRows(eventDataCount);
+                return new BulkLogResult(eventList.size(), eventDataCount, eventTypeIds.size(),
+                        System.nanoTime() - startNanos);
+            });
+        } catch (RuntimeException e) {
+            // a cached event type may have been deleted since it was cached, look it up again next time
+            eventTypeIds.keySet().forEach(eventTypeCache::invalidate);
+            throw e;
+        }
+    }
+
+    @Override
+    public void resetMetrics() {
+        metrics.reset();
+    }
+
+    @Override
+    public long streamEvents(final Long[] selectedAppIds, final Long[] selectedEventTypeIds,
+            final List<String> dataFields, final List<DataFilter> dataFilters,
+            final Instant eventsFrom, final Instant eventsTo,
+            final int fetchSize, final Consumer<EventUi> consumer) {
+        EventArchive archive = eventArchive;
+        EventTierMerger merger = (archive != null) && archive.overlaps(eventsFrom, eventsTo)
+                ? new EventTierMerger(archive.iterator(new ArchiveQuery(selectedAppIds, selectedEventTypeIds,
+                        dataFields, dataFilters, eventsFrom, eventsTo, null)
+                        .withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange)), consumer)
+                : null;
+        Consumer<EventUi> databaseConsumer = merger == null ? consumer : merger;
+        // without a transaction, drivers like the one of PostgreSQL ignore the fetch size and read the whole result
+        return transactionHelper.required(() -> {
+            long eventCount = querydslSupport.execute((connection, configuration) -> {
+
+                return new ComplexEventLoader(connection, configuration,
+                        selectedAppIds,
+                        selectedEventTypeIds, dataFields,
+                        dataFilters, eventsFrom, eventsTo, 0, -1)
+                        .withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange)
+                        .withoutBinaryContent()
+                        .streamEvents(fetchSize, databaseConsumer);
+            });
+            return merger == null ? eventCount : merger.finish();
         });
     }
 
     @Override
     public void logEvent(final AuditEvent event) {
-        transactionHelper.required(() -> {
-            EventType eventType = getOrCreateEventType(event.getApplicationName(), event.getName());
-            return new EventPersister(transactionHelper, querydslSupport, eventType.getId(), event).get();
+        Objects.requireNonNull(event, "event cannot be null");
+        long startNanos = System.nanoTime();
+        AsyncEventWriter writer = asyncEventWriter;
+        if (writer != null) {
+            writer.submit(event);
+        } else {
+            persistEvent(event);
+        }
+        metrics.recordLogEvent(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public <R> R readBinaryData(final long eventId, final String dataName, final Function<InputStream, R> reader) {
+        Objects.requireNonNull(dataName, "dataName cannot be null");
+        Objects.requireNonNull(reader, "reader cannot be null");
+        boolean[] found = new boolean[1];
+        // the Blob is only guaranteed to be valid until the end of the transaction
+        R rval = transactionHelper.required(() -> {
+            return querydslSupport.execute((connection, configuration) -> {
+
+                QEventData qEventData = QEventData.eventData;
+                Blob blob = new SQLQuery(connection, configuration)
+                        .from(qEventData)
+                        .where(qEventData.eventId.eq(eventId)
+                                .and(qEventData.eventDataName.eq(dataName))
+                                .and(qEventData.eventDataType.eq(EventDataType.BINARY.toString())))
+                        .uniqueResult(qEventData.binaryValue);
+                if (blob == null) {
+                    return null;
+                }
+                found[0] = true;
+                try {
+                    try (InputStream in = blob.getBinaryStream()) {
+                        return reader.apply(in);
+                    } finally {
+                        blob.free();
+                    }
+                } catch (SQLException | IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
         });
+        EventArchive archive = eventArchive;
+        if (found[0] || (archive == null)) {
+            return rval;
+        }
+        EventUi archivedEvent = archive.findEventsByIds(Collections.singleton(eventId),
+                (name, type) -> name.equals(dataName) && (type == EventDataType.BINARY)).get(eventId);
+        EventData eventData = archivedEvent == null ? null : archivedEvent.getEventData().get(dataName);
+        if ((eventData == null) || (eventData.getBinaryValue() == null)) {
+            return null;
+        }
+        return reader.apply(new ByteArrayInputStream(eventData.getBinaryValue()));
+    }
+
+    @Override
+    public void logEvent(final AuditEvent event, final Map<String, InputStream> binaryData) {
+        Objects.requireNonNull(event, "event cannot be null");
+        Objects.requireNonNull(binaryData, "binaryData cannot be null");
+        // the streams belong to the caller, so the event is never handed over to the asynchronous writer
+        long startNanos = System.nanoTime();
+        persistEvent(event, binaryData);
+        metrics.recordLogEvent(System.nanoTime() - startNanos);
+    }
+
+    private void persistEvent(final AuditEvent event) {
+        persistEvent(event, Collections.emptyMap());
+    }
+
+    private void persistEvent(final AuditEvent event, final Map<String, InputStream> binaryStreams) {
+        EventTypeKey key = new EventTypeKey(event.getApplicationName(), event.getName());
+        try {
+            transactionHelper.required(() -> {
+                CachedEventType eventType = resolveEventType(key);
+                return new EventPersister(transactionHelper, querydslSupport, eventType.getEventTypeId(), event,
+                        eventDataBatchSize, binaryStreams, fieldCatalog).get();
+            });
+            metrics.recordEventDataRows(event.getEventDataArray().length + binaryStreams.size());
+        } catch (RuntimeException e) {
+            // the cached event type may have been deleted since it was cached, look it up again next time
+            eventTypeCache.invalidate(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Resolves the event types of the events, calling {@link #resolveEventType(EventTypeKey)} once per distinct
+     * application and event type name pair.
+     */
+    private void resolveEventTypeIds(final List<AuditEvent> events, final Map<EventTypeKey, Long> eventTypeIds) {
+        for (AuditEvent event : events) {
+            Objects.requireNonNull(event, "events cannot contain null");
+            EventTypeKey key = new EventTypeKey(event.getApplicationName(), event.getName());
+            if (!eventTypeIds.containsKey(key)) {
+                eventTypeIds.put(key, resolveEventType(key).getEventTypeId());
+            }
+        }
+    }
+
+    /**
+     * Returns the event type from the cache, or looks it up (creating it if it does not exist yet) and caches it.
+     *
+     * @throws IllegalArgumentException
+     *             if the application does not exist.
+     */
+    private CachedEventType resolveEventType(final EventTypeKey key) {
+        CachedEventType cachedEventType = eventTypeCache.get(key);
+        if (cachedEventType != null) {
+            return cachedEventType;
+        }
+        // concurrent callers of the same event type wait for the first one instead of racing to create it
+        CachedEventType committedEventType = eventTypeResolutions.execute(key, () -> {
+            CachedEventType eventType = findOrCreateCommittedEventType(key);
+            if (eventType != null) {
+                eventTypeCache.put(key, eventType);
+            }
+            return eventType;
+        });
+        if (committedEventType != null) {
+            return committedEventType;
+        }
+        // the application is not committed yet, it may have been created in the transaction of the caller
+        return transactionHelper.required(() -> {
+            Application app = requireAppByName(key.getApplicationName());
+            return Optional.ofNullable(findEventType(app.getApplicationId(), key.getEventTypeName()))
+                    .orElseGet(() -> createEventType(app, key.getEventTypeName()));
+        });
+    }
+
+    private EventArchive requireArchive() {
+        EventArchive archive = eventArchive;
+        if (archive == null) {
+            throw new IllegalStateException("no archive directory is configured in ["
+                    + AuditRiConstants.PROP_ARCHIVE_DIRECTORY + "]");
+        }
+        return archive;
     }
 
     private Application requireAppByName(final String applicationName) {
@@ -376,6 +1135,20 @@ public class AuditComponent implements AuditService {
                 .orElseThrow(() -> new IllegalArgumentException("application [" + applicationName + "] does not exist"));
     }
 
+    /**
+     * Creates the resources of a block in a separate transaction, so the ids stay reserved even if the transaction
+     * that needed the first one of them is rolled back.
+     */
+    private List<Long> reserveResourceIds(final int count) {
+        return transactionHelper.requiresNew(() -> {
+            List<Long> resourceIds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                resourceIds.add(resourceService.createResource());
+            }
+            return resourceIds;
+        });
+    }
+
     public void setQuerydslSupport(final QuerydslSupport querydslSupport) {
         this.querydslSupport = querydslSupport;
     }
@@ -0,0 +1,187 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.everit.osgi.audit.ri.ext.AuditMetrics;
+import org.everit.osgi.audit.ri.ext.CacheStatistics;
+import org.everit.osgi.audit.ri.ext.LatencyHistogram;
+
+/**
+ * Thread-safe recorder of the metrics of the audit component. The counters are {@link LongAdder}s, so recording on
+ * the hot paths does not lock and threads recording at the same time do not contend on the same memory location.
+ */
+public class AuditMetricsRecorder {
+
+    /**
+     * The number of the latency histogram buckets, the last one counts every latency over about 9 minutes.
+     */
+    private static final int LATENCY_BUCKET_COUNT = 30;
+
+    private final LongAdder logEventCount = new LongAdder();
+
+    private final LongAdder[] logEventLatencyBuckets = new LongAdder[LATENCY_BUCKET_COUNT];
+
+    private final LongAdder logEventLatencyNanos = new LongAdder();
+
+    private final LongAdder eventDataRowCount = new LongAdder();
+
+    private final LongAdder searchCount = new LongAdder();
+
+    private final LongAdder queryBuildNanos = new LongAdder();
+
+    private final LongAdder queryExecutionNanos = new LongAdder();
+
+    private final LongAdder mappingNanos = new LongAdder();
+
+    private final LongAdder rowsRead = new LongAdder();
+
+    private final LongAdder eventsReturned = new LongAdder();
+
+    private final LongAdder droppedEventCount = new LongAdder();
+
+    private final LongAdder fieldCatalogHitCount = new LongAdder();
+
+    private final LongAdder fieldCatalogLoadCount = new LongAdder();
+
+    private volatile long startNanos = System.nanoTime();
+
+    public AuditMetricsRecorder() {
+        for (int i = 0; i < LATENCY_BUCKET_COUNT; i++) {
+            logEventLatencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    private static int latencyBucket(final long nanos) {
+        long micros = nanos / 1000;
+        if (micros <= 0) {
+            return 0;
+        }
+        return Math.min(63 - Long.numberOfLeadingZeros(micros), LATENCY_BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Records an event dropped by the asynchronous writer because its queue was full.
+     */
+    public void recordDroppedEvent() {
+        droppedEventCount.increment();
+    }
+
+    /**
+     * Records the <code>event_data</code> rows written for logged events.
+     */
+    public void recordEventDataRows(final long rowCount) {
+        eventDataRowCount.add(rowCount);
+    }
+
+    /**
+     * Records a lookup of the field catalog.
+     *
+     * @param hitCount
+     *            the number of the event types whose fields were served from the catalog.
+     * @param loadCount
+     *            the number of the event types whose fields were loaded from the database.
+     */
+    public void recordFieldCatalogLookup(final long hitCount, final long loadCount) {
+        fieldCatalogHitCount.add(hitCount);
+        fieldCatalogLoadCount.add(loadCount);
+    }
+
+    /**
+     * Records a <code>logEvent</code> call.
+     */
+    public void recordLogEvent(final long elapsedNanos) {
+        logEventCount.increment();
+        logEventLatencyBuckets[latencyBucket(elapsedNanos)].increment();
+        logEventLatencyNanos.add(elapsedNanos);
+    }
+
+    /**
+     * Records events logged in bulk, without latency.
+     */
+    public void recordLoggedEvents(final long eventCount) {
+        logEventCount.add(eventCount);
+    }
+
+    /**
+     * Records an event search.
+     *
+     * @param buildNanos
+     *            the time spent building the query.
+     * @param executionNanos
+     *            the time spent executing the query and reading the result rows.
+     * @param mapNanos
+     *            the time spent mapping the rows to events.
+     * @param rowCount
+     *            the number of the result rows.
+     * @param eventCount
+     *            the number of the returned events.
+     */
+    public void recordSearch(final long buildNanos, final long executionNanos, final long mapNanos,
+            final long rowCount, final long eventCount) {
+        searchCount.increment();
+        queryBuildNanos.add(buildNanos);
+        queryExecutionNanos.add(executionNanos);
+        mappingNanos.add(mapNanos);
+        rowsRead.add(rowCount);
+        eventsReturned.add(eventCount);
+    }
+
+    /**
+     * Sets all counters to zero. Values recorded while resetting may be lost.
+     */
+    public void reset() {
+        startNanos = System.nanoTime();
+        logEventCount.reset();
+        for (LongAdder bucket : logEventLatencyBuckets) {
+            bucket.reset();
+        }
+        logEventLatencyNanos.reset();
+        eventDataRowCount.reset();
+        searchCount.reset();
+        queryBuildNanos.reset();
+        queryExecutionNanos.reset();
+        mappingNanos.reset();
+        rowsRead.reset();
+        eventsReturned.reset();
+        droppedEventCount.reset();
+        fieldCatalogHitCount.reset();
+        fieldCatalogLoadCount.reset();
+    }
+
+    /**
+     * Creates a snapshot of the counters.
+     *
+     * @param eventTypeCacheStatistics
+     *            the counters of the event type cache.
+     * @param queuedEventCount
+     *            the number of the events waiting in the queue of the asynchronous writer.
+     */
+    public AuditMetrics snapshot(final CacheStatistics eventTypeCacheStatistics, final int queuedEventCount) {
+        long[] bucketCounts = new long[LATENCY_BUCKET_COUNT];
+        for (int i = 0; i < LATENCY_BUCKET_COUNT; i++) {
+            bucketCounts[i] = logEventLatencyBuckets[i].sum();
+        }
+        return new AuditMetrics(System.nanoTime() - startNanos, logEventCount.sum(),
+                new LatencyHistogram(bucketCounts, logEventLatencyNanos.sum()), eventDataRowCount.sum(),
+                searchCount.sum(), queryBuildNanos.sum(), queryExecutionNanos.sum(), mappingNanos.sum(),
+                rowsRead.sum(), eventsReturned.sum(), eventTypeCacheStatistics, queuedEventCount,
+                droppedEventCount.sum(), fieldCatalogHitCount.sum(), fieldCatalogLoadCount.sum());
+    }
+
+}
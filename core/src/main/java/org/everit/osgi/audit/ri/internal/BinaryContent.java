@@ -0,0 +1,58 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * The content of a BINARY event data to be inserted, bound with {@link BinaryContentType} as a stream. A byte array
+ * is streamed in place, and an {@link InputStream} is passed through as it is, so it is read by the driver only while
+ * the statement is executed.
+ */
+public class BinaryContent {
+
+    private final InputStream content;
+
+    private final long length;
+
+    public BinaryContent(final byte[] content) {
+        this(new ByteArrayInputStream(content), content.length);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param content
+     *            the content, read once by the driver.
+     * @param length
+     *            the length of the content in bytes, <code>-1</code> if unknown.
+     */
+    public BinaryContent(final InputStream content, final long length) {
+        this.content = content;
+        this.length = length;
+    }
+
+    public InputStream getContent() {
+        return content;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+}
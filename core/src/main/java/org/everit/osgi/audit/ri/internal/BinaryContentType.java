@@ -0,0 +1,80 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.types.AbstractType;
+
+/**
+ * Binds a {@link BinaryContent} with {@link PreparedStatement#setBinaryStream(int, java.io.InputStream, long)}, or
+ * without the length if it is unknown. Unlike binding a {@link java.sql.Blob}, this works with the drivers that read
+ * the length or the bytes of a Blob parameter before sending it, and the content is still not copied to the heap.
+ */
+public class BinaryContentType extends AbstractType<BinaryContent> {
+
+    /**
+     * The configurations the type is registered in.
+     */
+    private static final Set<Configuration> REGISTERED = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /**
+     * Registers the type in the configuration unless it is registered already.
+     */
+    public static void register(final Configuration configuration) {
+        synchronized (REGISTERED) {
+            if (REGISTERED.add(configuration)) {
+                configuration.register(new BinaryContentType());
+            }
+        }
+    }
+
+    public BinaryContentType() {
+        super(Types.BLOB);
+    }
+
+    @Override
+    public Class<BinaryContent> getReturnedClass() {
+        return BinaryContent.class;
+    }
+
+    /**
+     * Not supported, the content is only written. The binary values are read as {@link java.sql.Blob}s.
+     */
+    @Override
+    public BinaryContent getValue(final ResultSet rs, final int startIndex) throws SQLException {
+        throw new UnsupportedOperationException("binary content is only written");
+    }
+
+    @Override
+    public void setValue(final PreparedStatement st, final int startIndex, final BinaryContent value)
+            throws SQLException {
+        if (value.getLength() < 0) {
+            st.setBinaryStream(startIndex, value.getContent());
+        } else {
+            st.setBinaryStream(startIndex, value.getContent(), value.getLength());
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+import org.everit.osgi.audit.dto.AuditEvent;
+import org.everit.osgi.audit.dto.EventData;
+import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
+
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.dml.SQLInsertClause;
+
+/**
+ * Persists many audit events on one connection. The <code>event</code> rows are inserted in JDBC batches of
+ * <code>eventBatchSize</code> rows, then the <code>event_data</code> rows of the batch are inserted using the
+ * generated event ids.
+ */
+public class BulkEventPersister {
+
+    private final Connection connection;
+
+    private final Configuration configuration;
+
+    private final int eventBatchSize;
+
+    private final int eventDataBatchSize;
+
+    private final boolean batchGeneratedKeys;
+
+    private final FieldCatalog fieldCatalog;
+
+    private final QEvent qEvent = QEvent.event;
+
+    /**
+     * Constructor.
+     *
+     * @param batchGeneratedKeys
+     *            if <code>false</code>, the <code>event</code> rows are inserted one by one, because the JDBC driver
+     *            cannot return the generated keys of a batch.
+     * @param fieldCatalog
+     *            receives the fields of the events.
+     */
+    public BulkEventPersister(final Connection connection, final Configuration configuration,
+            final int eventBatchSize, final int eventDataBatchSize, final boolean batchGeneratedKeys,
+            final FieldCatalog fieldCatalog) {
+        this.connection = connection;
+        this.configuration = configuration;
+        this.eventBatchSize = eventBatchSize;
+        this.eventDataBatchSize = eventDataBatchSize;
+        this.batchGeneratedKeys = batchGeneratedKeys;
+        this.fieldCatalog = fieldCatalog;
+    }
+
+    private long[] insertEvents(final List<AuditEvent> events, final Map<EventTypeKey, Long> eventTypeIds) {
+        long[] eventIds = new long[events.size()];
+        if (!batchGeneratedKeys) {
+            int idx = 0;
+            for (AuditEvent event : events) {
+                eventIds[idx++] = newEventInsert(event, eventTypeIds).executeWithKey(qEvent.eventId);
+            }
+            return eventIds;
+        }
+        SQLInsertClause insert = null;
+        for (AuditEvent event : events) {
+            insert = newEventInsert(event, eventTypeIds, insert).addBatch();
+        }
+        List<Long> keys = insert.executeWithKeys(qEvent.eventId);
+        if (keys.size() != eventIds.length) {
+            throw new IllegalStateException("the JDBC driver returned " + keys.size() + " generated keys for a batch of "
+                    + eventIds.length + " events, disable batched generated keys in the configuration");
+        }
+        for (int i = 0; i < eventIds.length; i++) {
+            eventIds[i] = keys.get(i);
+        }
+        return eventIds;
+    }
+
+    private SQLInsertClause newEventInsert(final AuditEvent event, final Map<EventTypeKey, Long> eventTypeIds) {
+        return newEventInsert(event, eventTypeIds, null);
+    }
+
+    private SQLInsertClause newEventInsert(final AuditEvent event, final Map<EventTypeKey, Long> eventTypeIds,
+            final SQLInsertClause batchInsert) {
+        Long eventTypeId = eventTypeIds.get(new EventTypeKey(event.getApplicationName(), event.getName()));
+        if (eventTypeId == null) {
+            throw new IllegalArgumentException("event type [" + event.getName() + "] of application ["
+                    + event.getApplicationName() + "] is not resolved");
+        }
+        SQLInsertClause insert = batchInsert;
+        if (insert == null) {
+            insert = new SQLInsertClause(connection, configuration, qEvent);
+        }
+        return insert.set(qEvent.saveTimestamp, Timestamp.from(event.getSaveTimeStamp()))
+                .set(qEvent.eventTypeId, eventTypeId);
+    }
+
+    /**
+     * Persists the events.
+     *
+     * @param events
+     *            the events to persist.
+     * @param eventTypeIds
+     *            the ids of the event types of all events.
+     * @return the number of inserted <code>event_data</code> rows.
+     */
+    public long persist(final List<AuditEvent> events, final Map<EventTypeKey, Long> eventTypeIds) {
+        EventDataBatchInserter eventDataInserter =
+                new EventDataBatchInserter(connection, configuration, eventDataBatchSize);
+        for (int from = 0; from < events.size(); from += eventBatchSize) {
+            List<AuditEvent> chunk = events.subList(from, Math.min(from + eventBatchSize, events.size()));
+            long[] eventIds = insertEvents(chunk, eventTypeIds);
+            int idx = 0;
+            for (AuditEvent event : chunk) {
+                long eventId = eventIds[idx++];
+                for (EventData eventData : event.getEventDataArray()) {
+                    eventDataInserter.add(eventId, eventData);
+                }
+            }
+        }
+        eventDataInserter.flush();
+        for (AuditEvent event : events) {
+            Long eventTypeId = eventTypeIds.get(new EventTypeKey(event.getApplicationName(), event.getName()));
+            fieldCatalog.recordEventData(eventTypeId, event.getEventDataArray());
+        }
+        return eventDataInserter.getInsertedRowCount();
+    }
+
+}
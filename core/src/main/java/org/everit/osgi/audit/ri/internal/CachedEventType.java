@@ -0,0 +1,67 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import org.everit.osgi.audit.dto.AuditEventType;
+
+/**
+ * The cached representation of an event type. It contains every column of the <code>event_type</code> table, so it
+ * can serve both {@link EventType} and {@link AuditEventType} lookups.
+ */
+public class CachedEventType {
+
+    private final long eventTypeId;
+
+    private final String name;
+
+    private final long applicationId;
+
+    private final Long resourceId;
+
+    public CachedEventType(final Long eventTypeId, final String name, final Long applicationId,
+            final Long resourceId) {
+        this.eventTypeId = eventTypeId;
+        this.name = name;
+        this.applicationId = applicationId;
+        this.resourceId = resourceId;
+    }
+
+    public long getApplicationId() {
+        return applicationId;
+    }
+
+    public long getEventTypeId() {
+        return eventTypeId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Long getResourceId() {
+        return resourceId;
+    }
+
+    public AuditEventType toAuditEventType() {
+        return new AuditEventType(eventTypeId, name, resourceId);
+    }
+
+    public EventType toEventType() {
+        return new EventType(eventTypeId, name, applicationId);
+    }
+
+}
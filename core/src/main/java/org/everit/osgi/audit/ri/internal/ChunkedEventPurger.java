@@ -0,0 +1,120 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.everit.osgi.audit.ri.ext.PurgeReport;
+import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
+import org.everit.osgi.querydsl.support.QuerydslSupport;
+import org.everit.osgi.transaction.helper.api.TransactionHelper;
+
+import com.mysema.query.sql.SQLQuery;
+import com.mysema.query.sql.dml.SQLDeleteClause;
+
+/**
+ * Deletes events in bounded chunks. A chunk is selected by the <code>(event_type_id, save_timestamp)</code> index,
+ * then its <code>event_data</code> and <code>event</code> rows are deleted by event id in a new transaction. The
+ * counters are accumulated over all calls of {@link #purge(Collection, Instant)}.
+ */
+public class ChunkedEventPurger {
+
+    private final TransactionHelper transactionHelper;
+
+    private final QuerydslSupport querydslSupport;
+
+    private final int chunkSize;
+
+    private final long chunkPauseMillis;
+
+    private long eventCount;
+
+    private long eventDataCount;
+
+    private int chunkCount;
+
+    public ChunkedEventPurger(final TransactionHelper transactionHelper, final QuerydslSupport querydslSupport,
+            final int chunkSize, final long chunkPauseMillis) {
+        this.transactionHelper = transactionHelper;
+        this.querydslSupport = querydslSupport;
+        this.chunkSize = chunkSize;
+        this.chunkPauseMillis = chunkPauseMillis;
+    }
+
+    private PurgeReport deleteChunk(final Collection<Long> eventTypeIds, final Timestamp before) {
+        return querydslSupport.execute((connection, configuration) -> {
+            QEvent qEvent = QEvent.event;
+            List<Long> eventIds = new SQLQuery(connection, configuration)
+                    .from(qEvent)
+                    .where(qEvent.eventTypeId.in(eventTypeIds).and(qEvent.saveTimestamp.lt(before)))
+                    .limit(chunkSize)
+                    .list(qEvent.eventId);
+            if (eventIds.isEmpty()) {
+                return new PurgeReport(0, 0, 0, 0);
+            }
+            QEventData qEventData = QEventData.eventData;
+            long deletedEventData = new SQLDeleteClause(connection, configuration, qEventData)
+                    .where(qEventData.eventId.in(eventIds))
+                    .execute();
+            long deletedEvents = new SQLDeleteClause(connection, configuration, qEvent)
+                    .where(qEvent.eventId.in(eventIds))
+                    .execute();
+            return new PurgeReport(deletedEvents, deletedEventData, 1, 0);
+        });
+    }
+
+    /**
+     * Deletes the events of the given event types saved before the given instant.
+     *
+     * @return <code>false</code> if the thread was interrupted, the purge stopped after the last committed chunk.
+     */
+    public boolean purge(final Collection<Long> eventTypeIds, final Instant before) {
+        if (eventTypeIds.isEmpty()) {
+            return true;
+        }
+        Timestamp beforeTimestamp = Timestamp.from(before);
+        while (true) {
+            PurgeReport chunk = transactionHelper.requiresNew(() -> deleteChunk(eventTypeIds, beforeTimestamp));
+            eventCount += chunk.getEventCount();
+            eventDataCount += chunk.getEventDataCount();
+            chunkCount += chunk.getChunkCount();
+            if (chunk.getEventCount() < chunkSize) {
+                return true;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if (chunkPauseMillis > 0) {
+                try {
+                    Thread.sleep(chunkPauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    public PurgeReport toReport(final long elapsedNanos) {
+        return new PurgeReport(eventCount, eventDataCount, chunkCount, elapsedNanos);
+    }
+
+}
@@ -0,0 +1,180 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import com.mysema.query.NonUniqueResultException;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.SQLQuery;
+import com.mysema.query.sql.SQLSerializer;
+import com.mysema.query.types.ParamExpression;
+import com.mysema.query.types.Path;
+
+/**
+ * A query of fixed shape that is serialized to SQL only once. The query is built with {@link ParamExpression}s in
+ * place of the values that change from call to call, and the values of the parameters are bound in the order of the
+ * parameters passed to the constructor. Executing the same SQL string every time also lets the connection pool reuse
+ * its cached prepared statement.
+ *
+ * @param <T>
+ *            the type of the result rows.
+ */
+public class CompiledQuery<T> {
+
+    /**
+     * The SQL and the bindings serialized for one {@link Configuration}.
+     */
+    private static class Compiled {
+
+        private final Configuration configuration;
+
+        private final String sql;
+
+        private final List<Object> constants;
+
+        private final List<Path<?>> constantPaths;
+
+        Compiled(final Configuration configuration, final String sql, final List<Object> constants,
+                final List<Path<?>> constantPaths) {
+            this.configuration = configuration;
+            this.sql = sql;
+            this.constants = constants;
+            this.constantPaths = constantPaths;
+        }
+
+    }
+
+    private final Function<SQLQuery, SQLQuery> shape;
+
+    private final Path<?>[] projection;
+
+    private final Function<Object[], T> rowMapper;
+
+    private final List<ParamExpression<?>> params;
+
+    private volatile Compiled compiled;
+
+    /**
+     * Constructor.
+     *
+     * @param shape
+     *            adds the from, join and where clauses to a detached query.
+     * @param projection
+     *            the selected columns.
+     * @param rowMapper
+     *            creates a result object from the values of the selected columns.
+     * @param params
+     *            the parameters used by the shape, in the order of the arguments of the execution methods.
+     */
+    public CompiledQuery(final Function<SQLQuery, SQLQuery> shape, final Path<?>[] projection,
+            final Function<Object[], T> rowMapper, final ParamExpression<?>... params) {
+        this.shape = Objects.requireNonNull(shape, "shape cannot be null");
+        this.projection = projection.clone();
+        this.rowMapper = Objects.requireNonNull(rowMapper, "rowMapper cannot be null");
+        this.params = Collections.unmodifiableList(Arrays.asList(params));
+    }
+
+    private Compiled compile(final Configuration configuration) {
+        Compiled rval = compiled;
+        if ((rval == null) || (rval.configuration != configuration)) {
+            QueryMetadata metadata = shape.apply(new SQLQuery(configuration)).getMetadata().clone();
+            for (Path<?> column : projection) {
+                metadata.addProjection(column);
+            }
+            SQLSerializer serializer = new SQLSerializer(configuration);
+            serializer.serialize(metadata, false);
+            rval = new Compiled(configuration, serializer.toString(), new ArrayList<>(serializer.getConstants()),
+                    new ArrayList<>(serializer.getConstantPaths()));
+            compiled = rval;
+        }
+        return rval;
+    }
+
+    /**
+     * Executes the query.
+     *
+     * @param args
+     *            the values of the parameters.
+     * @return the result rows, never <code>null</code>.
+     * @throws IllegalArgumentException
+     *             if the number of the arguments does not match the number of the parameters.
+     */
+    public List<T> list(final Connection connection, final Configuration configuration, final Object... args) {
+        if (args.length != params.size()) {
+            throw new IllegalArgumentException("expected " + params.size() + " arguments, got: " + args.length);
+        }
+        Compiled query = compile(configuration);
+        List<Object> bindings = new ArrayList<>(query.constants.size());
+        for (Object constant : query.constants) {
+            if (constant instanceof ParamExpression) {
+                int paramIdx = params.indexOf(constant);
+                if (paramIdx < 0) {
+                    throw new IllegalStateException("the parameter " + constant + " is not declared");
+                }
+                bindings.add(args[paramIdx]);
+            } else {
+                bindings.add(constant);
+            }
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(query.sql)) {
+            int paramIdx = 1;
+            for (int i = 0; i < bindings.size(); i++) {
+                paramIdx += configuration.set(stmt, query.constantPaths.get(i), paramIdx, bindings.get(i));
+            }
+            List<T> rval = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Object[] row = new Object[projection.length];
+                    for (int i = 0; i < projection.length; i++) {
+                        row[i] = configuration.get(rs, projection[i], i + 1, projection[i].getType());
+                    }
+                    rval.add(rowMapper.apply(row));
+                }
+            }
+            return rval;
+        } catch (SQLException e) {
+            throw configuration.translate(query.sql, bindings, e);
+        }
+    }
+
+    /**
+     * Executes the query that returns at most one row.
+     *
+     * @return the result or <code>null</code> if there is no result row.
+     * @throws NonUniqueResultException
+     *             if there are more result rows.
+     */
+    public T uniqueResult(final Connection connection, final Configuration configuration, final Object... args) {
+        List<T> rows = list(connection, configuration, args);
+        if (rows.size() > 1) {
+            throw new NonUniqueResultException();
+        }
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+}
@@ -17,34 +17,47 @@
 package org.everit.osgi.audit.ri.internal;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.everit.osgi.audit.dto.EventData;
+import org.everit.osgi.audit.dto.EventDataType;
 import org.everit.osgi.audit.ri.conf.search.api.DataFilter;
 import org.everit.osgi.audit.ri.conf.search.api.EventUi;
 import org.everit.osgi.audit.ri.conf.search.api.Operator;
+import org.everit.osgi.audit.ri.ext.EventCounts;
+import org.everit.osgi.audit.ri.ext.EventCursor;
+import org.everit.osgi.audit.ri.ext.EventPage;
 import org.everit.osgi.audit.ri.schema.qdsl.QApplication;
 import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
 import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
 import org.everit.osgi.audit.ri.schema.qdsl.QEventType;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.mysema.query.Tuple;
 import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.SQLBaseListener;
+import com.mysema.query.sql.SQLListenerContext;
 import com.mysema.query.sql.SQLQuery;
 import com.mysema.query.sql.SQLSubQuery;
 import com.mysema.query.support.Expressions;
 import com.mysema.query.types.Expression;
 import com.mysema.query.types.Ops;
 import com.mysema.query.types.expr.BooleanExpression;
+import com.mysema.query.types.expr.NumberExpression;
 
 public class ComplexEventLoader {
 
@@ -79,10 +92,27 @@ public class ComplexEventLoader {
 
     private final Instant eventsTo;
 
+    private final EventCursor after;
+
     private final long offset;
 
     private final long limit;
 
+    /**
+     * The types of the event data rows joined to the events, planned from the requested data fields.
+     */
+    private Set<EventDataType> valueTypes = EnumSet.allOf(EventDataType.class);
+
+    private FieldCatalog fieldCatalog;
+
+    private AuditMetricsRecorder metrics;
+
+    private SlowQueryLog slowQueryLog;
+
+    private boolean binaryContent = true;
+
+    private boolean halfOpenSaveTimestampRange;
+
     private final QEventType qEventType = QEventType.eventType;
 
     private final QApplication qApplication = QApplication.application;
@@ -94,6 +124,31 @@ public class ComplexEventLoader {
             final List<DataFilter> dataFilters,
             final Instant eventsFrom, final Instant eventsTo,
             final long offset, final long limit) {
+        this(connection, configuration, selectedAppIds, selectedEventTypeIds, dataFields, dataFilters,
+                eventsFrom, eventsTo, null, offset, limit);
+    }
+
+    /**
+     * Constructor for keyset pagination: the events are loaded after the position of <code>after</code>.
+     */
+    public ComplexEventLoader(final Connection connection, final Configuration configuration,
+            final Long[] selectedAppIds,
+            final Long[] selectedEventTypeIds,
+            final List<String> dataFields,
+            final List<DataFilter> dataFilters,
+            final Instant eventsFrom, final Instant eventsTo,
+            final EventCursor after, final long limit) {
+        this(connection, configuration, selectedAppIds, selectedEventTypeIds, dataFields, dataFilters,
+                eventsFrom, eventsTo, after, 0, limit);
+    }
+
+    private ComplexEventLoader(final Connection connection, final Configuration configuration,
+            final Long[] selectedAppIds,
+            final Long[] selectedEventTypeIds,
+            final List<String> dataFields,
+            final List<DataFilter> dataFilters,
+            final Instant eventsFrom, final Instant eventsTo,
+            final EventCursor after, final long offset, final long limit) {
         this.connection = connection;
         this.configuration = configuration;
         this.selectedAppIds = Arrays.asList(Objects.requireNonNull(selectedAppIds, "selectedAppIds cannot be null"));
@@ -102,6 +157,7 @@ public class ComplexEventLoader {
         this.dataFields = Optional.ofNullable(dataFields);
         this.eventsFrom = eventsFrom;
         this.eventsTo = eventsTo;
+        this.after = after;
         this.offset = offset;
         this.limit = limit;
     }
@@ -115,15 +171,9 @@ public class ComplexEventLoader {
         SQLSubQuery subQuery = new SQLSubQuery().from(qEventData);
         subQuery = subQuery.where(buildEventDataSubqueryPredicate());
         query = query.leftJoin(subQuery.list(
-                qEventData.eventId,
                 // localization.getLocalizedValue(evtData.eventDataName, locale),
-                qEventData.eventDataName,
-                qEventData.eventDataType,
-                qEventData.numberValue,
-                qEventData.stringValue,
-                qEventData.textValue,
-                qEventData.binaryValue,
-                qEventData.timestampValue), evtDataSubqueryAlias = QEventData.eventData)
+                EventDataProjectionPlanner.subqueryColumns(qEventData, selectedValueTypes())),
+                evtDataSubqueryAlias = QEventData.eventData)
                 .on(evtSubqueryAlias.eventId.eq(evtDataSubqueryAlias.eventId));
         // query = query.leftJoin(evtDataSubqueryAlias = evtData)
         // .on(evtSubqueryAlias.eventId.eq(evtDataSubqueryAlias.eventId));
@@ -131,13 +181,9 @@ public class ComplexEventLoader {
 
     private BooleanExpression buildEventDataSubqueryPredicate() {
         QEventData qEventData = QEventData.eventData;
-        BooleanExpression fieldPredicate = dataFields
+        return dataFields
                 .map((fields) -> qEventData.eventDataName.in(fields))
                 .orElseGet(() -> Expressions.predicate(Ops.EQ, Expressions.constant(1), Expressions.constant(1)));
-        return dataFilters.orElseGet(Collections::emptyList)
-                .stream()
-                .map(this::buildPredicateForFilter)
-                .reduce(fieldPredicate, (pred1, pred2) -> pred1.and(pred2));
     }
 
     private BooleanExpression buildEventSubqueryPredicate() {
@@ -147,30 +193,120 @@ public class ComplexEventLoader {
         if (selectedEventTypeIds != null) {
             rval = rval.and(qEvent.eventTypeId.in(selectedEventTypeIds));
         }
+        BooleanExpression saveTimestampPredicate = buildSaveTimestampPredicate(qEvent);
+        if (saveTimestampPredicate != null) {
+            rval = rval.and(saveTimestampPredicate);
+        }
+        List<DataFilter> filters = dataFilters.orElseGet(Collections::emptyList);
+        for (int i = 0; i < filters.size(); i++) {
+            rval = rval.and(buildExistsPredicateForFilter(filters.get(i), new QEventData("filterData" + i)));
+        }
+        return rval;
+    }
+
+    /**
+     * Restricts the save timestamp to the bounds of the search. In the half-open mode the range is
+     * <code>[eventsFrom, eventsTo)</code>, otherwise both bounds are inclusive if both are set and a single bound is
+     * exclusive.
+     *
+     * @return the predicate, <code>null</code> if neither bound is set.
+     */
+    private BooleanExpression buildSaveTimestampPredicate(final QEvent qEvent) {
+        if (halfOpenSaveTimestampRange) {
+            BooleanExpression rval = null;
+            if (eventsFrom != null) {
+                rval = qEvent.saveTimestamp.goe(Timestamp.from(eventsFrom));
+            }
+            if (eventsTo != null) {
+                BooleanExpression toPredicate = qEvent.saveTimestamp.lt(Timestamp.from(eventsTo));
+                rval = rval == null ? toPredicate : rval.and(toPredicate);
+            }
+            return rval;
+        }
         if ((eventsFrom != null) && (eventsTo != null)) {
-            rval = rval.and(qEvent.saveTimestamp.between(Timestamp.from(eventsFrom), Timestamp.from(eventsTo)));
+            return qEvent.saveTimestamp.between(Timestamp.from(eventsFrom), Timestamp.from(eventsTo));
         } else if (eventsFrom != null) {
-            rval = rval.and(qEvent.saveTimestamp.gt(Timestamp.from(eventsFrom)));
+            return qEvent.saveTimestamp.gt(Timestamp.from(eventsFrom));
         } else if (eventsTo != null) {
-            rval = rval.and(qEvent.saveTimestamp.lt(Timestamp.from(eventsTo)));
+            return qEvent.saveTimestamp.lt(Timestamp.from(eventsTo));
         }
-        return rval;
+        return null;
     }
 
-    private void buildFromClause() {
+    /**
+     * Counts the matching events grouped by application and event type. The offset, the limit and the data fields
+     * are ignored. The grouping runs over a subquery of the matching event ids, so a positive
+     * <code>maxCountedEvents</code> lets the database stop scanning after that many events. One more event than the
+     * maximum is counted, so reaching the maximum exactly is not reported as approximate.
+     */
+    public EventCounts countEvents(final long maxCountedEvents) {
+        QEvent qEvent = QEvent.event;
+        SQLSubQuery subQuery = new SQLSubQuery().from(qEvent)
+                .leftJoin(qEventType).on(qEvent.eventTypeId.eq(qEventType.eventTypeId))
+                .where(buildEventSubqueryPredicate());
+        if (maxCountedEvents > 0) {
+            subQuery = subQuery.limit(maxCountedEvents + 1);
+        }
+        QEvent countedEvent = new QEvent("countedEvent");
+        NumberExpression<Long> eventCount = countedEvent.eventId.count();
+        List<Tuple> rows = new SQLQuery(connection, configuration)
+                .from(subQuery.list(qEvent.eventId, qEvent.eventTypeId), countedEvent)
+                .leftJoin(qEventType).on(countedEvent.eventTypeId.eq(qEventType.eventTypeId))
+                .groupBy(qEventType.applicationId, countedEvent.eventTypeId)
+                .list(qEventType.applicationId, countedEvent.eventTypeId, eventCount);
+        long totalCount = 0;
+        Map<Long, Long> countsByApplicationId = new HashMap<>();
+        Map<Long, Long> countsByEventTypeId = new HashMap<>();
+        for (Tuple row : rows) {
+            long count = row.get(eventCount);
+            totalCount += count;
+            countsByApplicationId.merge(row.get(qEventType.applicationId), count, Long::sum);
+            countsByEventTypeId.merge(row.get(countedEvent.eventTypeId), count, Long::sum);
+        }
+        boolean approximate = (maxCountedEvents > 0) && (totalCount > maxCountedEvents);
+        if (approximate) {
+            totalCount = maxCountedEvents;
+        }
+        return new EventCounts(totalCount, countsByApplicationId, countsByEventTypeId, approximate);
+    }
+
+    /**
+     * Builds the paginated event subquery. A negative <code>fetchLimit</code> means all matching events.
+     */
+    private void buildFromClause(final long fetchLimit) {
         QEvent qEvent = QEvent.event;
         QEventType qEventType = QEventType.eventType;
         SQLSubQuery subQuery = new SQLSubQuery().from(qEvent)
                 .leftJoin(qEventType).on(qEvent.eventTypeId.eq(qEventType.eventTypeId))
-                .where(buildEventSubqueryPredicate())
-                .offset(offset)
-                .limit(limit);
+                .where(buildEventSubqueryPredicate());
+        if (fetchLimit >= 0) {
+            subQuery = subQuery.orderBy(qEvent.saveTimestamp.desc(), qEvent.eventId.asc())
+                    .limit(fetchLimit);
+        }
+        if (after != null) {
+            subQuery = subQuery.where(buildSeekPredicate());
+        } else {
+            subQuery = subQuery.offset(offset);
+        }
         query = query.from(subQuery.list(qEvent.eventId, qEvent.saveTimestamp, qEvent.eventTypeId),
                 evtSubqueryAlias = QEvent.event);
     }
 
-    private BooleanExpression buildPredicateForFilter(final DataFilter dataFilter) {
-        QEventData qEventData = QEventData.eventData;
+    /**
+     * Builds a semi-join restricting the events to the ones having an event data that matches the filter, so the
+     * filters eliminate events before the pagination is applied. The subquery can be answered from an index on
+     * <code>(event_id, event_data_name)</code>.
+     */
+    private BooleanExpression buildExistsPredicateForFilter(final DataFilter dataFilter,
+            final QEventData filterAlias) {
+        return new SQLSubQuery()
+                .from(filterAlias)
+                .where(filterAlias.eventId.eq(QEvent.event.eventId)
+                        .and(buildPredicateForFilter(dataFilter, filterAlias)))
+                .exists();
+    }
+
+    private BooleanExpression buildPredicateForFilter(final DataFilter dataFilter, final QEventData qEventData) {
         BooleanExpression pred = null;
         Expression<?> field;
         Object value;
@@ -194,39 +330,233 @@ public class ComplexEventLoader {
             break;
         case BINARY:
         default:
-            throw new IllegalArgumentException("unsupported operator: " + dataFilter.getOperator());
+            throw new IllegalArgumentException("unsupported event data type in filter: "
+                    + operands.getEventDataType());
         }
         pred = Expressions.predicate(operatorMapping.get(dataFilter.getOperator()), field, Expressions.constant(value));
-        return qEventData.eventDataName.ne(operands.getName()).or(pred);
+        return qEventData.eventDataName.eq(operands.getName()).and(pred);
     }
 
-    private void buildQuery() {
+    private void buildQuery(final long fetchLimit) {
         query = new SQLQuery(connection, configuration);
-        buildFromClause();
+        buildFromClause(fetchLimit);
         joinAppAndEventType();
         buildEventDataSubquery();
         addOrderBy();
     }
 
+    /**
+     * Selects the events after the cursor in the <code>saveTimestamp desc, eventId asc</code> order.
+     */
+
+    private BooleanExpression buildSeekPredicate() {
+        QEvent qEvent = QEvent.event;
+        Timestamp lastSaveTimestamp = Timestamp.from(after.getSaveTimestamp());
+        return qEvent.saveTimestamp.lt(lastSaveTimestamp)
+                .or(qEvent.saveTimestamp.eq(lastSaveTimestamp).and(qEvent.eventId.gt(after.getEventId())));
+    }
+
+    /**
+     * Returns whether an event data row has a type whose value column was not selected.
+     */
+    private boolean hasUnplannedValueType(final List<Tuple> result) {
+        if (valueTypes.size() == EventDataType.values().length) {
+            return false;
+        }
+        for (Tuple row : result) {
+            String type = row.get(evtDataSubqueryAlias.eventDataType);
+            if (type == null) {
+                continue;
+            }
+            EventDataType eventDataType = EventDataRowMapper.toEventDataType(type);
+            // without binary content the binary column is never selected, a BINARY row is complete anyway
+            boolean lazilyLoaded = !binaryContent && (eventDataType == EventDataType.BINARY);
+            if (!lazilyLoaded && !valueTypes.contains(eventDataType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void joinAppAndEventType() {
         query = query.leftJoin(qEventType).on(evtSubqueryAlias.eventTypeId.eq(qEventType.eventTypeId));
         query = query.leftJoin(qApplication).on(qEventType.applicationId.eq(qApplication.applicationId));
     }
 
+    /**
+     * Creates a page of the first <code>limit</code> events. There is a next page if there are more events.
+     */
+    static EventPage toEventPage(final List<EventUi> events, final long limit) {
+        if (events.size() <= limit) {
+            return new EventPage(events, null);
+        }
+        List<EventUi> page = new ArrayList<>(events.subList(0, (int) limit));
+        EventUi lastEvent = page.get(page.size() - 1);
+        return new EventPage(page, new EventCursor(lastEvent.getSaveTimeStamp(), lastEvent.getId()));
+    }
+
     public List<EventUi> loadEvents() {
-        buildQuery();
-        List<Tuple> result = query.list(qApplication.applicationName,
-                qEventType.name,
-                evtSubqueryAlias.eventId,
-                evtSubqueryAlias.saveTimestamp,
-                evtDataSubqueryAlias.eventDataName,
-                evtDataSubqueryAlias.eventDataType,
-                evtDataSubqueryAlias.numberValue,
-                evtDataSubqueryAlias.stringValue,
-                evtDataSubqueryAlias.textValue,
-                evtDataSubqueryAlias.timestampValue,
-                evtDataSubqueryAlias.binaryValue);
-        return new MultipleEventQueryResultMapper(result, evtSubqueryAlias, evtDataSubqueryAlias).mapToEvents();
+        return loadEvents(limit);
+    }
+
+    /**
+     * Loads at most <code>fetchLimit</code> events from the offset or after the cursor, a negative limit means all
+     * matching events.
+     */
+    public List<EventUi> loadEvents(final long fetchLimit) {
+        long startNanos = System.nanoTime();
+        planValueTypes();
+        buildQuery(fetchLimit);
+        long builtNanos = System.nanoTime();
+        List<Tuple> result = query.list(projection());
+        if (hasUnplannedValueType(result)) {
+            // the catalog missed a field type, e.g. one stored by another node: load all value columns
+            valueTypes = EnumSet.allOf(EventDataType.class);
+            buildQuery(fetchLimit);
+            result = query.list(projection());
+        }
+        long executedNanos = System.nanoTime();
+        List<EventUi> events = new MultipleEventQueryResultMapper(evtDataSubqueryAlias).mapToEvents(result);
+        long mappedNanos = System.nanoTime();
+        if (metrics != null) {
+            metrics.recordSearch(builtNanos - startNanos, executedNanos - builtNanos,
+                    mappedNanos - executedNanos, result.size(), events.size());
+        }
+        if ((slowQueryLog != null) && slowQueryLog.isSlow(mappedNanos - startNanos)) {
+            slowQueryLog.record("findEvents", connection, query.getSQL(projection()), result.size(),
+                    events.size(), builtNanos - startNanos, executedNanos - builtNanos, mappedNanos - executedNanos);
+        }
+        return events;
+    }
+
+    /**
+     * Loads the events with one result row per event instead of one per event data: the paginated events are
+     * joined with their requested event data and grouped by event, each requested field is a typed column computed
+     * by conditional aggregation. The data fields passed to the constructor are ignored.
+     *
+     * @param pivotFields
+     *            the names and types of the event data to load. An event data of the same name but another type is
+     *            not loaded.
+     */
+    public List<EventUi> loadPivotedEvents(final Map<String, EventDataType> pivotFields) {
+        if (pivotFields.isEmpty()) {
+            throw new IllegalArgumentException("pivotFields cannot be empty");
+        }
+        query = new SQLQuery(connection, configuration);
+        buildFromClause(limit);
+        joinAppAndEventType();
+        QEventData qEventData = QEventData.eventData;
+        PivotedEventQueryResultMapper mapper = new PivotedEventQueryResultMapper(evtSubqueryAlias, qEventData,
+                pivotFields);
+        Expression<?>[] projection = mapper.projection();
+        query = query.leftJoin(qEventData)
+                .on(qEventData.eventId.eq(evtSubqueryAlias.eventId)
+                        .and(qEventData.eventDataName.in(pivotFields.keySet())))
+                .groupBy(PivotedEventQueryResultMapper.groupBy(evtSubqueryAlias));
+        addOrderBy();
+        return mapper.mapToEvents(query.list(projection));
+    }
+
+    /**
+     * Sets the catalog used by {@link #loadEvents(long)} to select only the value columns of the requested data
+     * fields. The catalog is only a hint: the event data rows are not filtered by type, and if a row has a type the
+     * catalog does not know, the query is run again with all value columns. Without a catalog, and in
+     * {@link #streamEvents(int, Consumer)}, all value columns are selected.
+     */
+    public ComplexEventLoader withFieldCatalog(final FieldCatalog fieldCatalog) {
+        this.fieldCatalog = fieldCatalog;
+        return this;
+    }
+
+    /**
+     * Selects the events saved in the half-open range <code>[eventsFrom, eventsTo)</code> if <code>true</code>. Each
+     * bound is then a plain comparison on the column, so the database can use a range scan on the save timestamp
+     * index or prune the partitions of an event table partitioned by save timestamp, and adjacent ranges (e.g.
+     * consecutive days) do not overlap.
+     */
+    public ComplexEventLoader withHalfOpenSaveTimestampRange(final boolean halfOpenSaveTimestampRange) {
+        this.halfOpenSaveTimestampRange = halfOpenSaveTimestampRange;
+        return this;
+    }
+
+    /**
+     * Sets the recorder of the query build, execution and mapping times of {@link #loadEvents()} and
+     * {@link #loadEvents(long)}.
+     */
+    public ComplexEventLoader withMetrics(final AuditMetricsRecorder metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Sets the log of the {@link #loadEvents()} and {@link #loadEvents(long)} calls that run longer than its
+     * threshold.
+     */
+    public ComplexEventLoader withSlowQueryLog(final SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+        return this;
+    }
+
+    /**
+     * Selects <code>null</code> instead of the binary values, BINARY event data appears in the results without
+     * content. The content can be read with {@link org.everit.osgi.audit.ri.ext.BinaryEventDataService}.
+     */
+    public ComplexEventLoader withoutBinaryContent() {
+        binaryContent = false;
+        return this;
+    }
+
+    /**
+     * Selects only the value columns of the types the requested data fields have been stored with according to the
+     * catalog. If no data fields are requested, all value columns are selected.
+     */
+    private void planValueTypes() {
+        if (dataFields.isPresent() && (fieldCatalog != null)) {
+            valueTypes = EventDataProjectionPlanner.planValueTypes(
+                    fieldCatalog.getFieldTypes(connection, configuration, selectedAppIds, selectedEventTypeIds),
+                    dataFields.get());
+        }
+    }
+
+    private Expression<?>[] projection() {
+        return MultipleEventQueryResultMapper.projection(evtSubqueryAlias, evtDataSubqueryAlias,
+                selectedValueTypes());
+    }
+
+    private Set<EventDataType> selectedValueTypes() {
+        return binaryContent ? valueTypes : EventDataProjectionPlanner.withoutBinary(valueTypes);
+    }
+
+    /**
+     * Iterates over all matching events (the offset and the limit are ignored) without loading the whole result into
+     * memory. The rows are read from an open cursor and grouped into events one at a time, each event is passed to
+     * the consumer as soon as its last row is read.
+     *
+     * @param fetchSize
+     *            the JDBC fetch size hint of the statement, <code>0</code> leaves the driver default.
+     * @param consumer
+     *            receives the events in the order of the search.
+     * @return the number of events passed to the consumer.
+     */
+    public long streamEvents(final int fetchSize, final Consumer<EventUi> consumer) {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+        buildQuery(-1);
+        if (fetchSize > 0) {
+            query.addListener(new SQLBaseListener() {
+                @Override
+                public void prepared(final SQLListenerContext context) {
+                    try {
+                        context.getPreparedStatement().setFetchSize(fetchSize);
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+        try (CloseableIterator<Tuple> rows = query.iterate(projection())) {
+            return new MultipleEventQueryResultMapper(evtDataSubqueryAlias)
+                    .forEachEvent(rows, consumer);
+        }
     }
 
 }
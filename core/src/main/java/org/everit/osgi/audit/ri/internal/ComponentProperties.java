@@ -0,0 +1,112 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Reads typed values from the configuration properties of a component.
+ */
+public final class ComponentProperties {
+
+    public static boolean getBooleanProperty(final Map<String, Object> componentProperties, final String propName,
+            final boolean defaultValue) {
+        Object value = componentProperties.get(propName);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(String.valueOf(value).trim());
+    }
+
+    /**
+     * Reads a positive integer property.
+     */
+    public static int getIntProperty(final Map<String, Object> componentProperties, final String propName,
+            final int defaultValue) {
+        return getIntProperty(componentProperties, propName, defaultValue, 1);
+    }
+
+    private static int getIntProperty(final Map<String, Object> componentProperties, final String propName,
+            final int defaultValue, final int minValue) {
+        Object value = componentProperties.get(propName);
+        if (value == null) {
+            return defaultValue;
+        }
+        int intValue;
+        if (value instanceof Number) {
+            intValue = ((Number) value).intValue();
+        } else {
+            try {
+                intValue = Integer.parseInt(String.valueOf(value).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("[" + propName + "] must be an integer, got: " + value, e);
+            }
+        }
+        if (intValue < minValue) {
+            throw new IllegalArgumentException("[" + propName + "] must be at least " + minValue + ", got: "
+                    + intValue);
+        }
+        return intValue;
+    }
+
+    /**
+     * Reads an integer property where <code>0</code> is allowed, typically meaning "disabled".
+     */
+    public static int getNonNegativeIntProperty(final Map<String, Object> componentProperties,
+            final String propName, final int defaultValue) {
+        return getIntProperty(componentProperties, propName, defaultValue, 0);
+    }
+
+    /**
+     * Reads a multi-value property. A single value is returned as an array of one element, blank values are
+     * skipped.
+     */
+    public static String[] getStringArrayProperty(final Map<String, Object> componentProperties,
+            final String propName) {
+        Object value = componentProperties.get(propName);
+        Object[] values;
+        if (value == null) {
+            values = new Object[0];
+        } else if (value instanceof Object[]) {
+            values = (Object[]) value;
+        } else if (value instanceof Collection) {
+            values = ((Collection<?>) value).toArray();
+        } else {
+            values = new Object[] { value };
+        }
+        return Arrays.stream(values)
+                .filter((element) -> element != null)
+                .map((element) -> String.valueOf(element).trim())
+                .filter((element) -> !element.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    public static String getStringProperty(final Map<String, Object> componentProperties, final String propName,
+            final String defaultValue) {
+        Object value = componentProperties.get(propName);
+        if (value == null) {
+            return defaultValue;
+        }
+        return String.valueOf(value).trim();
+    }
+
+    private ComponentProperties() {
+    }
+
+}
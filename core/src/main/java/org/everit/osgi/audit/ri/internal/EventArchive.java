@@ -0,0 +1,355 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+import org.everit.osgi.audit.ri.ext.EventCounts;
+
+/**
+ * The cold tier of the audit events: a directory of compressed, column-oriented segment files. The headers of the
+ * segments are kept in memory as a save timestamp index, so a search only opens the segments overlapping its time
+ * range. The time ranges of the segments may overlap, the events of the open segments are merged in the order of
+ * the searches.
+ */
+public class EventArchive {
+
+    /**
+     * The matching events of a segment opened by a search, and the position of the search in them.
+     */
+    private static class OpenSegment {
+
+        private final List<EventUi> events;
+
+        private int position;
+
+        OpenSegment(final List<EventUi> events) {
+            this.events = events;
+        }
+
+        boolean hasNext() {
+            return position < events.size();
+        }
+
+        EventUi next() {
+            return events.get(position++);
+        }
+
+        EventUi peek() {
+            return events.get(position);
+        }
+
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(EventArchive.class.getName());
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Returns whether the segment has an event with one of the ids. Only the event id column of the segment is
+     * inflated.
+     */
+    private static boolean containsAny(final ArchiveSegmentHeader segment, final Set<Long> eventIds) {
+        try {
+            for (long eventId : ArchiveSegmentReader.readEventIds(segment)) {
+                if (eventIds.contains(eventId)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ArchiveSegmentReader openSegment(final ArchiveSegmentHeader segment) {
+        try {
+            return ArchiveSegmentReader.open(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final Path directory;
+
+    private final List<ArchiveSegmentHeader> segments = new CopyOnWriteArrayList<>();
+
+    /**
+     * Opens the archive in the directory, creating the directory if it does not exist. The unfinished segments left
+     * by a crash are deleted, the unreadable segments are skipped with a warning.
+     */
+    public EventArchive(final Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    if (fileName.endsWith(TEMPORARY_SUFFIX)) {
+                        Files.deleteIfExists(file);
+                    } else if (fileName.endsWith(SEGMENT_SUFFIX)) {
+                        loadSegment(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot open the audit event archive in " + directory, e);
+        }
+    }
+
+    /**
+     * Adds the matching archived events to the counts of the database search. With a positive
+     * <code>maxCountedEvents</code>, the segments are scanned only until one more event than the maximum is counted
+     * in the two tiers together. An event found in both tiers after a crash (see {@link EventTierMerger}) is counted
+     * twice.
+     */
+    public EventCounts countEvents(final ArchiveQuery query, final long maxCountedEvents,
+            final EventCounts databaseCounts) {
+        if (databaseCounts.isApproximate()) {
+            return databaseCounts;
+        }
+        long countLimit = maxCountedEvents > 0 ? maxCountedEvents + 1 : Long.MAX_VALUE;
+        long totalCount = databaseCounts.getTotalCount();
+        Map<Long, Long> countsByApplicationId = new HashMap<>(databaseCounts.getCountsByApplicationId());
+        Map<Long, Long> countsByEventTypeId = new HashMap<>(databaseCounts.getCountsByEventTypeId());
+        for (Iterator<ArchiveSegmentHeader> it = overlappingSegments(query).iterator(); it.hasNext()
+                && (totalCount < countLimit);) {
+            totalCount += openSegment(it.next()).count(query, countLimit - totalCount, countsByApplicationId,
+                    countsByEventTypeId);
+        }
+        boolean approximate = (maxCountedEvents > 0) && (totalCount > maxCountedEvents);
+        return new EventCounts(approximate ? maxCountedEvents : totalCount, countsByApplicationId,
+                countsByEventTypeId, approximate);
+    }
+
+    /**
+     * Deletes the segments whose newest event was saved before the given instant.
+     *
+     * @return the number of events in the deleted segments.
+     */
+    public long deleteSegmentsBefore(final Instant before) {
+        long eventCount = 0;
+        for (ArchiveSegmentHeader segment : segments) {
+            if (segment.getMaxSaveTimestamp().isBefore(before)) {
+                discard(segment);
+                eventCount += segment.getEventCount();
+            }
+        }
+        return eventCount;
+    }
+
+    /**
+     * Deletes a segment, used when the transaction that removed its events from the hot tables fails.
+     */
+    public void discard(final ArchiveSegmentHeader segment) {
+        segments.remove(segment);
+        try {
+            Files.deleteIfExists(segment.getPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the archived events with the given ids by id. A segment is opened only if its event id column contains
+     * one of the ids that are not found yet.
+     *
+     * @param dataFieldFilter
+     *            decides by name and type whether an event data is loaded.
+     */
+    public Map<Long, EventUi> findEventsByIds(final Collection<Long> eventIds,
+            final BiPredicate<String, EventDataType> dataFieldFilter) {
+        Set<Long> pendingEventIds = new HashSet<>(eventIds);
+        Map<Long, EventUi> rval = new HashMap<>();
+        for (Iterator<ArchiveSegmentHeader> it = segments.iterator(); it.hasNext() && !pendingEventIds.isEmpty();) {
+            ArchiveSegmentHeader segment = it.next();
+            if (containsAny(segment, pendingEventIds)) {
+                openSegment(segment).findEvents(pendingEventIds, dataFieldFilter,
+                        (event) -> rval.put(event.getId(), event));
+                pendingEventIds.removeAll(rval.keySet());
+            }
+        }
+        return rval;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Returns the events matching the query in the order of the searches. A segment is opened only when the next
+     * event may come from it, so only the matching events of the segments overlapping the current position are held
+     * in memory. An event stored in more than one segment is returned once.
+     */
+    public Iterator<EventUi> iterator(final ArchiveQuery query) {
+        Deque<ArchiveSegmentHeader> pendingSegments = new ArrayDeque<>(overlappingSegments(query));
+        PriorityQueue<OpenSegment> openSegments = new PriorityQueue<>(
+                (left, right) -> EventTierMerger.SEARCH_ORDER.compare(left.peek(), right.peek()));
+        return new Iterator<EventUi>() {
+
+            private Long lastEventId;
+
+            private EventUi nextEvent = findNext();
+
+            private EventUi findNext() {
+                while (true) {
+                    while (!pendingSegments.isEmpty() && (openSegments.isEmpty()
+                            || !pendingSegments.peek().getMaxSaveTimestamp()
+                                    .isBefore(openSegments.peek().peek().getSaveTimeStamp()))) {
+                        List<EventUi> events = readSegment(pendingSegments.poll(), query);
+                        if (!events.isEmpty()) {
+                            openSegments.add(new OpenSegment(events));
+                        }
+                    }
+                    OpenSegment segment = openSegments.poll();
+                    if (segment == null) {
+                        return null;
+                    }
+                    EventUi event = segment.next();
+                    if (segment.hasNext()) {
+                        openSegments.add(segment);
+                    }
+                    if (!event.getId().equals(lastEventId)) {
+                        lastEventId = event.getId();
+                        return event;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextEvent != null;
+            }
+
+            @Override
+            public EventUi next() {
+                if (nextEvent == null) {
+                    throw new NoSuchElementException();
+                }
+                EventUi rval = nextEvent;
+                nextEvent = findNext();
+                return rval;
+            }
+        };
+    }
+
+    private void loadSegment(final Path file) {
+        try {
+            segments.add(ArchiveSegmentHeader.read(file));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Skipping unreadable audit archive segment " + file, e);
+        }
+    }
+
+    /**
+     * Makes a segment stored by {@link #store(ArchiveSegmentHeader)} visible to the searches.
+     */
+    public void publish(final ArchiveSegmentHeader segment) {
+        segments.add(segment);
+    }
+
+    private List<ArchiveSegmentHeader> overlappingSegments(final ArchiveQuery query) {
+        return segments.stream()
+                .filter(query::overlaps)
+                .sorted(Comparator.comparing(ArchiveSegmentHeader::getMaxSaveTimestamp).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns whether any segment may have events in the <code>[from, to]</code> save timestamp range.
+     */
+    public boolean overlaps(final Instant from, final Instant to) {
+        return segments.stream().anyMatch((segment) -> ((from == null)
+                || !segment.getMaxSaveTimestamp().isBefore(from))
+                && ((to == null) || !segment.getMinSaveTimestamp().isAfter(to)));
+    }
+
+    private List<EventUi> readSegment(final ArchiveSegmentHeader segment, final ArchiveQuery query) {
+        List<EventUi> events = new ArrayList<>();
+        openSegment(segment).scan(query, events::add);
+        return events;
+    }
+
+    /**
+     * Renames a segment written by {@link #writeSegment(List)} to its final name, so it is loaded when the archive
+     * is opened again. The segment is not visible to the searches until it is published.
+     *
+     * @return the header of the stored segment.
+     * @see #publish(ArchiveSegmentHeader)
+     */
+    public ArchiveSegmentHeader store(final ArchiveSegmentHeader temporarySegment) {
+        String fileName = temporarySegment.getPath().getFileName().toString();
+        Path segmentPath = directory.resolve(
+                fileName.substring(0, fileName.length() - TEMPORARY_SUFFIX.length()) + SEGMENT_SUFFIX);
+        try {
+            Files.move(temporarySegment.getPath(), segmentPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return temporarySegment.withPath(segmentPath);
+    }
+
+    /**
+     * Writes the events to a temporary segment file that is deleted when the archive is opened again, unless it is
+     * stored.
+     *
+     * @see #store(ArchiveSegmentHeader)
+     */
+    public ArchiveSegmentHeader writeSegment(final List<ArchivedEvent> events) {
+        Path temporaryPath = directory.resolve("events-" + UUID.randomUUID() + TEMPORARY_SUFFIX);
+        try {
+            return ArchiveSegmentWriter.write(temporaryPath, events);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
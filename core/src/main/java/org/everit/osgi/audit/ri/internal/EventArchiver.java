@@ -0,0 +1,167 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+import org.everit.osgi.audit.ri.ext.ArchiveReport;
+import org.everit.osgi.audit.ri.schema.qdsl.QApplication;
+import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventType;
+import org.everit.osgi.querydsl.support.QuerydslSupport;
+import org.everit.osgi.transaction.helper.api.TransactionHelper;
+
+import com.mysema.query.Tuple;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.SQLQuery;
+import com.mysema.query.sql.dml.SQLDeleteClause;
+
+/**
+ * Moves the oldest events from the hot tables to the {@link EventArchive}, one segment per transaction. The segment
+ * file is written and stored before the rows are deleted and the transaction commits, the segment is published to
+ * the searches only after the commit. If the transaction fails, the segment is discarded. If the process stops
+ * between storing the segment and the commit, its events are in both tiers and the searches return them once.
+ */
+public class EventArchiver {
+
+    private final TransactionHelper transactionHelper;
+
+    private final QuerydslSupport querydslSupport;
+
+    private final EventArchive archive;
+
+    private final int segmentSize;
+
+    public EventArchiver(final TransactionHelper transactionHelper, final QuerydslSupport querydslSupport,
+            final EventArchive archive, final int segmentSize) {
+        this.transactionHelper = transactionHelper;
+        this.querydslSupport = querydslSupport;
+        this.archive = archive;
+        this.segmentSize = segmentSize;
+    }
+
+    public ArchiveReport archiveEventsBefore(final Instant before) {
+        long startNanos = System.nanoTime();
+        Timestamp beforeTimestamp = Timestamp.from(before);
+        long eventCount = 0;
+        long eventDataCount = 0;
+        int segmentCount = 0;
+        while (true) {
+            ArchiveReport segment = archiveSegment(beforeTimestamp);
+            eventCount += segment.getEventCount();
+            eventDataCount += segment.getEventDataCount();
+            segmentCount += segment.getSegmentCount();
+            if (segment.getEventCount() < segmentSize) {
+                return new ArchiveReport(eventCount, eventDataCount, segmentCount, System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private ArchiveReport archiveSegment(final Timestamp before) {
+        ArchiveSegmentHeader[] stored = new ArchiveSegmentHeader[1];
+        ArchiveReport report;
+        try {
+            report = transactionHelper.requiresNew(() -> querydslSupport.execute((connection, configuration) -> {
+                List<ArchivedEvent> events = loadOldestEvents(connection, configuration, before);
+                if (events.isEmpty()) {
+                    return new ArchiveReport(0, 0, 0, 0);
+                }
+                ArchiveSegmentHeader temporarySegment = archive.writeSegment(events);
+                try {
+                    List<Long> eventIds = new ArrayList<>(events.size());
+                    for (ArchivedEvent event : events) {
+                        eventIds.add(event.getEvent().getId());
+                    }
+                    QEventData qEventData = QEventData.eventData;
+                    long eventDataCount = new SQLDeleteClause(connection, configuration, qEventData)
+                            .where(qEventData.eventId.in(eventIds))
+                            .execute();
+                    QEvent qEvent = QEvent.event;
+                    new SQLDeleteClause(connection, configuration, qEvent)
+                            .where(qEvent.eventId.in(eventIds))
+                            .execute();
+                    stored[0] = archive.store(temporarySegment);
+                    return new ArchiveReport(events.size(), eventDataCount, 1, 0);
+                } finally {
+                    if (stored[0] == null) {
+                        archive.discard(temporarySegment);
+                    }
+                }
+            }));
+        } catch (RuntimeException e) {
+            if (stored[0] != null) {
+                archive.discard(stored[0]);
+            }
+            throw e;
+        }
+        if (stored[0] != null) {
+            archive.publish(stored[0]);
+        }
+        return report;
+    }
+
+    /**
+     * Loads the oldest events saved before the given timestamp with all of their event data, in the order of the
+     * searches.
+     */
+    private List<ArchivedEvent> loadOldestEvents(final Connection connection, final Configuration configuration,
+            final Timestamp before) {
+        QEvent qEvent = QEvent.event;
+        QEventType qEventType = QEventType.eventType;
+        List<Tuple> keys = new SQLQuery(connection, configuration)
+                .from(qEvent)
+                .innerJoin(qEventType).on(qEvent.eventTypeId.eq(qEventType.eventTypeId))
+                .where(qEvent.saveTimestamp.lt(before))
+                .orderBy(qEvent.saveTimestamp.asc(), qEvent.eventId.asc())
+                .limit(segmentSize)
+                .list(qEvent.eventId, qEvent.eventTypeId, qEventType.applicationId);
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Tuple> keysByEventId = new HashMap<>();
+        for (Tuple key : keys) {
+            keysByEventId.put(key.get(qEvent.eventId), key);
+        }
+        QEventData qEventData = QEventData.eventData;
+        List<Tuple> rows = new SQLQuery(connection, configuration)
+                .from(qEvent)
+                .innerJoin(qEventType).on(qEvent.eventTypeId.eq(qEventType.eventTypeId))
+                .innerJoin(QApplication.application)
+                .on(qEventType.applicationId.eq(QApplication.application.applicationId))
+                .leftJoin(qEventData).on(qEventData.eventId.eq(qEvent.eventId))
+                .where(qEvent.eventId.in(keysByEventId.keySet()))
+                .orderBy(qEvent.saveTimestamp.desc(), qEvent.eventId.asc())
+                .list(MultipleEventQueryResultMapper.projection(qEvent, qEventData, true));
+        List<EventUi> events = new MultipleEventQueryResultMapper(qEventData).mapToEvents(rows);
+        List<ArchivedEvent> archivedEvents = new ArrayList<>(events.size());
+        for (EventUi event : events) {
+            Tuple key = keysByEventId.get(event.getId());
+            archivedEvents.add(new ArchivedEvent(key.get(qEventType.applicationId), key.get(qEvent.eventTypeId),
+                    event));
+        }
+        return archivedEvents;
+    }
+
+}
@@ -0,0 +1,155 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.Timestamp;
+
+import org.everit.osgi.audit.dto.EventData;
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
+
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.dml.SQLInsertClause;
+import com.mysema.query.types.Path;
+
+/**
+ * Collects <code>event_data</code> rows and sends them to the database in JDBC batches of at most
+ * <code>batchSize</code> rows. Every row binds all value columns (the ones not belonging to the type of the event data
+ * are <code>null</code>), so the rows share the same column list and end up in the same prepared statement.
+ */
+public class EventDataBatchInserter {
+
+    private final Connection connection;
+
+    private final Configuration configuration;
+
+    private final int batchSize;
+
+    private final QEventData qEventData = QEventData.eventData;
+
+    private SQLInsertClause insert;
+
+    private long insertedRowCount;
+
+    public EventDataBatchInserter(final Connection connection, final Configuration configuration,
+            final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive, got: " + batchSize);
+        }
+        this.connection = connection;
+        this.configuration = configuration;
+        this.batchSize = batchSize;
+        BinaryContentType.register(configuration);
+        insert = new SQLInsertClause(connection, configuration, qEventData);
+    }
+
+    public void add(final long eventId, final EventData eventData) {
+        setKeyColumns(eventId, eventData.getName(), eventData.getEventDataType());
+        addEventDataValue(eventData);
+        addBatch();
+    }
+
+    private void addBatch() {
+        insert.addBatch();
+        if (insert.getBatchCount() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Adds a BINARY event data row whose content is read from the stream by the JDBC driver when the batch is
+     * executed, without copying it to the heap. The stream must stay open until the next {@link #flush()}.
+     */
+    public void addBinary(final long eventId, final String dataName, final InputStream content) {
+        setKeyColumns(eventId, dataName, EventDataType.BINARY);
+        insert.setNull(qEventData.numberValue)
+                .setNull(qEventData.stringValue)
+                .setNull(qEventData.textValue);
+        setBinaryValue(new BinaryContent(content, -1));
+        insert.setNull(qEventData.timestampValue);
+        addBatch();
+    }
+
+    /**
+     * Sets every value column exactly once and in the same order for each row: the column belonging to the type of
+     * the event data gets the value, the others <code>null</code>.
+     */
+    private void addEventDataValue(final EventData eventData) {
+        EventDataType type = eventData.getEventDataType();
+        if (type == EventDataType.NUMBER) {
+            insert.set(qEventData.numberValue, eventData.getNumberValue());
+        } else {
+            insert.setNull(qEventData.numberValue);
+        }
+        if (type == EventDataType.STRING) {
+            insert.set(qEventData.stringValue, eventData.getTextValue());
+        } else {
+            insert.setNull(qEventData.stringValue);
+        }
+        if (type == EventDataType.TEXT) {
+            insert.set(qEventData.textValue, eventData.getTextValue());
+        } else {
+            insert.setNull(qEventData.textValue);
+        }
+        if (type == EventDataType.BINARY) {
+            setBinaryValue(new BinaryContent(eventData.getBinaryValue()));
+        } else {
+            insert.setNull(qEventData.binaryValue);
+        }
+        if (type == EventDataType.TIMESTAMP) {
+            insert.set(qEventData.timestampValue, Timestamp.from(eventData.getTimestampValue()));
+        } else {
+            insert.setNull(qEventData.timestampValue);
+        }
+    }
+
+    /**
+     * Sends the rows collected since the last flush to the database.
+     */
+    public void flush() {
+        int batchCount = insert.getBatchCount();
+        if (batchCount > 0) {
+            insert.execute();
+            insertedRowCount += batchCount;
+            insert = new SQLInsertClause(connection, configuration, qEventData);
+        }
+    }
+
+    /**
+     * Binds the content with {@link BinaryContentType}, as a stream instead of a {@link java.sql.Blob}.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void setBinaryValue(final BinaryContent content) {
+        insert.set((Path) qEventData.binaryValue, content);
+    }
+
+    private void setKeyColumns(final long eventId, final String dataName, final EventDataType eventDataType) {
+        insert.set(qEventData.eventId, eventId)
+                .set(qEventData.eventDataName, dataName)
+                .set(qEventData.eventDataType, eventDataType.toString());
+    }
+
+    /**
+     * The number of rows sent to the database so far.
+     */
+    public long getInsertedRowCount() {
+        return insertedRowCount;
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
+
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
+
+/**
+ * Decides which value columns of <code>event_data</code> a query selects. Each event data row has a value only in
+ * the column of its type, so if the requested fields are known to have only some types, the columns of the other
+ * types are left out of the subqueries and <code>null</code> is selected in their place. Leaving out the TEXT and
+ * BINARY columns lets many drivers stream the result instead of handling LOBs row by row.
+ */
+public final class EventDataProjectionPlanner {
+
+    /**
+     * Returns the types the requested fields can have. If nothing is known about the fields, all types are
+     * returned.
+     *
+     * @param fieldTypes
+     *            the types by event data name, see {@link FieldCatalog}.
+     */
+    public static Set<EventDataType> planValueTypes(final Map<String, Set<EventDataType>> fieldTypes,
+            final Collection<String> dataFields) {
+        Set<EventDataType> valueTypes = EnumSet.noneOf(EventDataType.class);
+        for (String dataField : dataFields) {
+            valueTypes.addAll(fieldTypes.getOrDefault(dataField, Collections.emptySet()));
+        }
+        return valueTypes.isEmpty() ? EnumSet.allOf(EventDataType.class) : valueTypes;
+    }
+
+    /**
+     * The columns of an <code>event_data</code> subquery: the key columns and the value columns of the given types.
+     */
+    public static Expression<?>[] subqueryColumns(final QEventData qEventData,
+            final Set<EventDataType> valueTypes) {
+        List<Expression<?>> columns = new ArrayList<>(Arrays.asList(qEventData.eventId,
+                qEventData.eventDataName,
+                qEventData.eventDataType));
+        for (EventDataType valueType : EventDataType.values()) {
+            if (valueTypes.contains(valueType)) {
+                columns.add(valueColumn(qEventData, valueType));
+            }
+        }
+        return columns.toArray(new Expression<?>[columns.size()]);
+    }
+
+    /**
+     * The column holding the values of the type.
+     */
+    public static Path<?> valueColumn(final QEventData qEventData, final EventDataType valueType) {
+        switch (valueType) {
+        case NUMBER:
+            return qEventData.numberValue;
+        case STRING:
+            return qEventData.stringValue;
+        case TEXT:
+            return qEventData.textValue;
+        case TIMESTAMP:
+            return qEventData.timestampValue;
+        case BINARY:
+            return qEventData.binaryValue;
+        default:
+            throw new IllegalArgumentException("unknown event data type: " + valueType);
+        }
+    }
+
+    /**
+     * All value types except BINARY, the value columns of the searches that do not load binary content.
+     */
+    public static Set<EventDataType> withoutBinary(final Set<EventDataType> valueTypes) {
+        Set<EventDataType> rval = EnumSet.noneOf(EventDataType.class);
+        rval.addAll(valueTypes);
+        rval.remove(EventDataType.BINARY);
+        return Collections.unmodifiableSet(rval);
+    }
+
+    private EventDataProjectionPlanner() {
+    }
+
+}
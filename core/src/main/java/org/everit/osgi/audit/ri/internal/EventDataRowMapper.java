@@ -35,29 +35,148 @@ package org.everit.osgi.audit.ri.internal;
 import java.sql.Blob;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.time.Instant;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.Set;
 
 import org.everit.osgi.audit.dto.EventDataType;
 import org.everit.osgi.audit.ri.conf.search.api.EventUi.Builder;
 import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
 
 import com.mysema.query.Tuple;
+import com.mysema.query.support.Expressions;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
 
+/**
+ * Adds the event data of a result row to an event builder. The event data columns must be selected in the order of
+ * {@link #projection(QEventData)}, starting at the column index passed to the constructor, so the values are read by
+ * position instead of looking up the expressions in the row.
+ */
 public class EventDataRowMapper {
 
+    /**
+     * The event data types by the value stored in the <code>eventDataType</code> column.
+     */
+    private static final Map<String, EventDataType> EVENT_DATA_TYPES = new HashMap<>();
+
+    static {
+        for (EventDataType eventDataType : EventDataType.values()) {
+            EVENT_DATA_TYPES.put(eventDataType.toString(), eventDataType);
+        }
+    }
+
+    private static final int NAME_OFFSET = 0;
+
+    private static final int TYPE_OFFSET = 1;
+
+    private static final int NUMBER_OFFSET = 2;
+
+    private static final int STRING_OFFSET = 3;
+
+    private static final int TEXT_OFFSET = 4;
+
+    private static final int TIMESTAMP_OFFSET = 5;
+
+    private static final int BINARY_OFFSET = 6;
+
+    /**
+     * The event data columns in the order expected by the mapper.
+     *
+     * @param withBinaryValue
+     *            if <code>false</code>, <code>null</code> is selected instead of the binary value, so BINARY event
+     *            data is mapped without its content.
+     */
+    public static Expression<?>[] projection(final QEventData evtDataAlias, final boolean withBinaryValue) {
+        Set<EventDataType> valueTypes = EnumSet.allOf(EventDataType.class);
+        if (!withBinaryValue) {
+            valueTypes.remove(EventDataType.BINARY);
+        }
+        return projection(evtDataAlias, valueTypes);
+    }
+
+    /**
+     * The event data columns in the order expected by the mapper, selecting <code>null</code> instead of the value
+     * columns of the types not in <code>valueTypes</code>, so the positions of the columns do not change.
+     *
+     * @see EventDataProjectionPlanner
+     */
+    public static Expression<?>[] projection(final QEventData evtDataAlias, final Set<EventDataType> valueTypes) {
+        return new Expression<?>[] { evtDataAlias.eventDataName,
+                evtDataAlias.eventDataType,
+                valueColumn(evtDataAlias, EventDataType.NUMBER, valueTypes),
+                valueColumn(evtDataAlias, EventDataType.STRING, valueTypes),
+                valueColumn(evtDataAlias, EventDataType.TEXT, valueTypes),
+                valueColumn(evtDataAlias, EventDataType.TIMESTAMP, valueTypes),
+                valueColumn(evtDataAlias, EventDataType.BINARY, valueTypes) };
+    }
+
+    private static Expression<?> valueColumn(final QEventData evtDataAlias, final EventDataType valueType,
+            final Set<EventDataType> valueTypes) {
+        Path<?> column = EventDataProjectionPlanner.valueColumn(evtDataAlias, valueType);
+        return valueTypes.contains(valueType) ? column : Expressions.template(column.getType(), "null");
+    }
+
+    /**
+     * Converts the value of the <code>eventDataType</code> column.
+     *
+     * @throws IllegalStateException
+     *             if the value is not the name of an event data type.
+     */
+    public static EventDataType toEventDataType(final String type) {
+        EventDataType eventDataType = EVENT_DATA_TYPES.get(type);
+        if (eventDataType == null) {
+            throw new IllegalStateException("unknown event data type: " + type);
+        }
+        return eventDataType;
+    }
+
     private final QEventData evtDataAlias;
 
-    public EventDataRowMapper(final QEventData evtDataAlias) {
+    private final int nameIndex;
+
+    private final int typeIndex;
+
+    private final int numberIndex;
+
+    private final int stringIndex;
+
+    private final int textIndex;
+
+    private final int timestampIndex;
+
+    private final int binaryIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param evtDataAlias
+     *            the alias the event data columns are selected from.
+     * @param firstColumnIndex
+     *            the index of the first column of {@link #projection(QEventData)} in the result rows.
+     */
+    public EventDataRowMapper(final QEventData evtDataAlias, final int firstColumnIndex) {
         this.evtDataAlias = evtDataAlias;
+        nameIndex = firstColumnIndex + NAME_OFFSET;
+        typeIndex = firstColumnIndex + TYPE_OFFSET;
+        numberIndex = firstColumnIndex + NUMBER_OFFSET;
+        stringIndex = firstColumnIndex + STRING_OFFSET;
+        textIndex = firstColumnIndex + TEXT_OFFSET;
+        timestampIndex = firstColumnIndex + TIMESTAMP_OFFSET;
+        binaryIndex = firstColumnIndex + BINARY_OFFSET;
     }
 
     private void addBlobData(final Builder builder, final String dataName, final Tuple row) {
-        Blob blob = row.get(evtDataAlias.binaryValue);
+        Blob blob = row.get(binaryIndex, evtDataAlias.binaryValue.getType());
+        if (blob == null) { // not selected, see projection()
+            builder.binaryData(dataName, null);
+            return;
+        }
         try {
             try {
-                builder.binaryData(dataName, blob.getBytes(0, (int) blob.length()));
+                builder.binaryData(dataName, blob.getBytes(1, (int) blob.length()));
             } finally {
                 blob.free();
             }
@@ -69,23 +188,39 @@ public class EventDataRowMapper {
     void addEventDataForRow(final Builder builder, final Tuple row) {
         Objects.requireNonNull(builder, "builder cannot be null");
         Objects.requireNonNull(row, "row cannot be null");
-        String type = Optional.ofNullable(row.get(evtDataAlias.eventDataType))
-                .orElseThrow(() -> new IllegalArgumentException("row has null value for eventData.eventDataType"));
-        String dataName = row.get(evtDataAlias.eventDataName);
-        if (type.equals(EventDataType.BINARY.toString())) {
+        String type = row.get(typeIndex, String.class);
+        if (type == null) {
+            throw new IllegalArgumentException("row has null value for eventData.eventDataType");
+        }
+        String dataName = row.get(nameIndex, String.class);
+        switch (toEventDataType(type)) {
+        case BINARY:
             addBlobData(builder, dataName, row);
-        } else if (type.equals(EventDataType.STRING.toString())) {
-            builder.stringData(dataName, row.get(evtDataAlias.stringValue));
-        } else if (type.equals(EventDataType.TEXT.toString())) {
-            builder.textData(dataName, row.get(evtDataAlias.textValue));
-        } else if (type.equals(EventDataType.NUMBER.toString())) {
-            builder.numberData(dataName, row.get(evtDataAlias.numberValue));
-        } else if (type.equals(EventDataType.TIMESTAMP)) {
-            Timestamp timestamp = row.get(evtDataAlias.timestampValue);
-            builder.timestampData(dataName, Instant.ofEpochSecond(timestamp.getTime() / 1000, timestamp.getNanos()));
-        } else {
+            break;
+        case STRING:
+            builder.stringData(dataName, row.get(stringIndex, String.class));
+            break;
+        case TEXT:
+            builder.textData(dataName, row.get(textIndex, String.class));
+            break;
+        case NUMBER:
+            builder.numberData(dataName, row.get(numberIndex, evtDataAlias.numberValue.getType()));
+            break;
+        case TIMESTAMP:
+            Timestamp timestamp = row.get(timestampIndex, Timestamp.class);
+            builder.timestampData(dataName, timestamp.toInstant());
+            break;
+        default:
             throw new IllegalStateException("unknown event data type: " + type);
         }
     }
 
+    /**
+     * Returns whether the row contains event data. It does not if the event has no (selected) event data and the
+     * event data columns come from an outer join.
+     */
+    boolean hasEventData(final Tuple row) {
+        return row.get(typeIndex, String.class) != null;
+    }
+
 }
@@ -16,16 +16,16 @@
  */
 package org.everit.osgi.audit.ri.internal;
 
-import java.sql.SQLException;
+import java.io.InputStream;
 import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Map;
 import java.util.function.Supplier;
 
-import javax.sql.rowset.serial.SerialBlob;
-
 import org.everit.osgi.audit.dto.AuditEvent;
 import org.everit.osgi.audit.dto.EventData;
+import org.everit.osgi.audit.dto.EventDataType;
 import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
-import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
 import org.everit.osgi.querydsl.support.QuerydslSupport;
 import org.everit.osgi.transaction.helper.api.TransactionHelper;
 
@@ -41,37 +41,37 @@ public class EventPersister implements Supplier<Void> {
 
     private final TransactionHelper transactionHelper;
 
+    private final int eventDataBatchSize;
+
+    private final Map<String, InputStream> binaryStreams;
+
+    private final FieldCatalog fieldCatalog;
+
     public EventPersister(final TransactionHelper transactionHelper, final QuerydslSupport querydslSupport,
-            final long eventTypeId, final AuditEvent event) {
+            final long eventTypeId, final AuditEvent event, final int eventDataBatchSize,
+            final FieldCatalog fieldCatalog) {
+        this(transactionHelper, querydslSupport, eventTypeId, event, eventDataBatchSize, Collections.emptyMap(),
+                fieldCatalog);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param binaryStreams
+     *            additional BINARY event data of the event, streamed to the database by the name of the event data.
+     * @param fieldCatalog
+     *            receives the fields of the event.
+     */
+    public EventPersister(final TransactionHelper transactionHelper, final QuerydslSupport querydslSupport,
+            final long eventTypeId, final AuditEvent event, final int eventDataBatchSize,
+            final Map<String, InputStream> binaryStreams, final FieldCatalog fieldCatalog) {
         this.transactionHelper = transactionHelper;
         this.querydslSupport = querydslSupport;
         this.eventTypeId = eventTypeId;
         this.event = event;
-    }
-
-    private void addEventDataValue(
-            final SQLInsertClause insert, final QEventData qEventData, final EventData eventData) {
-        switch (eventData.getEventDataType()) {
-        case NUMBER:
-            insert.set(qEventData.numberValue, eventData.getNumberValue());
-            break;
-        case STRING:
-            insert.set(qEventData.stringValue, eventData.getTextValue());
-            break;
-        case TEXT:
-            insert.set(qEventData.textValue, eventData.getTextValue());
-            break;
-        case BINARY:
-            try {
-                insert.set(qEventData.binaryValue, new SerialBlob(eventData.getBinaryValue()));
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
-            }
-            break;
-        case TIMESTAMP:
-            insert.set(qEventData.timestampValue, Timestamp.from(eventData.getTimestampValue()));
-            break;
-        }
+        this.eventDataBatchSize = eventDataBatchSize;
+        this.binaryStreams = binaryStreams;
+        this.fieldCatalog = fieldCatalog;
     }
 
     @Override
@@ -86,14 +86,18 @@ public class EventPersister implements Supplier<Void> {
                         .set(qEvent.eventTypeId, eventTypeId)
                         .executeWithKey(qEvent.eventId);
 
+                EventDataBatchInserter eventDataInserter =
+                        new EventDataBatchInserter(connection, configuration, eventDataBatchSize);
                 for (EventData eventData : event.getEventDataArray()) {
-                    QEventData qEventData = QEventData.eventData;
-                    SQLInsertClause insert = new SQLInsertClause(connection, configuration, qEventData)
-                            .set(qEventData.eventId, eventId)
-                            .set(qEventData.eventDataName, eventData.getName())
-                            .set(qEventData.eventDataType, eventData.getEventDataType().toString());
-                    addEventDataValue(insert, qEventData, eventData);
-                    insert.execute();
+                    eventDataInserter.add(eventId, eventData);
+                }
+                for (Map.Entry<String, InputStream> binaryStream : binaryStreams.entrySet()) {
+                    eventDataInserter.addBinary(eventId, binaryStream.getKey(), binaryStream.getValue());
+                }
+                eventDataInserter.flush();
+                fieldCatalog.recordEventData(eventTypeId, event.getEventDataArray());
+                for (String binaryDataName : binaryStreams.keySet()) {
+                    fieldCatalog.recordEventData(eventTypeId, binaryDataName, EventDataType.BINARY);
                 }
                 return null;
             });
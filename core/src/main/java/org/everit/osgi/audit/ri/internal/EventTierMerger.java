@@ -0,0 +1,134 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+
+/**
+ * Merges the events of the database and of the {@link EventArchive} in the order of the searches. The archived
+ * events are not assumed to be older than the events of the database, an event saved with an old timestamp after an
+ * archive run is returned at its place. An event found in both tiers (its segment was stored, but the process stopped
+ * before the transaction deleting it from the database committed) is returned once, from the database.
+ */
+public class EventTierMerger implements Consumer<EventUi> {
+
+    /**
+     * The order of the searches: save timestamp descending, then id ascending.
+     */
+    public static final Comparator<EventUi> SEARCH_ORDER = Comparator.comparing(EventUi::getSaveTimeStamp)
+            .reversed()
+            .thenComparing(EventUi::getId);
+
+    private final Iterator<EventUi> archivedEvents;
+
+    private final Consumer<EventUi> consumer;
+
+    private EventUi nextArchivedEvent;
+
+    private long eventCount;
+
+    /**
+     * Constructor.
+     *
+     * @param archivedEvents
+     *            the matching events of the archive in the order of the searches.
+     * @param consumer
+     *            receives the merged events.
+     */
+    public EventTierMerger(final Iterator<EventUi> archivedEvents, final Consumer<EventUi> consumer) {
+        this.archivedEvents = archivedEvents;
+        this.consumer = consumer;
+        nextArchivedEvent = archivedEvents.hasNext() ? archivedEvents.next() : null;
+    }
+
+    /**
+     * Passes the next event of the database, preceded by the archived events that come before it.
+     */
+    @Override
+    public void accept(final EventUi databaseEvent) {
+        while ((nextArchivedEvent != null) && (SEARCH_ORDER.compare(nextArchivedEvent, databaseEvent) < 0)) {
+            passNextArchivedEvent();
+        }
+        if ((nextArchivedEvent != null) && nextArchivedEvent.getId().equals(databaseEvent.getId())) {
+            advanceArchivedEvents();
+        }
+        pass(databaseEvent);
+    }
+
+    private void advanceArchivedEvents() {
+        nextArchivedEvent = archivedEvents.hasNext() ? archivedEvents.next() : null;
+    }
+
+    /**
+     * Passes the remaining archived events after the last event of the database.
+     *
+     * @return the number of events passed to the consumer.
+     */
+    public long finish() {
+        while (passNextArchivedEvent()) {
+            // pass all
+        }
+        return eventCount;
+    }
+
+    /**
+     * Merges the ordered events of the two tiers and returns <code>limit</code> events from the
+     * <code>offset</code>. The database events must contain at least the first <code>offset + limit</code> matching
+     * events of the database.
+     */
+    public static List<EventUi> merge(final List<EventUi> databaseEvents, final Iterator<EventUi> archivedEvents,
+            final long offset, final long limit) {
+        List<EventUi> rval = new ArrayList<>();
+        long[] position = new long[] { 0 };
+        EventTierMerger merger = new EventTierMerger(archivedEvents, (event) -> {
+            if (position[0]++ >= offset) {
+                rval.add(event);
+            }
+        });
+        for (Iterator<EventUi> it = databaseEvents.iterator(); it.hasNext() && (rval.size() < limit);) {
+            merger.accept(it.next());
+        }
+        while ((rval.size() < limit) && merger.passNextArchivedEvent()) {
+            // the database events are exhausted, the rest comes from the archive
+        }
+        if (rval.size() > limit) {
+            rval.subList((int) limit, rval.size()).clear();
+        }
+        return rval;
+    }
+
+    private void pass(final EventUi event) {
+        consumer.accept(event);
+        eventCount++;
+    }
+
+    private boolean passNextArchivedEvent() {
+        if (nextArchivedEvent == null) {
+            return false;
+        }
+        pass(nextArchivedEvent);
+        advanceArchivedEvents();
+        return true;
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.everit.osgi.audit.ri.schema.qdsl.QEventType;
+
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.SQLQuery;
+import com.mysema.query.sql.dml.SQLInsertClause;
+import com.mysema.query.types.ConstructorExpression;
+
+/**
+ * Looks up and creates the event types of one application in bulk: one query per chunk of names instead of one query
+ * per name, and one batched insert for all missing event types.
+ */
+public class EventTypeBatchResolver {
+
+    private final Connection connection;
+
+    private final Configuration configuration;
+
+    private final long applicationId;
+
+    private final int chunkSize;
+
+    private final QEventType qEventType = QEventType.eventType;
+
+    /**
+     * Constructor.
+     *
+     * @param chunkSize
+     *            the maximum number of names in the IN list of one query.
+     */
+    public EventTypeBatchResolver(final Connection connection, final Configuration configuration,
+            final long applicationId, final int chunkSize) {
+        this.connection = connection;
+        this.configuration = configuration;
+        this.applicationId = applicationId;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the existing event types of the application with the given names.
+     *
+     * @return the event types by name, the names that do not exist are missing from the map.
+     */
+    public Map<String, CachedEventType> findEventTypes(final List<String> eventTypeNames) {
+        Map<String, CachedEventType> rval = new HashMap<>();
+        for (int from = 0; from < eventTypeNames.size(); from += chunkSize) {
+            List<String> chunk = eventTypeNames.subList(from, Math.min(from + chunkSize, eventTypeNames.size()));
+            new SQLQuery(connection, configuration)
+                    .from(qEventType)
+                    .where(qEventType.applicationId.eq(applicationId).and(qEventType.name.in(chunk)))
+                    .list(ConstructorExpression.create(CachedEventType.class,
+                            qEventType.eventTypeId,
+                            qEventType.name,
+                            qEventType.applicationId,
+                            qEventType.resourceId))
+                    .forEach((eventType) -> rval.put(eventType.getName(), eventType));
+        }
+        return rval;
+    }
+
+    /**
+     * Inserts the event types in one JDBC batch and returns them with their generated ids. The ids are read back by
+     * name, so the JDBC driver does not have to return the generated keys of a batch.
+     *
+     * @param resourceIds
+     *            the resource ids of the new event types by name.
+     */
+    public Map<String, CachedEventType> insertEventTypes(final Map<String, Long> resourceIds) {
+        if (resourceIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        SQLInsertClause insert = new SQLInsertClause(connection, configuration, qEventType);
+        for (Map.Entry<String, Long> resourceId : resourceIds.entrySet()) {
+            insert.set(qEventType.name, resourceId.getKey())
+                    .set(qEventType.applicationId, applicationId)
+                    .set(qEventType.resourceId, resourceId.getValue())
+                    .addBatch();
+        }
+        insert.execute();
+        Map<String, CachedEventType> rval = findEventTypes(new ArrayList<>(resourceIds.keySet()));
+        if (rval.size() != resourceIds.size()) {
+            throw new IllegalStateException("inserted " + resourceIds.size() + " event types but found "
+                    + rval.size());
+        }
+        return rval;
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.everit.osgi.audit.ri.ext.CacheStatistics;
+
+/**
+ * Bounded, thread-safe cache of the event types keyed by application name and event type name. When the cache grows
+ * over its maximum size, the entries are evicted in insertion order. Lookups do not lock, the insertion order is
+ * maintained under a lock by the modifications only.
+ */
+public class EventTypeCache {
+
+    private final int maxSize;
+
+    private final ConcurrentHashMap<EventTypeKey, CachedEventType> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The keys of {@link #entries} in insertion order, guarded by its own monitor.
+     */
+    private final LinkedHashSet<EventTypeKey> insertionOrder = new LinkedHashSet<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    public EventTypeCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive, got: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Removes the eldest entries while the cache is over its maximum size. Must be called holding the monitor of
+     * {@link #insertionOrder}.
+     */
+    private void evict() {
+        Iterator<EventTypeKey> it = insertionOrder.iterator();
+        while ((insertionOrder.size() > maxSize) && it.hasNext()) {
+            EventTypeKey eldest = it.next();
+            it.remove();
+            entries.remove(eldest);
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * Returns the cached event type or <code>null</code> if the key is not cached.
+     */
+    public CachedEventType get(final EventTypeKey key) {
+        CachedEventType eventType = entries.get(key);
+        if (eventType == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return eventType;
+    }
+
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(hitCount.sum(), missCount.sum(), evictionCount.sum(), entries.size(), maxSize);
+    }
+
+    public void invalidate(final EventTypeKey key) {
+        synchronized (insertionOrder) {
+            if (entries.remove(key) != null) {
+                insertionOrder.remove(key);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (insertionOrder) {
+            entries.clear();
+            insertionOrder.clear();
+        }
+    }
+
+    /**
+     * Removes all event types of the application from the cache.
+     */
+    public void invalidateApplication(final String applicationName) {
+        synchronized (insertionOrder) {
+            Iterator<EventTypeKey> it = insertionOrder.iterator();
+            while (it.hasNext()) {
+                EventTypeKey key = it.next();
+                if (key.getApplicationName().equals(applicationName)) {
+                    it.remove();
+                    entries.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Caches the event type. Only committed event types may be put into the cache, because the cached ids are used by
+     * other transactions.
+     */
+    public void put(final EventTypeKey key, final CachedEventType eventType) {
+        synchronized (insertionOrder) {
+            entries.put(key, eventType);
+            if (insertionOrder.add(key)) {
+                evict();
+            }
+        }
+    }
+
+}
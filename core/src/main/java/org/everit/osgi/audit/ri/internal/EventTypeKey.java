@@ -0,0 +1,65 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.Objects;
+
+/**
+ * Identifies an event type by the name of its application and its own name.
+ */
+public final class EventTypeKey {
+
+    private final String applicationName;
+
+    private final String eventTypeName;
+
+    public EventTypeKey(final String applicationName, final String eventTypeName) {
+        this.applicationName = Objects.requireNonNull(applicationName, "applicationName cannot be null");
+        this.eventTypeName = Objects.requireNonNull(eventTypeName, "eventTypeName cannot be null");
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof EventTypeKey)) {
+            return false;
+        }
+        EventTypeKey other = (EventTypeKey) obj;
+        return applicationName.equals(other.applicationName) && eventTypeName.equals(other.eventTypeName);
+    }
+
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    public String getEventTypeName() {
+        return eventTypeName;
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * applicationName.hashCode()) + eventTypeName.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "EventTypeKey [applicationName=" + applicationName + ", eventTypeName=" + eventTypeName + "]";
+    }
+
+}
@@ -0,0 +1,204 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.osgi.audit.dto.EventData;
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventType;
+
+import com.mysema.query.Tuple;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.SQLQuery;
+import com.mysema.query.types.expr.BooleanExpression;
+
+/**
+ * Thread-safe catalog of the event data names and types stored for each event type. The fields of an event type are
+ * loaded from the database the first time they are requested and again when they are requested after the time to
+ * live has elapsed. In between, the catalog is kept up to date by the event persisters, so the searches do not have
+ * to scan the <code>event_data</code> table to find the available fields.
+ * <p>
+ * The catalog may contain more fields than the database: the fields of rolled back or purged events stay in it until
+ * it is invalidated. It may also miss fields for at most the time to live: the fields stored by other nodes or outside
+ * of this component after the fields of the event type were loaded. The searches use the catalog only as a hint that
+ * never changes their results, see {@link ComplexEventLoader#withFieldCatalog(FieldCatalog)}.
+ */
+public class FieldCatalog {
+
+    /**
+     * The fields of one event type. The fields recorded by the persisters are kept even if they are recorded before
+     * the fields are loaded, so a load that misses a concurrently inserted event cannot lose its fields.
+     */
+    private static class EventTypeFields {
+
+        private final ConcurrentHashMap<String, Set<EventDataType>> fieldTypes = new ConcurrentHashMap<>();
+
+        private volatile boolean loaded;
+
+        /**
+         * The {@link System#nanoTime()} when the last load started.
+         */
+        private volatile long loadNanos;
+
+        boolean isLoaded(final long nowNanos, final long ttlNanos) {
+            return loaded && ((nowNanos - loadNanos) < ttlNanos);
+        }
+
+        void add(final String name, final EventDataType type) {
+            Set<EventDataType> types = fieldTypes.get(name);
+            if ((types == null) || !types.contains(type)) {
+                fieldTypes.merge(name, Collections.singleton(type), (oldTypes, newTypes) -> {
+                    Set<EventDataType> mergedTypes = EnumSet.copyOf(oldTypes);
+                    mergedTypes.addAll(newTypes);
+                    return Collections.unmodifiableSet(mergedTypes);
+                });
+            }
+        }
+
+    }
+
+    private final ConcurrentHashMap<Long, EventTypeFields> entries = new ConcurrentHashMap<>();
+
+    private final long ttlNanos;
+
+    private final AuditMetricsRecorder metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param ttlSeconds
+     *            the time after which the fields of an event type are loaded again, <code>0</code> loads them on
+     *            every request.
+     * @param metrics
+     *            records the event types served from the catalog and the event types loaded from the database.
+     */
+    public FieldCatalog(final int ttlSeconds, final AuditMetricsRecorder metrics) {
+        if (ttlSeconds < 0) {
+            throw new IllegalArgumentException("ttlSeconds cannot be negative, got: " + ttlSeconds);
+        }
+        ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.metrics = metrics;
+    }
+
+    private void addFieldTypes(final EventTypeFields fields, final Map<String, Set<EventDataType>> rval) {
+        fields.fieldTypes.forEach((name, types) -> rval.merge(name, types, (oldTypes, newTypes) -> {
+            Set<EventDataType> mergedTypes = EnumSet.copyOf(oldTypes);
+            mergedTypes.addAll(newTypes);
+            return mergedTypes;
+        }));
+    }
+
+    /**
+     * Returns the fields stored for the selected event types of the selected applications. The fields of the event
+     * types not loaded yet or loaded more than the time to live ago are loaded from the database.
+     *
+     * @param selectedEventTypeIds
+     *            the event types, <code>null</code> means all event types of the applications.
+     * @return the types by event data name.
+     */
+    public Map<String, Set<EventDataType>> getFieldTypes(final Connection connection,
+            final Configuration configuration, final Collection<Long> selectedAppIds,
+            final Collection<Long> selectedEventTypeIds) {
+        QEventType qEventType = QEventType.eventType;
+        BooleanExpression predicate = qEventType.applicationId.in(selectedAppIds);
+        if (selectedEventTypeIds != null) {
+            predicate = predicate.and(qEventType.eventTypeId.in(selectedEventTypeIds));
+        }
+        List<Long> eventTypeIds = new SQLQuery(connection, configuration)
+                .from(qEventType)
+                .where(predicate)
+                .list(qEventType.eventTypeId);
+        List<Long> unloadedEventTypeIds = new ArrayList<>();
+        long nowNanos = System.nanoTime();
+        for (Long eventTypeId : eventTypeIds) {
+            if (!entries.computeIfAbsent(eventTypeId, (id) -> new EventTypeFields()).isLoaded(nowNanos, ttlNanos)) {
+                unloadedEventTypeIds.add(eventTypeId);
+            }
+        }
+        if (!unloadedEventTypeIds.isEmpty()) {
+            load(connection, configuration, unloadedEventTypeIds);
+        }
+        metrics.recordFieldCatalogLookup(eventTypeIds.size() - unloadedEventTypeIds.size(),
+                unloadedEventTypeIds.size());
+        Map<String, Set<EventDataType>> rval = new HashMap<>();
+        for (Long eventTypeId : eventTypeIds) {
+            EventTypeFields fields = entries.get(eventTypeId);
+            if (fields != null) {
+                addFieldTypes(fields, rval);
+            }
+        }
+        return rval;
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private void load(final Connection connection, final Configuration configuration,
+            final List<Long> eventTypeIds) {
+        long loadNanos = System.nanoTime();
+        QEvent qEvent = QEvent.event;
+        QEventData qEventData = QEventData.eventData;
+        List<Tuple> rows = new SQLQuery(connection, configuration)
+                .from(qEvent)
+                .join(qEventData).on(qEvent.eventId.eq(qEventData.eventId))
+                .where(qEvent.eventTypeId.in(eventTypeIds))
+                .distinct()
+                .list(qEvent.eventTypeId, qEventData.eventDataName, qEventData.eventDataType);
+        for (Tuple row : rows) {
+            entries.computeIfAbsent(row.get(qEvent.eventTypeId), (id) -> new EventTypeFields())
+                    .add(row.get(qEventData.eventDataName),
+                            EventDataRowMapper.toEventDataType(row.get(qEventData.eventDataType)));
+        }
+        for (Long eventTypeId : eventTypeIds) {
+            EventTypeFields fields = entries.computeIfAbsent(eventTypeId, (id) -> new EventTypeFields());
+            fields.loadNanos = loadNanos;
+            fields.loaded = true;
+        }
+    }
+
+    /**
+     * Records the fields of a persisted event.
+     */
+    public void recordEventData(final long eventTypeId, final EventData[] eventDataArray) {
+        EventTypeFields fields = entries.computeIfAbsent(eventTypeId, (id) -> new EventTypeFields());
+        for (EventData eventData : eventDataArray) {
+            fields.add(eventData.getName(), eventData.getEventDataType());
+        }
+    }
+
+    /**
+     * Records a field of a persisted event.
+     */
+    public void recordEventData(final long eventTypeId, final String name, final EventDataType type) {
+        entries.computeIfAbsent(eventTypeId, (id) -> new EventTypeFields()).add(name, type);
+    }
+
+}
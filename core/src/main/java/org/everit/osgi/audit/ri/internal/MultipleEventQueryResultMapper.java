@@ -32,9 +32,14 @@
  */
 package org.everit.osgi.audit.ri.internal;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import org.everit.osgi.audit.dto.EventDataType;
 import org.everit.osgi.audit.ri.conf.search.api.EventUi;
 import org.everit.osgi.audit.ri.schema.qdsl.QApplication;
 import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
@@ -42,45 +47,106 @@ import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
 import org.everit.osgi.audit.ri.schema.qdsl.QEventType;
 
 import com.mysema.query.Tuple;
+import com.mysema.query.types.Expression;
 
+/**
+ * Groups the rows of an event search (one row per event and event data pair, ordered so that the rows of an event are
+ * adjacent) into {@link EventUi} objects in a single pass.
+ */
 public class MultipleEventQueryResultMapper {
 
-    private final List<Tuple> rawResult;
+    private static final int APP_NAME_INDEX = 0;
 
-    private final QApplication qApplication = QApplication.application;
+    private static final int TYPE_NAME_INDEX = 1;
 
-    private final QEventType qEventType = QEventType.eventType;
+    private static final int EVENT_ID_INDEX = 2;
 
-    private final QEvent qEvent;
+    private static final int SAVE_TIMESTAMP_INDEX = 3;
 
-    private final QEventData qEventData;
+    private static final int FIRST_EVENT_DATA_INDEX = 4;
 
-    public MultipleEventQueryResultMapper(final List<Tuple> rawResult, final QEvent qEvent, final QEventData qEventData) {
-        this.rawResult = rawResult;
-        this.qEvent = qEvent;
-        this.qEventData = qEventData;
+    /**
+     * The columns of the result rows in the order expected by the mapper.
+     *
+     * @see EventDataRowMapper#projection(QEventData, boolean)
+     */
+    public static Expression<?>[] projection(final QEvent qEvent, final QEventData qEventData,
+            final boolean withBinaryValue) {
+        return projection(qEvent, EventDataRowMapper.projection(qEventData, withBinaryValue));
     }
 
-    List<EventUi> mapToEvents() {
-        List<EventUi> rval = new ArrayList<EventUi>();
-        Long prevEventId = null;
+    private static Expression<?>[] projection(final QEvent qEvent, final Expression<?>[] eventDataColumns) {
+        Expression<?>[] projection = new Expression<?>[FIRST_EVENT_DATA_INDEX + eventDataColumns.length];
+        projection[APP_NAME_INDEX] = QApplication.application.applicationName;
+        projection[TYPE_NAME_INDEX] = QEventType.eventType.name;
+        projection[EVENT_ID_INDEX] = qEvent.eventId;
+        projection[SAVE_TIMESTAMP_INDEX] = qEvent.saveTimestamp;
+        System.arraycopy(eventDataColumns, 0, projection, FIRST_EVENT_DATA_INDEX, eventDataColumns.length);
+        return projection;
+    }
+
+    /**
+     * The columns of the result rows in the order expected by the mapper, with only the value columns of the given
+     * types.
+     *
+     * @see EventDataRowMapper#projection(QEventData, Set)
+     */
+    public static Expression<?>[] projection(final QEvent qEvent, final QEventData qEventData,
+            final Set<EventDataType> valueTypes) {
+        return projection(qEvent, EventDataRowMapper.projection(qEventData, valueTypes));
+    }
+
+    private final EventDataRowMapper rowDataMapper;
+
+    public MultipleEventQueryResultMapper(final QEventData qEventData) {
+        rowDataMapper = new EventDataRowMapper(qEventData, FIRST_EVENT_DATA_INDEX);
+    }
+
+    private EventUi.Builder newBuilder(final long eventId, final Tuple row) {
+        return new EventUi.Builder()
+                .eventId(eventId)
+                .typeName(row.get(TYPE_NAME_INDEX, String.class))
+                .appName(row.get(APP_NAME_INDEX, String.class))
+                .saveTimestamp(row.get(SAVE_TIMESTAMP_INDEX, Timestamp.class).toInstant());
+    }
+
+    /**
+     * Groups the rows into events and passes every event to the consumer as soon as all of its rows are read. The
+     * rows of one event must be adjacent. Only the event under construction is kept in memory, a builder is created
+     * only when a new event starts and the event ids are compared as primitives.
+     *
+     * @return the number of events passed to the consumer.
+     */
+    long forEachEvent(final Iterator<Tuple> rows, final Consumer<EventUi> consumer) {
+        long eventCount = 0;
+        long prevEventId = 0;
         EventUi.Builder underConstruction = null;
-        EventDataRowMapper rowDataMapper = new EventDataRowMapper(qEventData);
-        for (Tuple row : rawResult) {
-            Long eventId = row.get(qEvent.eventId);
-            if ((prevEventId == null) || !eventId.equals(prevEventId)) {
-                if (underConstruction != null) {
-                    rval.add(underConstruction.build());
-                }
-                underConstruction = new EventUi.Builder()
-                        .eventId(row.get(qEvent.eventId))
-                        .typeName(row.get(qEventType.name))
-                        .appName(row.get(qApplication.applicationName))
-                        .saveTimestamp(row.get(qEvent.saveTimestamp).toInstant());
+        while (rows.hasNext()) {
+            Tuple row = rows.next();
+            long eventId = row.get(EVENT_ID_INDEX, Long.class);
+            if (underConstruction == null) {
+                underConstruction = newBuilder(eventId, row);
                 prevEventId = eventId;
+            } else if (eventId != prevEventId) {
+                consumer.accept(underConstruction.build());
+                eventCount++;
+                underConstruction = newBuilder(eventId, row);
+                prevEventId = eventId;
+            }
+            if (rowDataMapper.hasEventData(row)) {
+                rowDataMapper.addEventDataForRow(underConstruction, row);
             }
-            rowDataMapper.addEventDataForRow(underConstruction, row);
         }
+        if (underConstruction != null) {
+            consumer.accept(underConstruction.build());
+            eventCount++;
+        }
+        return eventCount;
+    }
+
+    List<EventUi> mapToEvents(final List<Tuple> rawResult) {
+        List<EventUi> rval = new ArrayList<EventUi>();
+        forEachEvent(rawResult.iterator(), rval::add);
         return rval;
     }
 
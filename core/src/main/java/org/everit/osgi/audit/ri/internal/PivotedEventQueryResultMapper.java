@@ -0,0 +1,160 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+import org.everit.osgi.audit.ri.schema.qdsl.QApplication;
+import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventType;
+
+import com.mysema.query.Tuple;
+import com.mysema.query.support.Expressions;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
+
+/**
+ * Maps the rows of a pivoted event search: one row per event with one typed column per requested event data,
+ * computed by conditional aggregation over the joined <code>event_data</code> rows of the event.
+ */
+public class PivotedEventQueryResultMapper {
+
+    private static final int APP_NAME_INDEX = 0;
+
+    private static final int TYPE_NAME_INDEX = 1;
+
+    private static final int EVENT_ID_INDEX = 2;
+
+    private static final int SAVE_TIMESTAMP_INDEX = 3;
+
+    private static final int FIRST_FIELD_INDEX = 4;
+
+    /**
+     * The columns the rows are grouped by, every column of the projection that is not an aggregate.
+     */
+    public static Expression<?>[] groupBy(final QEvent qEvent) {
+        return new Expression<?>[] { QApplication.application.applicationName,
+                QEventType.eventType.name,
+                qEvent.eventId,
+                qEvent.saveTimestamp };
+    }
+
+    /**
+     * Selects <code>max(case when name = ? and type = ? then value end)</code> for a field. An event has at most
+     * one event data with a given name, so the aggregate picks its value or <code>null</code>.
+     */
+    private static Expression<?> pivotColumn(final QEventData qEventData, final String fieldName,
+            final EventDataType fieldType) {
+        Path<?> valueColumn;
+        switch (fieldType) {
+        case NUMBER:
+            valueColumn = qEventData.numberValue;
+            break;
+        case STRING:
+            valueColumn = qEventData.stringValue;
+            break;
+        case TIMESTAMP:
+            valueColumn = qEventData.timestampValue;
+            break;
+        case TEXT:
+        case BINARY:
+        default:
+            // LOB columns cannot be aggregated portably
+            throw new IllegalArgumentException("unsupported event data type in pivoted search: " + fieldType
+                    + " of field [" + fieldName + "]");
+        }
+        return Expressions.template(valueColumn.getType(), "max(case when {0} then {1} end)",
+                qEventData.eventDataName.eq(fieldName)
+                        .and(qEventData.eventDataType.eq(fieldType.toString())),
+                valueColumn);
+    }
+
+    private final QEvent qEvent;
+
+    private final QEventData qEventData;
+
+    private final List<Map.Entry<String, EventDataType>> fields;
+
+    public PivotedEventQueryResultMapper(final QEvent qEvent, final QEventData qEventData,
+            final Map<String, EventDataType> fields) {
+        this.qEvent = qEvent;
+        this.qEventData = qEventData;
+        this.fields = new ArrayList<>(Objects.requireNonNull(fields, "fields cannot be null").entrySet());
+    }
+
+    private void addField(final EventUi.Builder builder, final Tuple row, final int fieldIdx) {
+        String fieldName = fields.get(fieldIdx).getKey();
+        int columnIdx = FIRST_FIELD_INDEX + fieldIdx;
+        switch (fields.get(fieldIdx).getValue()) {
+        case NUMBER:
+            builder.numberData(fieldName, row.get(columnIdx, qEventData.numberValue.getType()));
+            break;
+        case STRING:
+            builder.stringData(fieldName, row.get(columnIdx, String.class));
+            break;
+        case TIMESTAMP:
+            builder.timestampData(fieldName, row.get(columnIdx, Timestamp.class).toInstant());
+            break;
+        default:
+            throw new IllegalStateException("unsupported event data type: " + fields.get(fieldIdx).getValue());
+        }
+    }
+
+    /**
+     * The columns of the result rows in the order expected by the mapper.
+     */
+    public Expression<?>[] projection() {
+        Expression<?>[] groupBy = groupBy(qEvent);
+        Expression<?>[] projection = new Expression<?>[FIRST_FIELD_INDEX + fields.size()];
+        System.arraycopy(groupBy, 0, projection, 0, groupBy.length);
+        for (int i = 0; i < fields.size(); i++) {
+            projection[FIRST_FIELD_INDEX + i] = pivotColumn(qEventData, fields.get(i).getKey(),
+                    fields.get(i).getValue());
+        }
+        return projection;
+    }
+
+    /**
+     * Creates an event from each row. The fields the event does not have (the column is <code>null</code>) are left
+     * out of the event data.
+     */
+    public List<EventUi> mapToEvents(final List<Tuple> rows) {
+        List<EventUi> events = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            EventUi.Builder builder = new EventUi.Builder()
+                    .eventId(row.get(EVENT_ID_INDEX, Long.class))
+                    .typeName(row.get(TYPE_NAME_INDEX, String.class))
+                    .appName(row.get(APP_NAME_INDEX, String.class))
+                    .saveTimestamp(row.get(SAVE_TIMESTAMP_INDEX, Timestamp.class).toInstant());
+            for (int i = 0; i < fields.size(); i++) {
+                if (row.get(FIRST_FIELD_INDEX + i, Object.class) != null) {
+                    addField(builder, row, i);
+                }
+            }
+            events.add(builder.build());
+        }
+        return events;
+    }
+
+}
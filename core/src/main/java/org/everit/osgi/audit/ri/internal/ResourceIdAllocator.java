@@ -0,0 +1,76 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntFunction;
+
+/**
+ * Hands out resource ids from blocks reserved in advance, so creating an application or an event type does not wait
+ * for the resource service. Taking an id is a lock-free poll of a queue, only the refill of an empty block is
+ * serialized. The reserved ids are committed by the reserver, the ids left in the queue when the component stops are
+ * never used.
+ */
+public class ResourceIdAllocator {
+
+    private final int blockSize;
+
+    private final IntFunction<List<Long>> blockReserver;
+
+    private final ConcurrentLinkedQueue<Long> reservedIds = new ConcurrentLinkedQueue<>();
+
+    private final Object refillLock = new Object();
+
+    /**
+     * Constructor.
+     *
+     * @param blockSize
+     *            the number of resource ids reserved at once.
+     * @param blockReserver
+     *            creates and commits the given number of resources and returns their ids.
+     */
+    public ResourceIdAllocator(final int blockSize, final IntFunction<List<Long>> blockReserver) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        this.blockSize = blockSize;
+        this.blockReserver = blockReserver;
+    }
+
+    /**
+     * Returns a reserved resource id that was not returned before, reserving a new block if the current one ran out.
+     */
+    public long next() {
+        Long resourceId = reservedIds.poll();
+        while (resourceId == null) {
+            refill();
+            resourceId = reservedIds.poll();
+        }
+        return resourceId;
+    }
+
+    private void refill() {
+        synchronized (refillLock) {
+            // another thread may have refilled while this one was waiting
+            if (reservedIds.isEmpty()) {
+                reservedIds.addAll(blockReserver.apply(blockSize));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.apache.felix.scr.annotations.Activate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.ConfigurationPolicy;
+import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Properties;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.PropertyUnbounded;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.everit.osgi.audit.ri.conf.AuditRiConstants;
+import org.everit.osgi.audit.ri.ext.AuditRetentionService;
+import org.everit.osgi.audit.ri.ext.PurgeReport;
+import org.everit.osgi.audit.ri.schema.qdsl.QApplication;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventType;
+import org.everit.osgi.querydsl.support.QuerydslSupport;
+import org.everit.osgi.transaction.helper.api.TransactionHelper;
+
+import com.mysema.query.sql.SQLQuery;
+import com.mysema.query.types.expr.BooleanExpression;
+
+@Component(name = AuditRiConstants.RETENTION_SERVICE_FACTORY_PID, metatype = true, configurationFactory = true,
+        policy = ConfigurationPolicy.REQUIRE)
+@Properties({
+        @Property(name = AuditRiConstants.PROP_TRASACTION_HELPER),
+        @Property(name = AuditRiConstants.PROP_QUERYDSL_SUPPORT),
+        @Property(name = AuditRiConstants.PROP_RETENTION_RULES, unbounded = PropertyUnbounded.ARRAY, value = {}),
+        @Property(name = AuditRiConstants.PROP_PURGE_CHUNK_SIZE, intValue = AuditRiConstants.DEFAULT_PURGE_CHUNK_SIZE),
+        @Property(name = AuditRiConstants.PROP_PURGE_CHUNK_PAUSE,
+                intValue = AuditRiConstants.DEFAULT_PURGE_CHUNK_PAUSE),
+        @Property(name = AuditRiConstants.PROP_PURGE_INTERVAL, intValue = AuditRiConstants.DEFAULT_PURGE_INTERVAL)
+})
+@Service
+public class RetentionComponent implements AuditRetentionService {
+
+    private static final Logger LOGGER = Logger.getLogger(RetentionComponent.class.getName());
+
+    @Reference(bind = "setTransactionHelper")
+    private TransactionHelper transactionHelper;
+
+    @Reference(bind = "setQuerydslSupport")
+    private QuerydslSupport querydslSupport;
+
+    private List<RetentionRule> retentionRules = Collections.emptyList();
+
+    private int purgeChunkSize = AuditRiConstants.DEFAULT_PURGE_CHUNK_SIZE;
+
+    private int purgeChunkPause = AuditRiConstants.DEFAULT_PURGE_CHUNK_PAUSE;
+
+    /**
+     * Runs the periodic purge, <code>null</code> if the purge is only run on request.
+     */
+    private ScheduledExecutorService purgeScheduler;
+
+    @Activate
+    public void activate(final Map<String, Object> componentProperties) {
+        retentionRules = Arrays.stream(ComponentProperties.getStringArrayProperty(componentProperties,
+                AuditRiConstants.PROP_RETENTION_RULES))
+                .map(RetentionRule::parse)
+                .collect(Collectors.toList());
+        purgeChunkSize = ComponentProperties.getIntProperty(componentProperties,
+                AuditRiConstants.PROP_PURGE_CHUNK_SIZE, AuditRiConstants.DEFAULT_PURGE_CHUNK_SIZE);
+        purgeChunkPause = ComponentProperties.getNonNegativeIntProperty(componentProperties,
+                AuditRiConstants.PROP_PURGE_CHUNK_PAUSE, AuditRiConstants.DEFAULT_PURGE_CHUNK_PAUSE);
+        int purgeInterval = ComponentProperties.getNonNegativeIntProperty(componentProperties,
+                AuditRiConstants.PROP_PURGE_INTERVAL, AuditRiConstants.DEFAULT_PURGE_INTERVAL);
+        if ((purgeInterval > 0) && !retentionRules.isEmpty()) {
+            String threadName = "audit-retention-" + componentProperties.get("service.pid");
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::scheduledPurge, purgeInterval, purgeInterval, TimeUnit.MINUTES);
+            purgeScheduler = scheduler;
+        }
+    }
+
+    /**
+     * Stops the periodic purge and waits until it has terminated. A running purge stops after the chunk it is
+     * deleting, the committed chunks remain deleted.
+     */
+    @Deactivate
+    public void deactivate() {
+        if (purgeScheduler == null) {
+            return;
+        }
+        ScheduledExecutorService scheduler = purgeScheduler;
+        purgeScheduler = null;
+        scheduler.shutdownNow();
+        boolean interrupted = false;
+        while (!scheduler.isTerminated()) {
+            try {
+                scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Finds the ids of the event types a rule applies to. An application-wide rule does not apply to the event types
+     * that have their own rule.
+     */
+    private List<Long> findEventTypeIds(final RetentionRule rule) {
+        List<String> eventTypesWithOwnRule = retentionRules.stream()
+                .filter((other) -> (other.getEventTypeName() != null)
+                        && other.getApplicationName().equals(rule.getApplicationName()))
+                .map(RetentionRule::getEventTypeName)
+                .collect(Collectors.toList());
+        return findEventTypeIds(rule.getApplicationName(), rule.getEventTypeName(), eventTypesWithOwnRule);
+    }
+
+    private List<Long> findEventTypeIds(final String applicationName, final String eventTypeName,
+            final List<String> excludedEventTypeNames) {
+        return querydslSupport.execute((connection, configuration) -> {
+            QEventType qEventType = QEventType.eventType;
+            QApplication qApplication = QApplication.application;
+            BooleanExpression predicate = qApplication.applicationName.eq(applicationName);
+            if (eventTypeName != null) {
+                predicate = predicate.and(qEventType.name.eq(eventTypeName));
+            } else if (!excludedEventTypeNames.isEmpty()) {
+                predicate = predicate.and(qEventType.name.notIn(excludedEventTypeNames));
+            }
+            return new SQLQuery(connection, configuration)
+                    .from(qEventType)
+                    .innerJoin(qApplication).on(qEventType.applicationId.eq(qApplication.applicationId))
+                    .where(predicate)
+                    .list(qEventType.eventTypeId);
+        });
+    }
+
+    @Override
+    public PurgeReport purge() {
+        long startNanos = System.nanoTime();
+        Instant now = Instant.now();
+        ChunkedEventPurger purger = newPurger();
+        for (RetentionRule rule : retentionRules) {
+            if (!purger.purge(findEventTypeIds(rule), now.minus(rule.getRetention()))) {
+                break;
+            }
+        }
+        return purger.toReport(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public PurgeReport purgeEventsBefore(final String applicationName, final String eventTypeName,
+            final Instant before) {
+        Objects.requireNonNull(applicationName, "applicationName cannot be null");
+        Objects.requireNonNull(before, "before cannot be null");
+        long startNanos = System.nanoTime();
+        ChunkedEventPurger purger = newPurger();
+        purger.purge(findEventTypeIds(applicationName, eventTypeName, Collections.emptyList()), before);
+        return purger.toReport(System.nanoTime() - startNanos);
+    }
+
+    private ChunkedEventPurger newPurger() {
+        return new ChunkedEventPurger(transactionHelper, querydslSupport, purgeChunkSize, purgeChunkPause);
+    }
+
+    private void scheduledPurge() {
+        try {
+            PurgeReport report = purge();
+            LOGGER.log(Level.INFO, "Audit event purge finished: " + report);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Audit event purge failed", e);
+        }
+    }
+
+    public void setQuerydslSupport(final QuerydslSupport querydslSupport) {
+        this.querydslSupport = querydslSupport;
+    }
+
+    public void setTransactionHelper(final TransactionHelper transactionHelper) {
+        this.transactionHelper = transactionHelper;
+    }
+
+}
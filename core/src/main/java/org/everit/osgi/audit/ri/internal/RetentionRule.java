@@ -0,0 +1,87 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+/**
+ * How long the events of an application or of one event type of an application are kept. The textual form is
+ * <code>applicationName=duration</code> or <code>applicationName/eventTypeName=duration</code>, where the duration is
+ * in ISO-8601 format, e.g. <code>P30D</code>.
+ */
+public final class RetentionRule {
+
+    public static RetentionRule parse(final String rule) {
+        Objects.requireNonNull(rule, "rule cannot be null");
+        int separatorIdx = rule.lastIndexOf('=');
+        if (separatorIdx < 1) {
+            throw new IllegalArgumentException("retention rule must be in applicationName[/eventTypeName]=duration"
+                    + " format, got: " + rule);
+        }
+        String target = rule.substring(0, separatorIdx).trim();
+        Duration retention;
+        try {
+            retention = Duration.parse(rule.substring(separatorIdx + 1).trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid duration in retention rule: " + rule, e);
+        }
+        if (retention.isNegative()) {
+            throw new IllegalArgumentException("retention cannot be negative: " + rule);
+        }
+        int typeSeparatorIdx = target.indexOf('/');
+        if (typeSeparatorIdx < 0) {
+            return new RetentionRule(target, null, retention);
+        }
+        return new RetentionRule(target.substring(0, typeSeparatorIdx).trim(),
+                target.substring(typeSeparatorIdx + 1).trim(), retention);
+    }
+
+    private final String applicationName;
+
+    private final String eventTypeName;
+
+    private final Duration retention;
+
+    public RetentionRule(final String applicationName, final String eventTypeName, final Duration retention) {
+        this.applicationName = Objects.requireNonNull(applicationName, "applicationName cannot be null");
+        this.eventTypeName = eventTypeName;
+        this.retention = Objects.requireNonNull(retention, "retention cannot be null");
+    }
+
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    /**
+     * The name of the event type, <code>null</code> if the rule applies to the whole application.
+     */
+    public String getEventTypeName() {
+        return eventTypeName;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    @Override
+    public String toString() {
+        return applicationName + (eventTypeName == null ? "" : "/" + eventTypeName) + "=" + retention;
+    }
+
+}
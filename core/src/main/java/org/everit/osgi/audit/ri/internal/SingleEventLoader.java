@@ -18,9 +18,12 @@
 package org.everit.osgi.audit.ri.internal;
 
 import java.sql.Connection;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 
+import org.everit.osgi.audit.dto.EventDataType;
 import org.everit.osgi.audit.ri.conf.search.api.EventUi;
 import org.everit.osgi.audit.ri.schema.qdsl.QApplication;
 import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
@@ -32,6 +35,7 @@ import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.SQLQuery;
 import com.mysema.query.sql.SQLSubQuery;
 import com.mysema.query.types.expr.BooleanExpression;
+import com.mysema.query.types.path.NumberPath;
 
 public class SingleEventLoader {
 
@@ -59,17 +63,19 @@ public class SingleEventLoader {
         query.leftJoin(new SQLSubQuery()
                 .from(qEventData)
                 .where(eventDataPred)
-                .list(qEventData.eventId,
-                        qEventData.eventDataName,
-                        qEventData.eventDataType,
-                        qEventData.numberValue,
-                        qEventData.stringValue,
-                        qEventData.textValue,
-                        qEventData.timestampValue,
-                        qEventData.binaryValue), qEventData).on(qEvent.eventId.eq(qEventData.eventId));
+                .list(EventDataProjectionPlanner.subqueryColumns(qEventData, EnumSet.allOf(EventDataType.class))),
+                qEventData)
+                .on(qEvent.eventId.eq(qEventData.eventId));
         return qEventData;
     }
 
+    private BooleanExpression eventIdPredicate(final NumberPath<Long> eventIdPath, final Collection<Long> eventIds) {
+        if (eventIds.size() == 1) {
+            return eventIdPath.eq(eventIds.iterator().next());
+        }
+        return eventIdPath.in(eventIds);
+    }
+
     private void joinEventData(final BooleanExpression eventDataPred) {
         if (eventDataPred == null) {
             query.leftJoin(qEventData).on(qEvent.eventId.eq(qEventData.eventId));
@@ -88,50 +94,48 @@ public class SingleEventLoader {
         return mapToEvent(singleEventResult);
     }
 
+    /**
+     * Loads the events with the given ids in one query. The events are grouped from the rows the same way as by
+     * {@link #loadEvent(long, BooleanExpression)}.
+     *
+     * @return the events in the order of their ids, without the ids that do not exist.
+     */
+    public List<EventUi> loadEvents(final Collection<Long> eventIds, final BooleanExpression eventDataPred) {
+        if (eventIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Tuple> result = eventQuery(eventIds, eventDataPred);
+        return new MultipleEventQueryResultMapper(qEventData).mapToEvents(result);
+    }
+
     private EventUi mapToEvent(final List<Tuple> result) {
-        Iterator<Tuple> resultIt = result.iterator();
-        if (!resultIt.hasNext()) {
+        List<EventUi> events = new MultipleEventQueryResultMapper(qEventData).mapToEvents(result);
+        if (events.isEmpty()) {
             return null;
         }
-        Tuple firstRow = resultIt.next();
-        EventUi.Builder builder = new EventUi.Builder()
-                .eventId(firstRow.get(qEvent.eventId))
-                .typeName(firstRow.get(qEventType.name))
-                .appName(firstRow.get(qApplication.applicationName))
-                .saveTimestamp(firstRow.get(qEvent.saveTimestamp).toInstant());
-        if (firstRow.get(qEventData.eventDataType) == null) { // no event data belongs to the event
-            return builder.build();
-        }
-        EventDataRowMapper rowDataMapper = new EventDataRowMapper(qEventData);
-        rowDataMapper.addEventDataForRow(builder, firstRow);
-        while (resultIt.hasNext()) {
-            Tuple row = resultIt.next();
-            rowDataMapper.addEventDataForRow(builder, row);
-        }
-        return builder.build();
+        return events.get(0);
     }
 
-    private List<Tuple> singleEventQuery(
-            final long eventId,
+    private List<Tuple> eventQuery(
+            final Collection<Long> eventIds,
             final BooleanExpression eventDataPred) {
         query = new SQLQuery(connection, configuration)
                 .from(qEvent)
                 .join(qEventType).on(qEvent.eventTypeId.eq(qEventType.eventTypeId))
                 .join(qApplication).on(qApplication.applicationId.eq(qEventType.applicationId));
         joinEventData(eventDataPred);
-        query.where(qEvent.eventId.eq(eventId));
-        return query.list(
-                qApplication.applicationName,
-                qEventType.name,
-                qEvent.eventId,
-                qEvent.saveTimestamp,
-                qEventData.eventDataName,
-                qEventData.eventDataType,
-                qEventData.numberValue,
-                qEventData.stringValue,
-                qEventData.textValue,
-                qEventData.timestampValue,
-                qEventData.binaryValue);
+        query.where(eventIdPredicate(qEvent.eventId, eventIds));
+        if (eventIds.size() > 1) {
+            // the rows of an event must be adjacent to be grouped into one event
+            query.orderBy(qEvent.eventId.asc());
+        }
+        return query.list(MultipleEventQueryResultMapper.projection(qEvent, qEventData, true));
+    }
+
+    private List<Tuple> singleEventQuery(
+            final long eventId,
+            final BooleanExpression eventDataPred) {
+        return eventQuery(Collections.singletonList(eventId), eventDataPred);
     }
 
 }
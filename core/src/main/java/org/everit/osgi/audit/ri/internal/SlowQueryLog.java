@@ -0,0 +1,178 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.everit.osgi.audit.ri.ext.SlowQuery;
+
+import com.mysema.query.sql.SQLBindings;
+import com.mysema.query.types.Null;
+
+/**
+ * Bounded, lock-free ring buffer of the queries that took longer than a threshold. When the buffer is full, the
+ * oldest entry is overwritten.
+ */
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+
+    /**
+     * Kept and logged instead of the bound values if the bindings are not logged.
+     */
+    public static final String MASKED_BINDING = "***";
+
+    private final long thresholdNanos;
+
+    private final boolean explain;
+
+    private final boolean logBindings;
+
+    private final AtomicReferenceArray<SlowQuery> entries;
+
+    private final AtomicLong nextIndex = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param thresholdMillis
+     *            the queries running for at least this long are logged, <code>0</code> disables the log.
+     * @param capacity
+     *            the maximum number of the kept entries.
+     * @param explain
+     *            whether the database plan of the slow queries is captured.
+     * @param logBindings
+     *            whether the values bound to the parameters are kept and logged, they are masked otherwise.
+     */
+    public SlowQueryLog(final int thresholdMillis, final int capacity, final boolean explain,
+            final boolean logBindings) {
+        if (thresholdMillis < 0) {
+            throw new IllegalArgumentException("thresholdMillis cannot be negative, got: " + thresholdMillis);
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, got: " + capacity);
+        }
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.explain = explain;
+        this.logBindings = logBindings;
+        this.entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    /**
+     * Runs <code>EXPLAIN</code> on the query. The syntax is understood by H2, PostgreSQL and MySQL, on other
+     * databases the error message is returned as the plan.
+     */
+    private String explain(final Connection connection, final SQLBindings sqlBindings) {
+        try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN " + sqlBindings.getSQL())) {
+            int paramIdx = 1;
+            for (Object binding : sqlBindings.getBindings()) {
+                if ((binding == null) || (binding instanceof Null)) {
+                    stmt.setNull(paramIdx, Types.NULL);
+                } else {
+                    stmt.setObject(paramIdx, binding);
+                }
+                paramIdx++;
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = stmt.executeQuery()) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        if (i > 1) {
+                            plan.append(' ');
+                        }
+                        plan.append(rs.getString(i));
+                    }
+                    plan.append('\n');
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Returns the entries, the most recent first.
+     */
+    public List<SlowQuery> getEntries() {
+        List<SlowQuery> rval = new ArrayList<>();
+        long last = nextIndex.get();
+        for (long i = last - 1; (i >= 0) && (i >= (last - entries.length())); i--) {
+            SlowQuery entry = entries.get((int) (i % entries.length()));
+            if (entry != null) {
+                rval.add(entry);
+            }
+        }
+        return Collections.unmodifiableList(rval);
+    }
+
+    /**
+     * Whether a query running for the given time is logged.
+     */
+    public boolean isSlow(final long elapsedNanos) {
+        return (thresholdNanos > 0) && (elapsedNanos >= thresholdNanos);
+    }
+
+    private List<Object> loggedBindings(final SQLBindings sqlBindings) {
+        if (sqlBindings == null) {
+            return Collections.emptyList();
+        }
+        List<Object> bindings = sqlBindings.getBindings();
+        return logBindings ? bindings : Collections.nCopies(bindings.size(), MASKED_BINDING);
+    }
+
+    /**
+     * Adds a slow query to the log. The plan of the query is captured on the given connection if enabled.
+     *
+     * @param sqlBindings
+     *            the SQL and the bindings of the query, <code>null</code> if the operation ran more than one query.
+     */
+    public void record(final String operation, final Connection connection, final SQLBindings sqlBindings,
+            final long rowCount, final long eventCount, final long buildNanos, final long executionNanos,
+            final long mappingNanos) {
+        String explainPlan = null;
+        if (explain && (sqlBindings != null)) {
+            explainPlan = explain(connection, sqlBindings);
+        }
+        SlowQuery slowQuery = new SlowQuery(Instant.now(), operation,
+                sqlBindings == null ? null : sqlBindings.getSQL(), loggedBindings(sqlBindings),
+                rowCount, eventCount, buildNanos, executionNanos, mappingNanos, explainPlan);
+        entries.set((int) (nextIndex.getAndIncrement() % entries.length()), slowQuery);
+        LOGGER.log(Level.WARNING, "Slow audit query: " + slowQuery);
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArchiveQueryTest {
+
+    private static final Instant FROM = Instant.parse("2015-01-01T00:00:00Z");
+
+    private static final Instant TO = Instant.parse("2015-01-02T00:00:00Z");
+
+    private static ArchiveQuery query(final Instant eventsFrom, final Instant eventsTo) {
+        return new ArchiveQuery(new Long[] { 1L }, null, (List<String>) null, null, eventsFrom, eventsTo,
+                null);
+    }
+
+    private static ArchiveSegmentHeader segment(final Instant minSaveTimestamp, final Instant maxSaveTimestamp) {
+        return new ArchiveSegmentHeader(Paths.get("segment"), minSaveTimestamp, maxSaveTimestamp, 1, 0, 0);
+    }
+
+    @Test
+    public void halfOpenRangeExcludesTheUpperBound() {
+        ArchiveQuery query = query(FROM, TO).withHalfOpenSaveTimestampRange(true);
+        Assert.assertTrue(query.matchesSaveTimestamp(FROM));
+        Assert.assertTrue(query.matchesSaveTimestamp(TO.minusMillis(1)));
+        Assert.assertFalse(query.matchesSaveTimestamp(TO));
+        Assert.assertFalse(query.matchesSaveTimestamp(FROM.minusMillis(1)));
+        Assert.assertFalse(query.overlaps(segment(TO, TO.plusSeconds(1))));
+        Assert.assertTrue(query.overlaps(segment(FROM.minusSeconds(1), FROM)));
+    }
+
+    @Test
+    public void halfOpenRangeWithOneBound() {
+        Assert.assertTrue(query(FROM, null).withHalfOpenSaveTimestampRange(true).matchesSaveTimestamp(FROM));
+        Assert.assertFalse(query(null, TO).withHalfOpenSaveTimestampRange(true).matchesSaveTimestamp(TO));
+        Assert.assertTrue(query(null, TO).withHalfOpenSaveTimestampRange(true).matchesSaveTimestamp(FROM));
+    }
+
+    @Test
+    public void originalRangeIncludesBothBoundsOnlyIfBothAreSet() {
+        ArchiveQuery query = query(FROM, TO);
+        Assert.assertTrue(query.matchesSaveTimestamp(FROM));
+        Assert.assertTrue(query.matchesSaveTimestamp(TO));
+        Assert.assertTrue(query.overlaps(segment(TO, TO.plusSeconds(1))));
+        Assert.assertFalse(query(FROM, null).matchesSaveTimestamp(FROM));
+        Assert.assertFalse(query(null, TO).matchesSaveTimestamp(TO));
+    }
+
+}
@@ -0,0 +1,268 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.everit.osgi.audit.dto.AuditEvent;
+import org.everit.osgi.audit.dto.EventData;
+import org.everit.osgi.audit.ri.conf.BackpressurePolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncEventWriterTest {
+
+    private static final String APPNAME = "appname";
+
+    private final List<List<AuditEvent>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<AuditEvent> singleEvents = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<Thread> singlePersisterThreads = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Counted down when the writer thread starts persisting its first batch.
+     */
+    private final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+
+    /**
+     * The writer thread waits for this latch while persisting its first batch, so the queue fills up.
+     */
+    private final CountDownLatch firstBatchReleased = new CountDownLatch(1);
+
+    private final AuditMetricsRecorder metrics = new AuditMetricsRecorder();
+
+    private AsyncEventWriter writer;
+
+    @After
+    public void after() {
+        firstBatchReleased.countDown();
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    private Consumer<List<AuditEvent>> blockingBatchPersister() {
+        return (batch) -> {
+            if (firstBatchStarted.getCount() > 0) {
+                firstBatchStarted.countDown();
+                await(firstBatchReleased);
+            }
+            batches.add(new ArrayList<>(batch));
+        };
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+
+    private static AuditEvent event(final int idx) {
+        return new AuditEvent("event" + idx, APPNAME, new EventData[0]);
+    }
+
+    private AsyncEventWriter newWriter(final int queueSize, final int maxBatch,
+            final BackpressurePolicy backpressurePolicy) {
+        writer = new AsyncEventWriter(blockingBatchPersister(), (event) -> {
+            singleEvents.add(event);
+            singlePersisterThreads.add(Thread.currentThread());
+        }, queueSize, 10, maxBatch, backpressurePolicy, "test-writer", metrics);
+        return writer;
+    }
+
+    private List<AuditEvent> persistedEvents() {
+        List<AuditEvent> rval = new ArrayList<>();
+        synchronized (batches) {
+            batches.forEach(rval::addAll);
+        }
+        rval.addAll(singleEvents);
+        return rval;
+    }
+
+    /**
+     * Makes the writer thread take the first event and wait in the batch persister, so the next events stay in the
+     * queue.
+     */
+    private void stallWriterThread() {
+        writer.submit(event(0));
+        await(firstBatchStarted);
+    }
+
+    @Test
+    public void backpressureBlock() throws Exception {
+        newWriter(1, 10, BackpressurePolicy.BLOCK);
+        stallWriterThread();
+        writer.submit(event(1));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> blockedSubmit = executor.submit(() -> writer.submit(event(2)));
+            Thread.sleep(100);
+            Assert.assertFalse(blockedSubmit.isDone());
+            firstBatchReleased.countDown();
+            blockedSubmit.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        writer.shutdown();
+        Assert.assertEquals(3, persistedEvents().size());
+        Assert.assertTrue(singleEvents.isEmpty());
+        Assert.assertEquals(0, writer.getDroppedEventCount());
+    }
+
+    @Test
+    public void backpressureCallerRuns() {
+        newWriter(1, 10, BackpressurePolicy.CALLER_RUNS);
+        stallWriterThread();
+        writer.submit(event(1));
+        writer.submit(event(2));
+        Assert.assertEquals(1, singleEvents.size());
+        Assert.assertEquals("event2", singleEvents.get(0).getName());
+        Assert.assertSame(Thread.currentThread(), singlePersisterThreads.get(0));
+        firstBatchReleased.countDown();
+        writer.shutdown();
+        Assert.assertEquals(3, persistedEvents().size());
+    }
+
+    @Test
+    public void backpressureDrop() {
+        newWriter(1, 10, BackpressurePolicy.DROP);
+        stallWriterThread();
+        writer.submit(event(1));
+        writer.submit(event(2));
+        Assert.assertEquals(1, writer.getDroppedEventCount());
+        Assert.assertEquals(1, writer.getQueuedEventCount());
+        Assert.assertEquals(1, metrics.snapshot(null, writer.getQueuedEventCount()).getDroppedEventCount());
+        firstBatchReleased.countDown();
+        writer.shutdown();
+        Assert.assertEquals(2, persistedEvents().size());
+        Assert.assertTrue(singleEvents.isEmpty());
+    }
+
+    @Test
+    public void errorOfBatchPersisterDoesNotStopTheWriter() throws Exception {
+        writer = new AsyncEventWriter((batch) -> {
+            throw new OutOfMemoryError("test");
+        }, singleEvents::add, 1, 10, 10, BackpressurePolicy.BLOCK, "test-writer", metrics);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // the writer thread must keep taking events, otherwise the blocked submits never return
+            Future<?> submits = executor.submit(() -> {
+                for (int i = 0; i < 5; i++) {
+                    writer.submit(event(i));
+                }
+            });
+            submits.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        writer.shutdown();
+        Assert.assertEquals(5, singleEvents.size());
+    }
+
+    @Test
+    public void eventsArePersistedInBatches() {
+        newWriter(100, 3, BackpressurePolicy.BLOCK);
+        stallWriterThread();
+        for (int i = 1; i <= 7; i++) {
+            writer.submit(event(i));
+        }
+        Assert.assertEquals(7, writer.getQueuedEventCount());
+        firstBatchReleased.countDown();
+        writer.shutdown();
+        Assert.assertEquals(8, persistedEvents().size());
+        Assert.assertTrue(singleEvents.isEmpty());
+        synchronized (batches) {
+            Assert.assertTrue(batches.stream().allMatch((batch) -> batch.size() <= 3));
+            Assert.assertTrue(batches.size() >= 3);
+        }
+    }
+
+    @Test
+    public void shutdownFlushesQueuedEvents() throws Exception {
+        newWriter(100, 2, BackpressurePolicy.BLOCK);
+        stallWriterThread();
+        for (int i = 1; i <= 5; i++) {
+            writer.submit(event(i));
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> shutdown = executor.submit(writer::shutdown);
+            Thread.sleep(50);
+            Assert.assertFalse(shutdown.isDone());
+            firstBatchReleased.countDown();
+            shutdown.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(6, persistedEvents().size());
+        Assert.assertEquals(0, writer.getQueuedEventCount());
+    }
+
+    @Test
+    public void submitAfterShutdownPersistsOnCallerThread() {
+        newWriter(100, 10, BackpressurePolicy.BLOCK);
+        firstBatchReleased.countDown();
+        writer.shutdown();
+        writer.submit(event(1));
+        Assert.assertEquals(1, singleEvents.size());
+        Assert.assertSame(Thread.currentThread(), singlePersisterThreads.get(0));
+    }
+
+    @Test
+    public void submitConcurrentWithShutdownLosesNoEvent() throws Exception {
+        newWriter(4, 2, BackpressurePolicy.BLOCK);
+        firstBatchReleased.countDown();
+        int threadCount = 8;
+        int eventsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> submitters = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                submitters.add(executor.submit(() -> {
+                    await(start);
+                    for (int j = 0; j < eventsPerThread; j++) {
+                        writer.submit(event(j));
+                    }
+                }));
+            }
+            start.countDown();
+            writer.shutdown();
+            for (Future<?> submitter : submitters) {
+                submitter.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(threadCount * eventsPerThread, persistedEvents().size());
+        Assert.assertEquals(0, writer.getQueuedEventCount());
+    }
+
+}
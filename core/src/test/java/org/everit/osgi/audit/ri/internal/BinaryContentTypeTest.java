@@ -0,0 +1,92 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+import com.mysema.query.sql.types.Type;
+
+public class BinaryContentTypeTest {
+
+    /**
+     * Returns a statement that records the name of the called methods and the arguments after the parameter index.
+     */
+    private static PreparedStatement recordingStatement(final List<List<Object>> calls) {
+        return (PreparedStatement) Proxy.newProxyInstance(BinaryContentTypeTest.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                    List<Object> call = new ArrayList<>();
+                    call.add(method.getName());
+                    call.addAll(Arrays.asList(args).subList(1, args.length));
+                    calls.add(call);
+                    return null;
+                });
+    }
+
+    @Test
+    public void byteArrayIsStreamedWithItsLength() throws SQLException {
+        List<List<Object>> calls = new ArrayList<>();
+        BinaryContent content = new BinaryContent(new byte[] { 1, 2, 3 });
+        new BinaryContentType().setValue(recordingStatement(calls), 1, content);
+        Assert.assertEquals(Arrays.asList(Arrays.asList("setBinaryStream", content.getContent(), 3L)), calls);
+    }
+
+    @Test
+    public void inputStreamIsPassedThrough() throws SQLException {
+        List<List<Object>> calls = new ArrayList<>();
+        InputStream in = new ByteArrayInputStream(new byte[] { 1, 2 });
+        new BinaryContentType().setValue(recordingStatement(calls), 1, new BinaryContent(in, 2));
+        Assert.assertEquals(Arrays.asList(Arrays.asList("setBinaryStream", in, 2L)), calls);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void readingIsNotSupported() throws SQLException {
+        Type<BinaryContent> type = new BinaryContentType();
+        type.getValue(null, 1);
+    }
+
+    @Test
+    public void registeredTypeBindsTheContent() throws SQLException {
+        Configuration configuration = new Configuration(new H2Templates());
+        BinaryContentType.register(configuration);
+        BinaryContentType.register(configuration);
+        List<List<Object>> calls = new ArrayList<>();
+        InputStream in = new ByteArrayInputStream(new byte[] { 1 });
+        configuration.set(recordingStatement(calls), null, 1, new BinaryContent(in, -1));
+        Assert.assertEquals(Arrays.asList(Arrays.asList("setBinaryStream", in)), calls);
+    }
+
+    @Test
+    public void unknownLengthIsNotPassed() throws SQLException {
+        List<List<Object>> calls = new ArrayList<>();
+        InputStream in = new ByteArrayInputStream(new byte[] { 1 });
+        new BinaryContentType().setValue(recordingStatement(calls), 1, new BinaryContent(in, -1));
+        Assert.assertEquals(Arrays.asList(Arrays.asList("setBinaryStream", in)), calls);
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.everit.osgi.audit.ri.schema.qdsl.QApplication;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mysema.query.NonUniqueResultException;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.expr.Param;
+
+public class CompiledQueryTest {
+
+    /**
+     * A connection that records the prepared SQL strings and the bound values, and answers every query with
+     * <code>rowCount</code> rows of <code>(7, "app")</code>.
+     */
+    private static class RecordingConnection {
+
+        private final List<String> preparedSql = new ArrayList<>();
+
+        private final List<String> bindings = new ArrayList<>();
+
+        private final int rowCount;
+
+        RecordingConnection(final int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        Connection connection() {
+            return proxy(Connection.class, (method, args) -> {
+                preparedSql.add((String) args[0]);
+                return statement();
+            });
+        }
+
+        private ResultSet resultSet() {
+            int[] position = new int[1];
+            return proxy(ResultSet.class, (method, args) -> {
+                switch (method) {
+                case "next":
+                    return ++position[0] <= rowCount;
+                case "getLong":
+                    return 7L;
+                case "getString":
+                    return "app";
+                case "wasNull":
+                    return false;
+                default:
+                    return null;
+                }
+            });
+        }
+
+        private PreparedStatement statement() {
+            return proxy(PreparedStatement.class, (method, args) -> {
+                if (method.equals("executeQuery")) {
+                    return resultSet();
+                }
+                if (method.startsWith("set")) {
+                    bindings.add(method + Arrays.toString(args));
+                }
+                return null;
+            });
+        }
+
+    }
+
+    private interface StubMethod {
+
+        Object invoke(String method, Object[] args);
+
+    }
+
+    private static final Param<String> NAME = new Param<>(String.class, "name");
+
+    private static final Param<Long> ID = new Param<>(Long.class, "id");
+
+    /**
+     * Uses the parameters in the opposite order of their declaration.
+     */
+    private static final CompiledQuery<Object[]> QUERY = new CompiledQuery<>(
+            (query) -> query.from(QApplication.application)
+                    .where(QApplication.application.applicationId.eq(ID)
+                            .and(QApplication.application.applicationName.eq(NAME))),
+            new Path<?>[] { QApplication.application.applicationId, QApplication.application.applicationName },
+            (row) -> row,
+            NAME, ID);
+
+    private static <T> T proxy(final Class<T> type, final StubMethod stubMethod) {
+        return type.cast(Proxy.newProxyInstance(CompiledQueryTest.class.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> stubMethod.invoke(method.getName(), args)));
+    }
+
+    @Test
+    public void argumentsAreBoundInTheOrderOfTheParameters() {
+        RecordingConnection recording = new RecordingConnection(1);
+        List<Object[]> rows = QUERY.list(recording.connection(), new Configuration(new H2Templates()), "app", 5L);
+        Assert.assertEquals(Arrays.asList("setLong[1, 5]", "setString[2, app]"), recording.bindings);
+        Assert.assertEquals(1, rows.size());
+        Assert.assertArrayEquals(new Object[] { 7L, "app" }, rows.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingArgument() {
+        QUERY.list(new RecordingConnection(0).connection(), new Configuration(new H2Templates()), "app");
+    }
+
+    @Test
+    public void sqlIsSerializedOncePerConfiguration() {
+        RecordingConnection recording = new RecordingConnection(0);
+        Configuration configuration = new Configuration(new H2Templates());
+        QUERY.list(recording.connection(), configuration, "app", 1L);
+        QUERY.list(recording.connection(), configuration, "other", 2L);
+        Assert.assertSame(recording.preparedSql.get(0), recording.preparedSql.get(1));
+        QUERY.list(recording.connection(), new Configuration(new H2Templates()), "app", 1L);
+        Assert.assertEquals(recording.preparedSql.get(0), recording.preparedSql.get(2));
+        Assert.assertNotSame(recording.preparedSql.get(0), recording.preparedSql.get(2));
+    }
+
+    @Test(expected = NonUniqueResultException.class)
+    public void uniqueResultOfMoreRows() {
+        QUERY.uniqueResult(new RecordingConnection(2).connection(), new Configuration(new H2Templates()), "app", 1L);
+    }
+
+    @Test
+    public void uniqueResultWithoutRows() {
+        Assert.assertNull(QUERY.uniqueResult(new RecordingConnection(0).connection(),
+                new Configuration(new H2Templates()), "app", 1L));
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mysema.query.sql.ColumnMetadata;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+
+public class ComplexEventLoaderTest {
+
+    private interface StubMethod {
+
+        Object invoke(String method, Object[] args);
+
+    }
+
+    private static final Instant FROM = Instant.parse("2015-01-01T00:00:00Z");
+
+    private static final Instant TO = Instant.parse("2015-01-02T00:00:00Z");
+
+    private static final String SAVE_TIMESTAMP = QEvent.event.getMetadata().getName() + "."
+            + ColumnMetadata.getName(QEvent.event.saveTimestamp);
+
+    /**
+     * Counts the events with a connection that answers every query without rows and returns the prepared SQL.
+     */
+    private static String countEventsSql(final boolean halfOpenSaveTimestampRange) {
+        List<String> preparedSql = new ArrayList<>();
+        ResultSet resultSet = proxy(ResultSet.class, (method, args) -> method.equals("next") ? false : null);
+        PreparedStatement statement = proxy(PreparedStatement.class,
+                (method, args) -> method.equals("executeQuery") ? resultSet : null);
+        Connection connection = proxy(Connection.class, (method, args) -> {
+            preparedSql.add((String) args[0]);
+            return statement;
+        });
+        new ComplexEventLoader(connection, new Configuration(new H2Templates()), new Long[] { 1L }, null, null, null,
+                FROM, TO, 0, -1)
+                .withHalfOpenSaveTimestampRange(halfOpenSaveTimestampRange)
+                .countEvents(0);
+        Assert.assertEquals(1, preparedSql.size());
+        return preparedSql.get(0);
+    }
+
+    private static <T> T proxy(final Class<T> type, final StubMethod stubMethod) {
+        return type.cast(Proxy.newProxyInstance(ComplexEventLoaderTest.class.getClassLoader(),
+                new Class<?>[] { type }, (proxy, method, args) -> stubMethod.invoke(method.getName(), args)));
+    }
+
+    @Test
+    public void halfOpenRangeComparesEachBound() {
+        String sql = countEventsSql(true);
+        Assert.assertTrue(sql, sql.contains(SAVE_TIMESTAMP + " >= ?"));
+        Assert.assertTrue(sql, sql.contains(SAVE_TIMESTAMP + " < ?"));
+        Assert.assertFalse(sql, sql.contains("between"));
+    }
+
+    @Test
+    public void originalRangeIsInclusive() {
+        String sql = countEventsSql(false);
+        Assert.assertTrue(sql, sql.contains(SAVE_TIMESTAMP + " between ? and ?"));
+    }
+
+}
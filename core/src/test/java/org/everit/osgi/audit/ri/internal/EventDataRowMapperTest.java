@@ -0,0 +1,124 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.EnumSet;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+import org.everit.osgi.audit.dto.EventData;
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mysema.query.Tuple;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.QTuple;
+
+public class EventDataRowMapperTest {
+
+    private static final QEventData Q_EVENT_DATA = new QEventData("evtData");
+
+    private static final Instant TIMESTAMP = Instant.ofEpochSecond(1000, 5);
+
+    private static final byte[] BINARY = new byte[] { 1, 2, 3 };
+
+    /**
+     * Maps a row that has a different value in every value column, so a value read from the wrong position is
+     * detected.
+     */
+    private static EventData map(final EventDataType type) throws SQLException {
+        // the mapped columns start after two unrelated columns
+        Expression<?>[] eventDataColumns = EventDataRowMapper.projection(Q_EVENT_DATA, true);
+        Expression<?>[] columns = new Expression<?>[eventDataColumns.length + 2];
+        columns[0] = QEvent.event.eventId;
+        columns[1] = QEvent.event.saveTimestamp;
+        System.arraycopy(eventDataColumns, 0, columns, 2, eventDataColumns.length);
+        Tuple row = new QTuple(columns).newInstance(1L, Timestamp.from(TIMESTAMP),
+                "data", type.toString(), 1.5, "string", "text", Timestamp.from(TIMESTAMP), new SerialBlob(BINARY));
+        EventUi.Builder builder = newBuilder();
+        new EventDataRowMapper(Q_EVENT_DATA, 2).addEventDataForRow(builder, row);
+        return builder.build().getEventData().get("data");
+    }
+
+    private static EventUi.Builder newBuilder() {
+        return new EventUi.Builder()
+                .eventId(1)
+                .typeName("type")
+                .appName("app")
+                .saveTimestamp(TIMESTAMP);
+    }
+
+    @Test
+    public void everyTypeIsReadFromItsColumn() throws SQLException {
+        for (EventDataType type : EventDataType.values()) {
+            EventData eventData = map(type);
+            Assert.assertEquals(type, eventData.getEventDataType());
+            switch (type) {
+            case NUMBER:
+                Assert.assertEquals(1.5, eventData.getNumberValue(), 0);
+                break;
+            case STRING:
+                Assert.assertEquals("string", eventData.getTextValue());
+                break;
+            case TEXT:
+                Assert.assertEquals("text", eventData.getTextValue());
+                break;
+            case TIMESTAMP:
+                Assert.assertEquals(TIMESTAMP, eventData.getTimestampValue());
+                break;
+            case BINARY:
+                Assert.assertArrayEquals(BINARY, eventData.getBinaryValue());
+                break;
+            default:
+                Assert.fail("no expectation for " + type);
+            }
+        }
+    }
+
+    @Test
+    public void projectionKeepsTheColumnPositions() {
+        Expression<?>[] allColumns = EventDataRowMapper.projection(Q_EVENT_DATA,
+                EnumSet.allOf(EventDataType.class));
+        Expression<?>[] stringColumns = EventDataRowMapper.projection(Q_EVENT_DATA, EnumSet.of(EventDataType.STRING));
+        Assert.assertEquals(allColumns.length, stringColumns.length);
+        for (int i = 0; i < allColumns.length; i++) {
+            boolean selected = (i < 2) || allColumns[i].equals(Q_EVENT_DATA.stringValue);
+            Assert.assertEquals(selected, stringColumns[i] instanceof Path);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unknownType() {
+        EventDataRowMapper.toEventDataType("UNKNOWN");
+    }
+
+    @Test
+    public void typeNamesAreResolved() {
+        for (EventDataType type : EventDataType.values()) {
+            Assert.assertSame(type, EventDataRowMapper.toEventDataType(type.toString()));
+        }
+    }
+
+}
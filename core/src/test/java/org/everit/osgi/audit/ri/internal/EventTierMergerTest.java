@@ -0,0 +1,85 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EventTierMergerTest {
+
+    private static EventUi event(final long id, final long saveTimestampSeconds) {
+        return new EventUi.Builder()
+                .eventId(id)
+                .typeName("type")
+                .appName("app")
+                .saveTimestamp(Instant.ofEpochSecond(saveTimestampSeconds))
+                .build();
+    }
+
+    private static List<Long> ids(final List<EventUi> events) {
+        return events.stream().map(EventUi::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void archivedEventsAreMergedByOrder() {
+        List<EventUi> databaseEvents = Arrays.asList(event(5, 50), event(3, 30), event(4, 30));
+        List<EventUi> archivedEvents = Arrays.asList(event(6, 60), event(1, 30), event(2, 10));
+        Assert.assertEquals(Arrays.asList(6L, 5L, 1L, 3L, 4L, 2L),
+                ids(EventTierMerger.merge(databaseEvents, archivedEvents.iterator(), 0, 10)));
+    }
+
+    @Test
+    public void eventInBothTiersIsReturnedOnce() {
+        EventUi databaseEvent = event(2, 20);
+        List<EventUi> merged = EventTierMerger.merge(Arrays.asList(event(3, 30), databaseEvent),
+                Arrays.asList(event(2, 20), event(1, 10)).iterator(), 0, 10);
+        Assert.assertEquals(Arrays.asList(3L, 2L, 1L), ids(merged));
+        Assert.assertSame(databaseEvent, merged.get(1));
+    }
+
+    @Test
+    public void offsetAndLimitApplyToTheMergedEvents() {
+        List<EventUi> databaseEvents = Arrays.asList(event(4, 40), event(2, 20));
+        List<EventUi> archivedEvents = Arrays.asList(event(3, 30), event(1, 10));
+        Assert.assertEquals(Arrays.asList(3L, 2L),
+                ids(EventTierMerger.merge(databaseEvents, archivedEvents.iterator(), 1, 2)));
+        Assert.assertEquals(Arrays.asList(1L),
+                ids(EventTierMerger.merge(databaseEvents, archivedEvents.iterator(), 3, 2)));
+        Assert.assertEquals(Arrays.asList(3L, 1L),
+                ids(EventTierMerger.merge(Collections.emptyList(), archivedEvents.iterator(), 0, 5)));
+    }
+
+    @Test
+    public void streamedEventsAreMergedByOrder() {
+        List<EventUi> passed = new ArrayList<>();
+        EventTierMerger merger = new EventTierMerger(Arrays.asList(event(3, 30), event(1, 10)).iterator(),
+                passed::add);
+        merger.accept(event(4, 40));
+        merger.accept(event(2, 20));
+        Assert.assertEquals(4, merger.finish());
+        Assert.assertEquals(Arrays.asList(4L, 3L, 2L, 1L), ids(passed));
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import org.everit.osgi.audit.ri.ext.CacheStatistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EventTypeCacheTest {
+
+    private static CachedEventType eventType(final long id) {
+        return new CachedEventType(id, "type" + id, 1L, id + 100);
+    }
+
+    private static EventTypeKey key(final String applicationName, final long id) {
+        return new EventTypeKey(applicationName, "type" + id);
+    }
+
+    @Test
+    public void evictsInInsertionOrder() {
+        EventTypeCache cache = new EventTypeCache(2);
+        cache.put(key("app", 1), eventType(1));
+        cache.put(key("app", 2), eventType(2));
+        cache.get(key("app", 1));
+        cache.put(key("app", 3), eventType(3));
+        Assert.assertNull(cache.get(key("app", 1)));
+        Assert.assertEquals(2, cache.get(key("app", 2)).getEventTypeId());
+        Assert.assertEquals(3, cache.get(key("app", 3)).getEventTypeId());
+        CacheStatistics statistics = cache.getStatistics();
+        Assert.assertEquals(1, statistics.getEvictionCount());
+        Assert.assertEquals(2, statistics.getSize());
+        Assert.assertEquals(2, statistics.getMaxSize());
+    }
+
+    @Test
+    public void hitAndMissCounts() {
+        EventTypeCache cache = new EventTypeCache(10);
+        Assert.assertNull(cache.get(key("app", 1)));
+        cache.put(key("app", 1), eventType(1));
+        Assert.assertEquals(1, cache.get(key("app", 1)).getEventTypeId());
+        Assert.assertEquals(1, cache.get(key("app", 1)).getEventTypeId());
+        CacheStatistics statistics = cache.getStatistics();
+        Assert.assertEquals(2, statistics.getHitCount());
+        Assert.assertEquals(1, statistics.getMissCount());
+        Assert.assertEquals(0, statistics.getEvictionCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxSize() {
+        new EventTypeCache(0);
+    }
+
+    @Test
+    public void invalidate() {
+        EventTypeCache cache = new EventTypeCache(2);
+        cache.put(key("app", 1), eventType(1));
+        cache.put(key("app", 2), eventType(2));
+        cache.invalidate(key("app", 1));
+        Assert.assertNull(cache.get(key("app", 1)));
+        Assert.assertEquals(1, cache.getStatistics().getSize());
+        // the invalidated key does not count in the eviction order any more
+        cache.put(key("app", 3), eventType(3));
+        Assert.assertEquals(0, cache.getStatistics().getEvictionCount());
+        cache.put(key("app", 1), eventType(1));
+        Assert.assertNull(cache.get(key("app", 2)));
+        Assert.assertNotNull(cache.get(key("app", 3)));
+        Assert.assertNotNull(cache.get(key("app", 1)));
+    }
+
+    @Test
+    public void invalidateAll() {
+        EventTypeCache cache = new EventTypeCache(10);
+        cache.put(key("app", 1), eventType(1));
+        cache.put(key("other", 2), eventType(2));
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.getStatistics().getSize());
+        Assert.assertNull(cache.get(key("app", 1)));
+        Assert.assertNull(cache.get(key("other", 2)));
+    }
+
+    @Test
+    public void invalidateApplication() {
+        EventTypeCache cache = new EventTypeCache(10);
+        cache.put(key("app", 1), eventType(1));
+        cache.put(key("app", 2), eventType(2));
+        cache.put(key("other", 3), eventType(3));
+        cache.invalidateApplication("app");
+        Assert.assertNull(cache.get(key("app", 1)));
+        Assert.assertNull(cache.get(key("app", 2)));
+        Assert.assertNotNull(cache.get(key("other", 3)));
+        Assert.assertEquals(1, cache.getStatistics().getSize());
+    }
+
+    @Test
+    public void putReplacesWithoutChangingOrder() {
+        EventTypeCache cache = new EventTypeCache(2);
+        cache.put(key("app", 1), eventType(1));
+        cache.put(key("app", 2), eventType(2));
+        cache.put(key("app", 1), eventType(11));
+        Assert.assertEquals(11, cache.get(key("app", 1)).getEventTypeId());
+        cache.put(key("app", 3), eventType(3));
+        Assert.assertNull(cache.get(key("app", 1)));
+        Assert.assertNotNull(cache.get(key("app", 2)));
+    }
+
+}
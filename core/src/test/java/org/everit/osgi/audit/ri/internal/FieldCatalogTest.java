@@ -0,0 +1,138 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.ext.AuditMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+
+public class FieldCatalogTest {
+
+    /**
+     * A database with one event type. The field scans are answered with the <code>(event type id, name, type)</code>
+     * rows of {@link #fieldRows}, the other queries with the id of the event type.
+     */
+    private static class StubDatabase {
+
+        private final List<Object[]> fieldRows = new ArrayList<>();
+
+        private int fieldScanCount;
+
+        Connection connection() {
+            return proxy(Connection.class, (method, args) -> {
+                boolean fieldScan = ((String) args[0]).contains("distinct");
+                if (fieldScan) {
+                    fieldScanCount++;
+                }
+                List<Object[]> rows = fieldScan ? new ArrayList<>(fieldRows)
+                        : Collections.singletonList(new Object[] { EVENT_TYPE_ID });
+                return proxy(PreparedStatement.class,
+                        (statementMethod, statementArgs) -> statementMethod.equals("executeQuery")
+                                ? resultSet(rows) : null);
+            });
+        }
+
+        private ResultSet resultSet(final List<Object[]> rows) {
+            int[] position = new int[1];
+            return proxy(ResultSet.class, (method, args) -> {
+                switch (method) {
+                case "next":
+                    return ++position[0] <= rows.size();
+                case "getLong":
+                case "getString":
+                    return rows.get(position[0] - 1)[(Integer) args[0] - 1];
+                case "wasNull":
+                    return false;
+                default:
+                    return null;
+                }
+            });
+        }
+
+    }
+
+    private interface StubMethod {
+
+        Object invoke(String method, Object[] args);
+
+    }
+
+    private static final Long APPLICATION_ID = 1L;
+
+    private static final Long EVENT_TYPE_ID = 5L;
+
+    private static Map<String, Set<EventDataType>> getFieldTypes(final FieldCatalog catalog,
+            final StubDatabase database) {
+        return catalog.getFieldTypes(database.connection(), new Configuration(new H2Templates()),
+                Collections.singletonList(APPLICATION_ID), null);
+    }
+
+    private static <T> T proxy(final Class<T> type, final StubMethod stubMethod) {
+        return type.cast(Proxy.newProxyInstance(FieldCatalogTest.class.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> stubMethod.invoke(method.getName(), args)));
+    }
+
+    @Test
+    public void fieldsAreScannedOnceWithinTheTimeToLive() {
+        StubDatabase database = new StubDatabase();
+        database.fieldRows.add(new Object[] { EVENT_TYPE_ID, "host", EventDataType.STRING.toString() });
+        AuditMetricsRecorder metrics = new AuditMetricsRecorder();
+        FieldCatalog catalog = new FieldCatalog(60, metrics);
+        Assert.assertEquals(Collections.singleton("host"), getFieldTypes(catalog, database).keySet());
+        // stored by another node
+        database.fieldRows.add(new Object[] { EVENT_TYPE_ID, "cpuLoad", EventDataType.NUMBER.toString() });
+        Assert.assertEquals(Collections.singleton("host"), getFieldTypes(catalog, database).keySet());
+        Assert.assertEquals(1, database.fieldScanCount);
+        AuditMetrics snapshot = metrics.snapshot(null, 0);
+        Assert.assertEquals(1, snapshot.getFieldCatalogHitCount());
+        Assert.assertEquals(1, snapshot.getFieldCatalogLoadCount());
+        catalog.invalidateAll();
+        Assert.assertTrue(getFieldTypes(catalog, database).containsKey("cpuLoad"));
+    }
+
+    @Test
+    public void fieldsOfOtherNodesAppearAfterTheTimeToLive() {
+        StubDatabase database = new StubDatabase();
+        database.fieldRows.add(new Object[] { EVENT_TYPE_ID, "host", EventDataType.STRING.toString() });
+        FieldCatalog catalog = new FieldCatalog(0, new AuditMetricsRecorder());
+        Assert.assertEquals(Collections.singleton("host"), getFieldTypes(catalog, database).keySet());
+        database.fieldRows.add(new Object[] { EVENT_TYPE_ID, "cpuLoad", EventDataType.NUMBER.toString() });
+        Map<String, Set<EventDataType>> fieldTypes = getFieldTypes(catalog, database);
+        Assert.assertEquals(Collections.singleton(EventDataType.NUMBER), fieldTypes.get("cpuLoad"));
+        Assert.assertEquals(2, database.fieldScanCount);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeTimeToLive() {
+        new FieldCatalog(-1, new AuditMetricsRecorder());
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.everit.osgi.audit.dto.EventDataType;
+import org.everit.osgi.audit.ri.conf.search.api.EventUi;
+import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
+import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mysema.query.Tuple;
+import com.mysema.query.types.QTuple;
+
+public class MultipleEventQueryResultMapperTest {
+
+    private static final QEventData Q_EVENT_DATA = new QEventData("evtData");
+
+    private static final QTuple ROW = new QTuple(
+            MultipleEventQueryResultMapper.projection(QEvent.event, Q_EVENT_DATA, false));
+
+    private static final Timestamp SAVE_TIMESTAMP = Timestamp.from(Instant.ofEpochSecond(1000));
+
+    private static List<Long> ids(final List<EventUi> events) {
+        return events.stream().map(EventUi::getId).collect(Collectors.toList());
+    }
+
+    private static MultipleEventQueryResultMapper mapper() {
+        return new MultipleEventQueryResultMapper(Q_EVENT_DATA);
+    }
+
+    private static Tuple row(final long eventId, final String dataName, final String stringValue) {
+        return ROW.newInstance("app", "type", eventId, SAVE_TIMESTAMP, dataName,
+                dataName == null ? null : EventDataType.STRING.toString(), null, stringValue, null, null, null);
+    }
+
+    @Test
+    public void eventWithoutEventDataIsMapped() {
+        List<EventUi> events = mapper().mapToEvents(Arrays.asList(row(2, "a", "x"), row(1, null, null)));
+        Assert.assertEquals(Arrays.asList(2L, 1L), ids(events));
+        Assert.assertTrue(events.get(1).getEventData().isEmpty());
+    }
+
+    @Test
+    public void eventsAreEmittedAsSoonAsTheirRowsAreRead() {
+        List<Tuple> rows = Arrays.asList(row(3, "a", "x"), row(3, "b", "y"), row(2, "a", "z"), row(1, "a", "w"));
+        int[] readRowCount = new int[1];
+        Iterator<Tuple> countingRows = new Iterator<Tuple>() {
+
+            private final Iterator<Tuple> delegate = rows.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public Tuple next() {
+                readRowCount[0]++;
+                return delegate.next();
+            }
+
+        };
+        List<Integer> readRowCountsAtEmit = new ArrayList<>();
+        long eventCount = mapper().forEachEvent(countingRows, (event) -> readRowCountsAtEmit.add(readRowCount[0]));
+        Assert.assertEquals(3, eventCount);
+        // an event is passed on when the first row of the next one is read, the last one at the end of the rows
+        Assert.assertEquals(Arrays.asList(3, 4, 4), readRowCountsAtEmit);
+    }
+
+    @Test
+    public void lastEventIsEmitted() {
+        List<EventUi> events = mapper().mapToEvents(Arrays.asList(row(3, "a", "x"), row(3, "b", "y"),
+                row(2, "a", "z")));
+        Assert.assertEquals(Arrays.asList(3L, 2L), ids(events));
+        Assert.assertEquals(2, events.get(0).getEventData().size());
+        Assert.assertEquals("z", events.get(1).getEventData().get("a").getTextValue());
+    }
+
+    @Test
+    public void noRows() {
+        Assert.assertTrue(mapper().mapToEvents(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void singleEvent() {
+        List<EventUi> events = mapper().mapToEvents(Arrays.asList(row(7, "a", "x")));
+        Assert.assertEquals(Arrays.asList(7L), ids(events));
+        EventUi event = events.get(0);
+        Assert.assertEquals("app", event.getAppName());
+        Assert.assertEquals("type", event.getName());
+        Assert.assertEquals(SAVE_TIMESTAMP.toInstant(), event.getSaveTimeStamp());
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResourceIdAllocatorTest {
+
+    /**
+     * Reserves consecutive ids starting from <code>1</code> and counts the reserved blocks.
+     */
+    private static class CountingReserver implements IntFunction<List<Long>> {
+
+        private final AtomicLong lastId = new AtomicLong();
+
+        private final AtomicInteger blockCount = new AtomicInteger();
+
+        @Override
+        public List<Long> apply(final int count) {
+            blockCount.incrementAndGet();
+            List<Long> rval = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                rval.add(lastId.incrementAndGet());
+            }
+            return rval;
+        }
+
+    }
+
+    @Test
+    public void concurrentNextReturnsDistinctIds() throws Exception {
+        CountingReserver reserver = new CountingReserver();
+        ResourceIdAllocator allocator = new ResourceIdAllocator(7, reserver);
+        int threadCount = 8;
+        int idsPerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    List<Long> ids = new ArrayList<>(idsPerThread);
+                    for (int j = 0; j < idsPerThread; j++) {
+                        ids.add(allocator.next());
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+            Set<Long> ids = new HashSet<>();
+            for (Future<List<Long>> result : results) {
+                ids.addAll(result.get());
+            }
+            Assert.assertEquals(threadCount * idsPerThread, ids.size());
+        } finally {
+            executor.shutdown();
+        }
+        // a block is reserved only when the previous one ran out
+        int expectedBlockCount = ((threadCount * idsPerThread) + 6) / 7;
+        Assert.assertEquals(expectedBlockCount, reserver.blockCount.get());
+    }
+
+    @Test
+    public void discardedIdsAreNotReturnedAgain() {
+        ResourceIdAllocator allocator = new ResourceIdAllocator(3, new CountingReserver());
+        // the caller of the first next() rolled back its transaction, the id is lost but never handed out again
+        long discardedId = allocator.next();
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            ids.add(allocator.next());
+        }
+        Assert.assertEquals(6, ids.size());
+        Assert.assertFalse(ids.contains(discardedId));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveBlockSize() {
+        new ResourceIdAllocator(0, new CountingReserver());
+    }
+
+    @Test
+    public void refillAcrossBlockBoundary() {
+        CountingReserver reserver = new CountingReserver();
+        ResourceIdAllocator allocator = new ResourceIdAllocator(3, reserver);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(allocator.next());
+        }
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), ids);
+        Assert.assertEquals(2, reserver.blockCount.get());
+        allocator.next();
+        allocator.next();
+        Assert.assertEquals(2, reserver.blockCount.get());
+        Assert.assertEquals(7L, allocator.next());
+        Assert.assertEquals(3, reserver.blockCount.get());
+    }
+
+    @Test
+    public void reservesNothingBeforeTheFirstId() {
+        CountingReserver reserver = new CountingReserver();
+        new ResourceIdAllocator(3, reserver);
+        Assert.assertEquals(0, reserver.blockCount.get());
+    }
+
+}
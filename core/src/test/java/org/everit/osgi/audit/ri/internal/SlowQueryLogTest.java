@@ -0,0 +1,181 @@
+/**
+ * This file is part of org.everit.osgi.audit.ri.conf.
+ *
+ * org.everit.osgi.audit.ri.conf is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.everit.osgi.audit.ri.conf is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.everit.osgi.audit.ri.conf.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.everit.osgi.audit.ri.internal;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.osgi.audit.ri.ext.SlowQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mysema.query.sql.SQLBindings;
+
+public class SlowQueryLogTest {
+
+    private interface StubMethod {
+
+        Object invoke(String method, Object[] args);
+
+    }
+
+    private static final long ONE_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * A connection answering every statement with the single row <code>"plan"</code> and recording the calls of the
+     * statement.
+     */
+    private static Connection explainConnection(final List<String> calls) {
+        ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (method, args) -> 1);
+        boolean[] read = new boolean[1];
+        ResultSet resultSet = proxy(ResultSet.class, (method, args) -> {
+            switch (method) {
+            case "getMetaData":
+                return metaData;
+            case "next":
+                read[0] = !read[0];
+                return read[0];
+            case "getString":
+                return "plan";
+            default:
+                return null;
+            }
+        });
+        PreparedStatement stmt = proxy(PreparedStatement.class, (method, args) -> {
+            if (method.equals("executeQuery")) {
+                return resultSet;
+            }
+            if (args != null) {
+                calls.add(method + Arrays.toString(args));
+            }
+            return null;
+        });
+        return proxy(Connection.class, (method, args) -> {
+            calls.add(method + Arrays.toString(args));
+            return stmt;
+        });
+    }
+
+    private static <T> T proxy(final Class<T> type, final StubMethod stubMethod) {
+        return type.cast(Proxy.newProxyInstance(SlowQueryLogTest.class.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> stubMethod.invoke(method.getName(), args)));
+    }
+
+    private static void record(final SlowQueryLog log, final String operation, final Object... bindings) {
+        log.record(operation, null, new SQLBindings("select ?", Arrays.asList(bindings)), 1, 1, 0, ONE_MILLI, 0);
+    }
+
+    @Test
+    public void bindingsAreLoggedIfEnabled() {
+        SlowQueryLog log = new SlowQueryLog(1, 10, false, true);
+        record(log, "findEvents", "secret", 42L);
+        Assert.assertEquals(Arrays.asList("secret", 42L), log.getEntries().get(0).getBindings());
+    }
+
+    @Test
+    public void bindingsAreMaskedByDefault() {
+        SlowQueryLog log = new SlowQueryLog(1, 10, false, false);
+        record(log, "findEvents", "secret", 42L);
+        SlowQuery entry = log.getEntries().get(0);
+        Assert.assertEquals("select ?", entry.getSql());
+        Assert.assertEquals(Arrays.asList(SlowQueryLog.MASKED_BINDING, SlowQueryLog.MASKED_BINDING),
+                entry.getBindings());
+        Assert.assertFalse(entry.toString().contains("secret"));
+    }
+
+    @Test
+    public void clear() {
+        SlowQueryLog log = new SlowQueryLog(1, 2, false, false);
+        record(log, "q1");
+        record(log, "q2");
+        log.clear();
+        Assert.assertTrue(log.getEntries().isEmpty());
+        record(log, "q3");
+        Assert.assertEquals(1, log.getEntries().size());
+        Assert.assertEquals("q3", log.getEntries().get(0).getOperation());
+    }
+
+    @Test
+    public void explainBindsNullValues() {
+        List<String> calls = new ArrayList<>();
+        SlowQueryLog log = new SlowQueryLog(1, 10, true, false);
+        log.record("findEvents", explainConnection(calls),
+                new SQLBindings("select ? where ?", Arrays.asList("value", null)), 1, 1, 0, ONE_MILLI, 0);
+        Assert.assertEquals(Arrays.asList("prepareStatement[EXPLAIN select ? where ?]", "setObject[1, value]",
+                "setNull[2, " + Types.NULL + "]"), calls);
+        Assert.assertEquals("plan\n", log.getEntries().get(0).getExplainPlan());
+    }
+
+    @Test
+    public void explainIsSkippedWithoutSql() {
+        SlowQueryLog log = new SlowQueryLog(1, 10, true, false);
+        log.record("getResultFieldsWithTypes", null, null, 1, 1, 0, ONE_MILLI, 0);
+        SlowQuery entry = log.getEntries().get(0);
+        Assert.assertNull(entry.getSql());
+        Assert.assertNull(entry.getExplainPlan());
+        Assert.assertTrue(entry.getBindings().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeThreshold() {
+        new SlowQueryLog(-1, 10, false, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveCapacity() {
+        new SlowQueryLog(1, 0, false, false);
+    }
+
+    @Test
+    public void ringBufferKeepsTheMostRecentFirst() {
+        SlowQueryLog log = new SlowQueryLog(1, 2, false, false);
+        record(log, "q1");
+        Assert.assertEquals(1, log.getEntries().size());
+        record(log, "q2");
+        record(log, "q3");
+        List<SlowQuery> entries = log.getEntries();
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals("q3", entries.get(0).getOperation());
+        Assert.assertEquals("q2", entries.get(1).getOperation());
+        record(log, "q4");
+        Assert.assertEquals("q4", log.getEntries().get(0).getOperation());
+        Assert.assertEquals("q3", log.getEntries().get(1).getOperation());
+    }
+
+    @Test
+    public void thresholdOfOneMillisecond() {
+        SlowQueryLog log = new SlowQueryLog(1, 10, false, false);
+        Assert.assertFalse(log.isSlow(ONE_MILLI - 1));
+        Assert.assertTrue(log.isSlow(ONE_MILLI));
+    }
+
+    @Test
+    public void thresholdZeroDisablesTheLog() {
+        SlowQueryLog log = new SlowQueryLog(0, 10, false, false);
+        Assert.assertFalse(log.isSlow(0));
+        Assert.assertFalse(log.isSlow(Long.MAX_VALUE));
+    }
+
+}
@@ -16,9 +16,24 @@
  */
 package org.everit.osgi.audit.ri.tests;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
@@ -31,12 +46,27 @@ import org.everit.osgi.audit.dto.AuditEventType;
 import org.everit.osgi.audit.dto.EventData;
 import org.everit.osgi.audit.dto.EventDataType;
 import org.everit.osgi.audit.ri.dto.AuditApplication;
+import org.everit.osgi.audit.ri.ext.ArchiveReport;
+import org.everit.osgi.audit.ri.ext.AuditArchiveService;
+import org.everit.osgi.audit.ri.ext.AuditCacheService;
+import org.everit.osgi.audit.ri.ext.AuditMetrics;
+import org.everit.osgi.audit.ri.ext.AuditMetricsService;
+import org.everit.osgi.audit.ri.ext.AuditRetentionService;
+import org.everit.osgi.audit.ri.ext.AuditSearchService;
+import org.everit.osgi.audit.ri.ext.BinaryEventDataService;
+import org.everit.osgi.audit.ri.ext.BulkAuditService;
+import org.everit.osgi.audit.ri.ext.BulkLogResult;
+import org.everit.osgi.audit.ri.ext.EventCounts;
+import org.everit.osgi.audit.ri.ext.EventCursor;
+import org.everit.osgi.audit.ri.ext.EventPage;
+import org.everit.osgi.audit.ri.ext.PurgeReport;
 import org.everit.osgi.audit.ri.schema.qdsl.QApplication;
 import org.everit.osgi.audit.ri.schema.qdsl.QEvent;
 import org.everit.osgi.audit.ri.schema.qdsl.QEventData;
 import org.everit.osgi.audit.ri.schema.qdsl.QEventType;
 import org.everit.osgi.dev.testrunner.TestRunnerConstants;
 import org.everit.osgi.querydsl.support.QuerydslSupport;
+import org.everit.osgi.transaction.helper.api.TransactionHelper;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
@@ -44,6 +74,7 @@ import org.junit.Test;
 import com.mysema.query.QueryException;
 import com.mysema.query.sql.SQLQuery;
 import com.mysema.query.sql.dml.SQLDeleteClause;
+import com.mysema.query.sql.dml.SQLUpdateClause;
 import com.mysema.query.types.ConstructorExpression;
 import com.mysema.query.types.Operator;
 
@@ -52,22 +83,173 @@ import com.mysema.query.types.Operator;
 @Properties({
         @Property(name = TestRunnerConstants.SERVICE_PROPERTY_TESTRUNNER_ENGINE_TYPE, value = "junit4"),
         @Property(name = TestRunnerConstants.SERVICE_PROPERTY_TEST_ID, value = "auditTest"),
-        @Property(name = "auditComponent.target"),
-        @Property(name = "querydslSupport.target")
+        @Property(name = "auditComponent.target", value = AuditComponentTest.AUDIT_COMPONENT_FILTER),
+        @Property(name = "bulkAuditService.target", value = AuditComponentTest.AUDIT_COMPONENT_FILTER),
+        @Property(name = "batchedKeysBulkAuditService.target",
+                value = AuditComponentTest.BATCHED_KEYS_AUDIT_COMPONENT_FILTER),
+        @Property(name = "auditSearchService.target", value = AuditComponentTest.AUDIT_COMPONENT_FILTER),
+        @Property(name = "auditRetentionService.target"),
+        @Property(name = "auditArchiveService.target", value = AuditComponentTest.AUDIT_COMPONENT_FILTER),
+        @Property(name = "auditMetricsService.target", value = AuditComponentTest.AUDIT_COMPONENT_FILTER),
+        @Property(name = "auditCacheService.target", value = AuditComponentTest.AUDIT_COMPONENT_FILTER),
+        @Property(name = "binaryEventDataService.target", value = AuditComponentTest.AUDIT_COMPONENT_FILTER),
+        @Property(name = "querydslSupport.target"),
+        @Property(name = "transactionHelper.target")
 })
 @Service(AuditComponentTest.class)
 public class AuditComponentTest {
 
     private static final String APPNAME = "appname";
 
+    static final String AUDIT_COMPONENT_FILTER =
+            "(service.pid=org.everit.osgi.audit.ri.conf.AuditComponent.61ce232b-d127-4632-8cdc-d1a1fec357ed)";
+
+    /**
+     * The audit component configured with batched generated keys. The H2 driver of the tests returns only the last
+     * generated key of a batch, so this configuration sends one event row per batch.
+     */
+    static final String BATCHED_KEYS_AUDIT_COMPONENT_FILTER =
+            "(service.pid=org.everit.osgi.audit.ri.conf.AuditComponent.9d5c3e7a-2f41-4b8e-a6c1-0e7b3f2d5a94)";
+
     @Reference(bind = "setQuerydslSupport")
     private QuerydslSupport querydslSupport;
 
+    @Reference(bind = "setTransactionHelper")
+    private TransactionHelper transactionHelper;
+
     @Reference(bind = "setAuditComponent")
     private AuditService auditComponent;
 
+    @Reference(bind = "setBulkAuditService")
+    private BulkAuditService bulkAuditService;
+
+    @Reference(bind = "setBatchedKeysBulkAuditService")
+    private BulkAuditService batchedKeysBulkAuditService;
+
+    @Reference(bind = "setAuditSearchService")
+    private AuditSearchService auditSearchService;
+
+    @Reference(bind = "setAuditRetentionService")
+    private AuditRetentionService auditRetentionService;
+
+    @Reference(bind = "setAuditArchiveService")
+    private AuditArchiveService auditArchiveService;
+
+    @Reference(bind = "setAuditMetricsService")
+    private AuditMetricsService auditMetricsService;
+
+    @Reference(bind = "setAuditCacheService")
+    private AuditCacheService auditCacheService;
+
+    @Reference(bind = "setBinaryEventDataService")
+    private BinaryEventDataService binaryEventDataService;
+
+    @Test
+    public void archiveEventsBefore() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        logDefaultEvent();
+        logDefaultEvent();
+        logDefaultEvent();
+        ArchiveReport report = auditArchiveService.archiveEventsBefore(Instant.now().plusSeconds(1));
+        Assert.assertEquals(3, report.getEventCount());
+        Assert.assertEquals(6, report.getEventDataCount());
+        Assert.assertEquals(2, report.getSegmentCount());
+        querydslSupport.execute((connection, configuration) -> {
+            Assert.assertEquals(0, new SQLQuery(connection, configuration).from(QEvent.event).count());
+            return null;
+        });
+        long hotEventId = logDefaultEvent();
+        List<EventUi> actual = auditComponent.findEvents(appIds, null, null, null, null, null, 0, 10);
+        Assert.assertEquals(4, actual.size());
+        Assert.assertEquals(hotEventId, actual.get(0).getId().longValue());
+        Assert.assertEquals("example.org", actual.get(3).getEventData().get("host").getTextValue());
+        Assert.assertEquals(10.75, actual.get(3).getEventData().get("cpuLoad").getNumberValue(), 0.001);
+        Assert.assertEquals(2, auditComponent.findEvents(appIds, null, null, null, null, null, 2, 10).size());
+        List<DataFilter> dataFilters = Arrays.asList(new DataFilter(Operator.EQ, new EventData("host", "other")));
+        Assert.assertEquals(0, auditComponent.findEvents(appIds, null, null, dataFilters, null, null, 0, 10).size());
+        EventPage firstPage = auditSearchService.findEvents(appIds, null, null, null, null, null, null, 3);
+        Assert.assertTrue(firstPage.hasNext());
+        EventPage secondPage = auditSearchService.findEvents(appIds, null, null, null, null, null,
+                firstPage.getNextCursor(), 3);
+        Assert.assertEquals(1, secondPage.getEvents().size());
+        Assert.assertFalse(secondPage.hasNext());
+    }
+
+    @Test
+    public void archivedEventsAreCountedAndLoadedById() {
+        Application app = createDefaultApp();
+        Long[] appIds = new Long[] { app.getApplicationId() };
+        byte[] content = new byte[] { 1, 2, 3 };
+        auditComponent.logEvent(new AuditEvent("upload", APPNAME, new EventData[] {
+                new EventData("fileName", "a.bin"),
+                new EventData("content", content) }));
+        long firstArchivedEventId = logDefaultEvent();
+        long secondArchivedEventId = logDefaultEvent();
+        long binaryEventId = auditComponent.findEvents(appIds, null, null, null, null, null, 0, 10).stream()
+                .filter((event) -> event.getName().equals("upload"))
+                .findFirst().get().getId();
+        auditArchiveService.archiveEventsBefore(Instant.now().plusSeconds(1));
+        long hotEventId = logDefaultEvent();
+
+        EventCounts counts = auditSearchService.countEvents(appIds, null, null, null, null, 0);
+        Assert.assertEquals(4, counts.getTotalCount());
+        Assert.assertEquals(Long.valueOf(4), counts.getCountsByApplicationId().get(app.getApplicationId()));
+        counts = auditSearchService.countEvents(appIds, null, null, null, null, 2);
+        Assert.assertEquals(2, counts.getTotalCount());
+        Assert.assertTrue(counts.isApproximate());
+
+        EventUi archivedEvent = auditComponent.getEventById(firstArchivedEventId, "host");
+        Assert.assertEquals("example.org", archivedEvent.getEventData().get("host").getTextValue());
+        Assert.assertFalse(archivedEvent.getEventData().containsKey("cpuLoad"));
+        List<EventUi> events = auditSearchService.getEventsByIds(new long[] { secondArchivedEventId, hotEventId,
+                -1, firstArchivedEventId });
+        Assert.assertEquals(secondArchivedEventId, events.get(0).getId().longValue());
+        Assert.assertEquals(hotEventId, events.get(1).getId().longValue());
+        Assert.assertNull(events.get(2));
+        Assert.assertEquals(firstArchivedEventId, events.get(3).getId().longValue());
+
+        Assert.assertArrayEquals(content,
+                binaryEventDataService.readBinaryData(binaryEventId, "content", AuditComponentTest::readFully));
+        Assert.assertNull(binaryEventDataService.readBinaryData(binaryEventId, "fileName",
+                AuditComponentTest::readFully));
+    }
+
+    @Test
+    public void archivedEventsAreMergedWithOlderDatabaseEvents() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        logDefaultEvent();
+        logDefaultEvent();
+        auditArchiveService.archiveEventsBefore(Instant.now().plusSeconds(1));
+        long olderEventId = logDefaultEvent();
+        querydslSupport.execute((connection, configuration) -> {
+            QEvent qEvent = QEvent.event;
+            return new SQLUpdateClause(connection, configuration, qEvent)
+                    .set(qEvent.saveTimestamp, Timestamp.from(Instant.now().minusSeconds(3600)))
+                    .where(qEvent.eventId.eq(olderEventId))
+                    .execute();
+        });
+        List<EventUi> events = auditComponent.findEvents(appIds, null, null, null, null, null, 0, 10);
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(olderEventId, events.get(2).getId().longValue());
+        Assert.assertEquals(olderEventId,
+                auditComponent.findEvents(appIds, null, null, null, null, null, 2, 10).get(0).getId().longValue());
+        EventPage firstPage = auditSearchService.findEvents(appIds, null, null, null, null, null, null, 2);
+        Assert.assertTrue(firstPage.hasNext());
+        Assert.assertNotEquals(olderEventId, firstPage.getEvents().get(1).getId().longValue());
+        EventPage secondPage = auditSearchService.findEvents(appIds, null, null, null, null, null,
+                firstPage.getNextCursor(), 2);
+        Assert.assertEquals(1, secondPage.getEvents().size());
+        Assert.assertEquals(olderEventId, secondPage.getEvents().get(0).getId().longValue());
+        Assert.assertFalse(secondPage.hasNext());
+        List<EventUi> streamed = new ArrayList<>();
+        Assert.assertEquals(3, auditSearchService.streamEvents(appIds, null, null, null, null, null, 0,
+                streamed::add));
+        Assert.assertEquals(olderEventId, streamed.get(2).getId().longValue());
+    }
+
     @After
     public void cleanupDatabase() {
+        auditArchiveService.deleteArchivedEventsBefore(Instant.MAX);
         querydslSupport.execute((connection, configuration) -> {
             new SQLDeleteClause(connection, configuration, QEventData.eventData).execute();
             new SQLDeleteClause(connection, configuration, QEvent.event).execute();
@@ -75,6 +257,9 @@ public class AuditComponentTest {
             new SQLDeleteClause(connection, configuration, QApplication.application).execute();
             return null;
         });
+        // the rows were deleted behind the back of the audit component
+        auditCacheService.invalidateAllEventTypes();
+        auditCacheService.invalidateFieldCatalog();
     }
 
     @Test(expected = QueryException.class)
@@ -106,6 +291,46 @@ public class AuditComponentTest {
         });
     }
 
+    @Test
+    public void createApplicationsAfterRolledBackTransaction() {
+        List<Long> rolledBackResourceIds = new ArrayList<>();
+        try {
+            transactionHelper.required(() -> {
+                rolledBackResourceIds.add(auditComponent.createApplication("rolledBackApp").getResourceId());
+                long eventTypeId = auditComponent.getOrCreateEventType("rolledBackApp", "login").getId();
+                rolledBackResourceIds.add(querydslSupport.execute((connection, configuration) -> {
+                    QEventType qEventType = QEventType.eventType;
+                    return new SQLQuery(connection, configuration)
+                            .from(qEventType)
+                            .where(qEventType.eventTypeId.eq(eventTypeId))
+                            .uniqueResult(qEventType.resourceId);
+                }));
+                throw new IllegalStateException("rollback");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("rollback", e.getMessage());
+        }
+        // the reserved block is committed apart from the rolled back transaction, its ids are not handed out again
+        List<Long> resourceIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            resourceIds.add(auditComponent.createApplication("app" + i).getResourceId());
+        }
+        Assert.assertEquals(4, resourceIds.stream().distinct().count());
+        for (Long rolledBackResourceId : rolledBackResourceIds) {
+            Assert.assertFalse(resourceIds.contains(rolledBackResourceId));
+        }
+    }
+
+    @Test
+    public void createApplicationsWithDistinctResourceIds() {
+        List<Application> apps = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            apps.add(auditComponent.createApplication("app" + i));
+        }
+        Assert.assertEquals(4, apps.stream().map(Application::getResourceId).distinct().count());
+    }
+
     private Application createDefaultApp() {
         return auditComponent.createApplication(APPNAME);
     }
@@ -157,15 +382,245 @@ public class AuditComponentTest {
         List<EventUi> actual = auditComponent.findEvents(appIds, eventTypeIds, dataFields, dataFilters,
                 null, null, 0, 100);
         Assert.assertNotNull(actual);
+        Assert.assertEquals(1, actual.size());
+        EventUi result = actual.get(0);
+        Assert.assertEquals("evtType0", result.getName());
+        Assert.assertEquals("aaa", result.getEventData().get("strData").getTextValue());
+        Assert.assertEquals(20.0, result.getEventData().get("intData").getNumberValue(), 0.1);
+    }
+
+    @Test
+    public void findEventsAfterNewFieldType() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] {
+                new EventData("note", "short") }));
+        List<String> dataFields = Arrays.asList("note");
+        Assert.assertEquals(1, auditComponent.findEvents(appIds, null, dataFields, null, null, null, 0, 100).size());
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] {
+                new EventData("note", false, "longtext") }));
+        List<EventUi> actual = auditComponent.findEvents(appIds, null, dataFields, null, null, null, 0, 100);
+        Assert.assertEquals(2, actual.size());
+        Assert.assertTrue(actual.stream()
+                .map((event) -> event.getEventData().get("note"))
+                .anyMatch((note) -> (note.getEventDataType() == EventDataType.TEXT)
+                        && "longtext".equals(note.getTextValue())));
+    }
+
+    @Test
+    public void findEventsFieldTypeUnknownToCatalog() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] {
+                new EventData("note", "short") }));
+        List<String> dataFields = Arrays.asList("note");
+        Assert.assertEquals(1, auditComponent.findEvents(appIds, null, dataFields, null, null, null, 0, 100).size());
+        // the row is rewritten outside of the component, like by another node sharing the database
+        querydslSupport.execute((connection, configuration) -> {
+            QEventData qEventData = QEventData.eventData;
+            return new SQLUpdateClause(connection, configuration, qEventData)
+                    .set(qEventData.eventDataType, EventDataType.TEXT.toString())
+                    .set(qEventData.textValue, "longtext")
+                    .setNull(qEventData.stringValue)
+                    .where(qEventData.eventDataName.eq("note"))
+                    .execute();
+        });
+        EventData note = auditComponent.findEvents(appIds, null, dataFields, null, null, null, 0, 100).get(0)
+                .getEventData().get("note");
+        Assert.assertEquals(EventDataType.TEXT, note.getEventDataType());
+        Assert.assertEquals("longtext", note.getTextValue());
+        note = auditSearchService.findEvents(appIds, null, dataFields, null, null, null, null, 100).getEvents().get(0)
+                .getEventData().get("note");
+        Assert.assertEquals("longtext", note.getTextValue());
+    }
+
+    @Test
+    public void findEventsMixedFieldTypes() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] { new EventData("note", "short"),
+                new EventData("intData", 10) }));
+        auditComponent.logEvent(new AuditEvent("evtType1", APPNAME, new EventData[] {
+                new EventData("note", false, "longtext"), new EventData("strData", "bbb") }));
+        List<EventUi> actual = auditComponent.findEvents(appIds, null, Arrays.asList("note", "intData"), null,
+                null, null, 0, 100);
         Assert.assertEquals(2, actual.size());
-        EventUi firstResult = actual.get(0);
-        Assert.assertEquals("evtType1", firstResult.getName());
-        Assert.assertEquals("bbb", firstResult.getEventData().get("strData").getTextValue());
-        Assert.assertNull(firstResult.getEventData().get("textData"));
-        EventUi secondResult = actual.get(1);
-        Assert.assertEquals("evtType0", secondResult.getName());
-        Assert.assertEquals("aaa", secondResult.getEventData().get("strData").getTextValue());
-        Assert.assertEquals(20.0, secondResult.getEventData().get("intData").getNumberValue(), 0.1);
+        Assert.assertEquals(1, actual.get(0).getEventData().size());
+        Assert.assertEquals(EventDataType.TEXT, actual.get(0).getEventData().get("note").getEventDataType());
+        Assert.assertEquals("longtext", actual.get(0).getEventData().get("note").getTextValue());
+        Assert.assertEquals(2, actual.get(1).getEventData().size());
+        Assert.assertEquals("short", actual.get(1).getEventData().get("note").getTextValue());
+        Assert.assertEquals(10.0, actual.get(1).getEventData().get("intData").getNumberValue(), 0.1);
+    }
+
+    @Test
+    public void findEventsPivoted() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] { new EventData("strData", "aaa"),
+                new EventData("intData", 10), new EventData("textData", false, "longtext") }));
+        auditComponent.logEvent(new AuditEvent("evtType1", APPNAME, new EventData[] {
+                new EventData("strData", "bbb") }));
+        Map<String, EventDataType> dataFields = new LinkedHashMap<>();
+        dataFields.put("strData", EventDataType.STRING);
+        dataFields.put("intData", EventDataType.NUMBER);
+        List<EventUi> actual = auditSearchService.findEventsPivoted(appIds, null, dataFields, null, null, null, 0, 10);
+        Assert.assertEquals(2, actual.size());
+        Assert.assertEquals("evtType1", actual.get(0).getName());
+        Assert.assertEquals(1, actual.get(0).getEventData().size());
+        Assert.assertEquals("bbb", actual.get(0).getEventData().get("strData").getTextValue());
+        Assert.assertEquals(2, actual.get(1).getEventData().size());
+        Assert.assertEquals(10.0, actual.get(1).getEventData().get("intData").getNumberValue(), 0.1);
+    }
+
+    @Test
+    public void findEventsPivotedArchivedEventsByType() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] {
+                new EventData("amount", 10), new EventData("strData", "aaa") }));
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] {
+                new EventData("amount", "ten"), new EventData("strData", "bbb") }));
+        auditArchiveService.archiveEventsBefore(Instant.now().plusSeconds(1));
+        List<EventUi> actual = auditSearchService.findEventsPivoted(appIds, null,
+                Collections.singletonMap("amount", EventDataType.NUMBER), null, null, null, 0, 10);
+        Assert.assertEquals(2, actual.size());
+        int found = 0;
+        for (EventUi event : actual) {
+            Assert.assertFalse(event.getEventData().containsKey("strData"));
+            EventData amount = event.getEventData().get("amount");
+            if (amount != null) {
+                Assert.assertEquals(EventDataType.NUMBER, amount.getEventDataType());
+                Assert.assertEquals(10.0, amount.getNumberValue(), 0.1);
+                found++;
+            }
+        }
+        Assert.assertEquals(1, found);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findEventsPivotedTextField() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        auditSearchService.findEventsPivoted(appIds, null, Collections.singletonMap("textData", EventDataType.TEXT),
+                null, null, null, 0, 10);
+    }
+
+    @Test
+    public void streamEvents() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        for (int i = 0; i < 5; i++) {
+            auditComponent.logEvent(new AuditEvent(i % 2 == 0 ? "evtType0" : "evtType1", APPNAME, new EventData[] {
+                    new EventData("strData", "value" + i), new EventData("intData", i),
+                    new EventData("textData", false, "longtext" + i) }));
+        }
+        List<String> dataFields = Arrays.asList("strData", "intData");
+        List<DataFilter> dataFilters = Arrays.asList(new DataFilter(Operator.GT, new EventData("intData", 0)));
+        List<EventUi> expected = auditComponent.findEvents(appIds, null, dataFields, dataFilters, null, null, 0, 100);
+        List<EventUi> actual = new ArrayList<>();
+        // a fetch size of 1 makes the rows of one event arrive in separate fetches
+        long count = auditSearchService.streamEvents(appIds, null, dataFields, dataFilters, null, null, 1,
+                actual::add);
+        Assert.assertEquals(4, expected.size());
+        Assert.assertEquals(expected.size(), count);
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            EventUi expectedEvent = expected.get(i);
+            EventUi actualEvent = actual.get(i);
+            Assert.assertEquals(expectedEvent.getId(), actualEvent.getId());
+            Assert.assertEquals(expectedEvent.getName(), actualEvent.getName());
+            Assert.assertEquals(2, actualEvent.getEventData().size());
+            Assert.assertEquals(expectedEvent.getEventData().get("strData").getTextValue(),
+                    actualEvent.getEventData().get("strData").getTextValue());
+            Assert.assertEquals(expectedEvent.getEventData().get("intData").getNumberValue(),
+                    actualEvent.getEventData().get("intData").getNumberValue(), 0.001);
+        }
+        Assert.assertEquals("value4", actual.get(0).getEventData().get("strData").getTextValue());
+    }
+
+    @Test
+    public void streamEventsConsumerRunsInTransaction() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        logDefaultEvent();
+        try {
+            auditSearchService.streamEvents(appIds, null, null, null, null, null, 1, (event) -> {
+                // joins the transaction of the search, so it is rolled back with it
+                auditComponent.createApplication("createdByConsumer");
+                throw new IllegalStateException("rollback");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("rollback", e.getMessage());
+        }
+        Assert.assertNull(auditComponent.findApplicationByName("createdByConsumer"));
+    }
+
+    @Test
+    public void findEventsWithoutFilter() {
+        Application app = createDefaultApp();
+        Long[] appIds = new Long[] { app.getApplicationId() };
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] { new EventData("strData", "aaa"),
+                new EventData("intData", 10) }));
+        auditComponent.logEvent(new AuditEvent("evtType1", APPNAME, new EventData[] { new EventData("strData", "bbb"),
+                new EventData("textData", false, "longtext") }));
+        List<EventUi> actual = auditComponent.findEvents(appIds, null, Arrays.asList("strData"), null,
+                null, null, 0, 100);
+        Assert.assertEquals(2, actual.size());
+        Assert.assertEquals("evtType1", actual.get(0).getName());
+        Assert.assertEquals(1, actual.get(0).getEventData().size());
+        Assert.assertEquals("evtType0", actual.get(1).getName());
+        Assert.assertEquals(1, actual.get(1).getEventData().size());
+    }
+
+    @Test
+    public void countEvents() {
+        Application app = createDefaultApp();
+        Long[] appIds = new Long[] { app.getApplicationId() };
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] { new EventData("intData", 10) }));
+        auditComponent.logEvent(new AuditEvent("evtType0", APPNAME, new EventData[] { new EventData("intData", 20) }));
+        auditComponent.logEvent(new AuditEvent("evtType1", APPNAME, new EventData[] { new EventData("intData", 20) }));
+        long evtType0Id = auditComponent.getEventTypeByNameForApplication(app.getApplicationId(), "evtType0").getId();
+        EventCounts counts = auditSearchService.countEvents(appIds, null, null, null, null, 0);
+        Assert.assertEquals(3, counts.getTotalCount());
+        Assert.assertFalse(counts.isApproximate());
+        Assert.assertEquals(Long.valueOf(3), counts.getCountsByApplicationId().get(app.getApplicationId()));
+        Assert.assertEquals(Long.valueOf(2), counts.getCountsByEventTypeId().get(evtType0Id));
+        DataFilter filter = new DataFilter(Operator.EQ, new EventData("intData", 20));
+        counts = auditSearchService.countEvents(appIds, null, Arrays.asList(filter), null, null, 0);
+        Assert.assertEquals(2, counts.getTotalCount());
+        Assert.assertEquals(Long.valueOf(1), counts.getCountsByEventTypeId().get(evtType0Id));
+        counts = auditSearchService.countEvents(appIds, null, null, null, null, 2);
+        Assert.assertEquals(2, counts.getTotalCount());
+        Assert.assertTrue(counts.isApproximate());
+        counts = auditSearchService.countEvents(appIds, null, null, null, null, 3);
+        Assert.assertEquals(3, counts.getTotalCount());
+        Assert.assertFalse(counts.isApproximate());
+    }
+
+    @Test
+    public void findEventsByCursor() {
+        Application app = createDefaultApp();
+        Long[] appIds = new Long[] { app.getApplicationId() };
+        logDefaultEvent();
+        logDefaultEvent();
+        logDefaultEvent();
+        EventPage firstPage = auditSearchService.findEvents(appIds, null, null, null, null, null, null, 2);
+        Assert.assertEquals(2, firstPage.getEvents().size());
+        Assert.assertTrue(firstPage.hasNext());
+        EventPage secondPage = auditSearchService.findEvents(appIds, null, null, null, null, null,
+                EventCursor.fromToken(firstPage.getNextCursor().toToken()), 2);
+        Assert.assertEquals(1, secondPage.getEvents().size());
+        Assert.assertFalse(secondPage.hasNext());
+        Assert.assertNotEquals(firstPage.getEvents().get(1).getId(), secondPage.getEvents().get(0).getId());
+    }
+
+    @Test
+    public void findEventsBySaveTimestampRange() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        long eventId = logDefaultEvent();
+        Instant saveTimestamp = auditComponent.getEventById(eventId).getSaveTimeStamp();
+        Assert.assertEquals(0, auditComponent.findEvents(appIds, null, null, null,
+                saveTimestamp, null, 0, 10).size());
+        Assert.assertEquals(0, auditComponent.findEvents(appIds, null, null, null,
+                null, saveTimestamp, 0, 10).size());
+        Assert.assertEquals(1, auditComponent.findEvents(appIds, null, null, null,
+                saveTimestamp, saveTimestamp, 0, 10).size());
+        Assert.assertEquals(1, auditComponent.findEvents(appIds, null, null, null,
+                saveTimestamp.minusMillis(1), null, 0, 10).size());
     }
 
     @Test
@@ -231,6 +686,41 @@ public class AuditComponentTest {
         Assert.assertNull(auditComponent.getEventById(-1));
     }
 
+    @Test
+    public void getMetrics() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        auditMetricsService.resetMetrics();
+        logDefaultEvent();
+        logDefaultEvent();
+        auditComponent.findEvents(appIds, null, null, null, null, null, 0, 100);
+        AuditMetrics metrics = auditMetricsService.getMetrics();
+        Assert.assertEquals(2, metrics.getLogEventCount());
+        Assert.assertEquals(2, metrics.getLogEventLatency().getCount());
+        Assert.assertEquals(4, metrics.getEventDataRowCount());
+        Assert.assertEquals(2.0, metrics.getEventDataRowsPerEvent(), 0.01);
+        Assert.assertEquals(1, metrics.getSearchCount());
+        Assert.assertEquals(2, metrics.getEventsReturned());
+        Assert.assertEquals(4, metrics.getRowsRead());
+    }
+
+    @Test
+    public void getEventsByIds() {
+        createDefaultApp();
+        long firstEventId = logDefaultEvent();
+        long secondEventId = logDefaultEvent();
+        long thirdEventId = logDefaultEvent();
+        List<EventUi> actual = auditSearchService.getEventsByIds(
+                new long[] { thirdEventId, -1, firstEventId, secondEventId, thirdEventId }, "host");
+        Assert.assertEquals(5, actual.size());
+        Assert.assertEquals(thirdEventId, actual.get(0).getId().longValue());
+        Assert.assertNull(actual.get(1));
+        Assert.assertEquals(firstEventId, actual.get(2).getId().longValue());
+        Assert.assertEquals(secondEventId, actual.get(3).getId().longValue());
+        Assert.assertEquals(thirdEventId, actual.get(4).getId().longValue());
+        Assert.assertEquals(1, actual.get(2).getEventData().size());
+        Assert.assertEquals("example.org", actual.get(2).getEventData().get("host").getTextValue());
+    }
+
     @Test
     public void getEventType() {
         createDefaultApp();
@@ -261,6 +751,47 @@ public class AuditComponentTest {
         Assert.assertEquals("login", actual.getName());
     }
 
+    @Test
+    public void getEventTypeAfterRolledBackTransaction() {
+        createDefaultApp();
+        try {
+            transactionHelper.required(() -> {
+                auditComponent.getOrCreateEventType(APPNAME, "login");
+                throw new IllegalStateException("rollback");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("rollback", e.getMessage());
+        }
+        long eventId = logDefaultEvent();
+        Assert.assertEquals("login", auditComponent.getEventById(eventId).getName());
+    }
+
+    @Test
+    public void getEventTypeOfApplicationInSameTransaction() {
+        transactionHelper.required(() -> {
+            auditComponent.createApplication(APPNAME);
+            auditComponent.logEvent(new AuditEvent("login", APPNAME, new EventData[0]));
+            return null;
+        });
+        Assert.assertEquals(0, auditCacheService.getEventTypeCacheStatistics().getSize());
+        try {
+            transactionHelper.required(() -> {
+                auditComponent.createApplication("rolledBackApp");
+                auditComponent.getOrCreateEventType("rolledBackApp", "login");
+                throw new IllegalStateException("rollback");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("rollback", e.getMessage());
+        }
+        Assert.assertEquals(0, auditCacheService.getEventTypeCacheStatistics().getSize());
+        Assert.assertNull(auditComponent.findApplicationByName("rolledBackApp"));
+        logDefaultEvent();
+        Assert.assertEquals(1, auditComponent.getEventTypesByApplication(
+                auditComponent.findApplicationByName(APPNAME).getApplicationId()).size());
+    }
+
     @Test
     public void getEventTypesByApplication() {
         Application app = auditComponent.createApplication(APPNAME);
@@ -280,6 +811,62 @@ public class AuditComponentTest {
         Assert.assertEquals(newApp.getApplicationId(), existingApp.getApplicationId());
     }
 
+    @Test
+    public void getOrCreateApplicationConcurrently() throws Exception {
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Application>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    // every caller has its own transaction, the waiters must get a committed application
+                    return transactionHelper.required(() -> auditComponent.getOrCreateApplication(APPNAME));
+                }));
+            }
+            start.countDown();
+            long applicationId = results.get(0).get().getApplicationId();
+            for (Future<Application> result : results) {
+                Assert.assertEquals(applicationId, result.get().getApplicationId().longValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, auditComponent.getApplications().size());
+    }
+
+    @Test
+    public void getOrCreateApplicationInRolledBackTransaction() {
+        try {
+            transactionHelper.required(() -> {
+                auditComponent.getOrCreateApplication(APPNAME);
+                throw new IllegalStateException("rollback");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("rollback", e.getMessage());
+        }
+        // created and committed in its own transaction, so it could be shared with the concurrent callers
+        Assert.assertNotNull(auditComponent.findApplicationByName(APPNAME));
+    }
+
+    @Test
+    public void getOrCreateApplicationInSameTransaction() {
+        try {
+            transactionHelper.required(() -> {
+                Application app = auditComponent.createApplication(APPNAME);
+                Assert.assertEquals(app.getApplicationId(),
+                        auditComponent.getOrCreateApplication(APPNAME).getApplicationId());
+                throw new IllegalStateException("rollback");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("rollback", e.getMessage());
+        }
+        Assert.assertNull(auditComponent.findApplicationByName(APPNAME));
+    }
+
     @Test(expected = NullPointerException.class)
     public void getOrCreateApplicationNullName() {
         auditComponent.getOrCreateApplication(null);
@@ -310,6 +897,90 @@ public class AuditComponentTest {
         auditComponent.getOrCreateEventTypesForApplication(APPNAME, null);
     }
 
+    @Test
+    public void getOrCreateEventTypeConcurrently() throws Exception {
+        createDefaultApp();
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<EventType>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return auditComponent.getOrCreateEventType(APPNAME, "concurrentType");
+                }));
+            }
+            start.countDown();
+            long eventTypeId = results.get(0).get().getId();
+            for (Future<EventType> result : results) {
+                Assert.assertEquals(eventTypeId, result.get().getId().longValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, auditComponent.getEventTypesByApplication(
+                auditComponent.findApplicationByName(APPNAME).getApplicationId()).size());
+    }
+
+    @Test
+    public void getOrCreateEventTypesForAppConcurrently() throws Exception {
+        createDefaultApp();
+        String[] eventTypeNames = new String[] { "addComment", "balanceUpdate", "viewProduct" };
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<EventType[]>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    // the losers of the concurrent batch inserts must not leave their own transaction rollback-only
+                    return transactionHelper.required(() -> {
+                        EventType[] eventTypes = auditComponent.getOrCreateEventTypesForApplication(APPNAME,
+                                eventTypeNames);
+                        auditComponent.logEvent(new AuditEvent("addComment", APPNAME, new EventData[0]));
+                        return eventTypes;
+                    });
+                }));
+            }
+            start.countDown();
+            EventType[] expected = results.get(0).get();
+            for (Future<EventType[]> result : results) {
+                EventType[] actual = result.get();
+                for (int i = 0; i < eventTypeNames.length; i++) {
+                    Assert.assertEquals(expected[i].getId(), actual[i].getId());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(eventTypeNames.length, auditComponent.getEventTypesByApplication(
+                auditComponent.findApplicationByName(APPNAME).getApplicationId()).size());
+        querydslSupport.execute((connection, configuration) -> {
+            Assert.assertEquals(threadCount, new SQLQuery(connection, configuration).from(QEvent.event).count());
+            return null;
+        });
+    }
+
+    @Test
+    public void getOrCreateEventTypesForAppInRolledBackTransaction() {
+        createDefaultApp();
+        try {
+            transactionHelper.required(() -> {
+                auditComponent.getOrCreateEventTypesForApplication(APPNAME, new String[] { "login", "logout" });
+                throw new IllegalStateException("rollback");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("rollback", e.getMessage());
+        }
+        // created and committed in a new transaction, so they could be cached
+        Assert.assertEquals(2, auditCacheService.getEventTypeCacheStatistics().getSize());
+        Assert.assertEquals(2, auditComponent.getEventTypesByApplication(
+                auditComponent.findApplicationByName(APPNAME).getApplicationId()).size());
+    }
+
     @Test
     public void getOrCreateEventTypesForAppSuccess() {
         Application app = auditComponent.createApplication(APPNAME);
@@ -321,6 +992,21 @@ public class AuditComponentTest {
         Assert.assertEquals(5, actual.size());
     }
 
+    @Test
+    public void getOrCreateEventTypesForAppKeepsOrder() {
+        createDefaultApp();
+        EventType login = auditComponent.getOrCreateEventType(APPNAME, "login");
+        EventType[] actual = auditComponent.getOrCreateEventTypesForApplication(APPNAME, new String[] { "logout",
+                "login", "viewProduct", "logout" });
+        Assert.assertEquals(4, actual.length);
+        Assert.assertEquals("logout", actual[0].getName());
+        Assert.assertEquals(login.getId(), actual[1].getId());
+        Assert.assertEquals("viewProduct", actual[2].getName());
+        Assert.assertEquals(actual[0].getId(), actual[3].getId());
+        Assert.assertEquals(actual[2].getId(),
+                auditComponent.getOrCreateEventType(APPNAME, "viewProduct").getId());
+    }
+
     private long logDefaultEvent() {
         EventData[] eventDataArray = new EventData[] {
                 new EventData("host", "example.org"),
@@ -358,6 +1044,151 @@ public class AuditComponentTest {
         });
     }
 
+    @Test
+    public void logEventAllDataTypes() {
+        createDefaultApp();
+        Instant timestamp = Instant.parse("2015-01-02T03:04:05Z");
+        auditComponent.logEvent(new AuditEvent("login", APPNAME, new EventData[] {
+                new EventData("numberData", 10.75),
+                new EventData("stringData", "aaa"),
+                new EventData("textData", false, "longtext"),
+                new EventData("binaryData", new byte[] { 1, 2, 3 }),
+                new EventData("timestampData", timestamp) }));
+        querydslSupport.execute((connection, configuration) -> {
+            QEventData qEventData = QEventData.eventData;
+            Assert.assertEquals(5, new SQLQuery(connection, configuration).from(qEventData).count());
+            Assert.assertEquals(10.75, new SQLQuery(connection, configuration).from(qEventData)
+                    .where(qEventData.eventDataName.eq("numberData"), qEventData.stringValue.isNull(),
+                            qEventData.textValue.isNull(), qEventData.binaryValue.isNull(),
+                            qEventData.timestampValue.isNull())
+                    .uniqueResult(qEventData.numberValue), 0.001);
+            Assert.assertEquals("aaa", new SQLQuery(connection, configuration).from(qEventData)
+                    .where(qEventData.eventDataName.eq("stringData"), qEventData.numberValue.isNull(),
+                            qEventData.textValue.isNull(), qEventData.binaryValue.isNull(),
+                            qEventData.timestampValue.isNull())
+                    .uniqueResult(qEventData.stringValue));
+            Assert.assertEquals("longtext", new SQLQuery(connection, configuration).from(qEventData)
+                    .where(qEventData.eventDataName.eq("textData"), qEventData.numberValue.isNull(),
+                            qEventData.stringValue.isNull(), qEventData.binaryValue.isNull(),
+                            qEventData.timestampValue.isNull())
+                    .uniqueResult(qEventData.textValue));
+            Assert.assertEquals(1, new SQLQuery(connection, configuration).from(qEventData)
+                    .where(qEventData.eventDataName.eq("binaryData"), qEventData.binaryValue.isNotNull(),
+                            qEventData.numberValue.isNull(), qEventData.stringValue.isNull(),
+                            qEventData.textValue.isNull(), qEventData.timestampValue.isNull())
+                    .count());
+            Assert.assertEquals(timestamp, new SQLQuery(connection, configuration).from(qEventData)
+                    .where(qEventData.eventDataName.eq("timestampData"), qEventData.numberValue.isNull(),
+                            qEventData.stringValue.isNull(), qEventData.textValue.isNull(),
+                            qEventData.binaryValue.isNull())
+                    .uniqueResult(qEventData.timestampValue).toInstant());
+            return null;
+        });
+    }
+
+    @Test
+    public void logEventWithBinaryStreams() {
+        Application app = createDefaultApp();
+        byte[] content = new byte[10000];
+        Arrays.fill(content, (byte) 7);
+        Map<String, InputStream> binaryData = new LinkedHashMap<>();
+        binaryData.put("content", new ByteArrayInputStream(content));
+        binaryEventDataService.logEvent(new AuditEvent("upload", APPNAME, new EventData[] {
+                new EventData("fileName", "a.bin") }), binaryData);
+        List<EventUi> events = auditComponent.findEvents(new Long[] { app.getApplicationId() }, null, null, null,
+                null, null, 0, 10);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("a.bin", events.get(0).getEventData().get("fileName").getTextValue());
+        Assert.assertArrayEquals(content, events.get(0).getEventData().get("content").getBinaryValue());
+    }
+
+    @Test
+    public void logEventWithFailingBinaryStream() {
+        Application app = createDefaultApp();
+        InputStream failing = new InputStream() {
+
+            private int remaining = 100;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining == 0) {
+                    throw new IOException("connection reset");
+                }
+                remaining--;
+                return 1;
+            }
+        };
+        Map<String, InputStream> binaryData = new LinkedHashMap<>();
+        binaryData.put("content", failing);
+        try {
+            binaryEventDataService.logEvent(new AuditEvent("upload", APPNAME, new EventData[] {
+                    new EventData("fileName", "a.bin") }), binaryData);
+            Assert.fail("the failure of the stream must fail the logging of the event");
+        } catch (RuntimeException e) {
+            // expected, the event must not be persisted partially
+        }
+        Assert.assertEquals(0, auditComponent.findEvents(new Long[] { app.getApplicationId() }, null, null, null,
+                null, null, 0, 10).size());
+        querydslSupport.execute((connection, configuration) -> {
+            Assert.assertEquals(0, new SQLQuery(connection, configuration).from(QEventData.eventData).count());
+            return null;
+        });
+    }
+
+    @Test
+    public void logEvents() {
+        createDefaultApp();
+        List<AuditEvent> events = Arrays.asList(
+                new AuditEvent("login", APPNAME, new EventData[] { new EventData("host", "example.org"),
+                        new EventData("cpuLoad", 10.75) }),
+                new AuditEvent("logout", APPNAME, new EventData[] { new EventData("host", "example.org") }),
+                new AuditEvent("login", APPNAME, new EventData[] {}));
+        BulkLogResult result = bulkAuditService.logEvents(events);
+        Assert.assertEquals(3, result.getEventCount());
+        Assert.assertEquals(3, result.getEventDataCount());
+        Assert.assertEquals(2, result.getEventTypeCount());
+        querydslSupport.execute((connection, configuration) -> {
+            Assert.assertEquals(3, new SQLQuery(connection, configuration).from(QEvent.event).count());
+            Assert.assertEquals(3, new SQLQuery(connection, configuration).from(QEventData.eventData).count());
+            return null;
+        });
+    }
+
+    @Test
+    public void logEventsWithBatchedGeneratedKeys() {
+        createDefaultApp();
+        List<AuditEvent> events = Arrays.asList(
+                new AuditEvent("login", APPNAME, new EventData[] { new EventData("host", "example.org"),
+                        new EventData("cpuLoad", 10.75) }),
+                new AuditEvent("logout", APPNAME, new EventData[] { new EventData("host", "example.org") }));
+        BulkLogResult result = batchedKeysBulkAuditService.logEvents(events);
+        Assert.assertEquals(2, result.getEventCount());
+        Assert.assertEquals(3, result.getEventDataCount());
+        querydslSupport.execute((connection, configuration) -> {
+            QEvent qEvent = QEvent.event;
+            QEventData qEventData = QEventData.eventData;
+            QEventType qEventType = QEventType.eventType;
+            Assert.assertEquals(2, new SQLQuery(connection, configuration)
+                    .from(qEventData)
+                    .innerJoin(qEvent).on(qEvent.eventId.eq(qEventData.eventId))
+                    .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+                    .where(qEventType.name.eq("login"))
+                    .count());
+            Assert.assertEquals(1, new SQLQuery(connection, configuration)
+                    .from(qEventData)
+                    .innerJoin(qEvent).on(qEvent.eventId.eq(qEventData.eventId))
+                    .innerJoin(qEventType).on(qEventType.eventTypeId.eq(qEvent.eventTypeId))
+                    .where(qEventType.name.eq("logout"))
+                    .count());
+            return null;
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void logEventsMissingApplication() {
+        bulkAuditService.logEvents(Arrays.asList(new AuditEvent("login", APPNAME, new EventData[] {})));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void logEventMissingApplication() {
         EventData[] eventDataArray = new EventData[] {};
@@ -370,6 +1201,47 @@ public class AuditComponentTest {
         Assert.assertNull(auditComponent.findApplicationByName("nonexistent"));
     }
 
+    @Test
+    public void purgeEventsBefore() {
+        Long[] appIds = new Long[] { createDefaultApp().getApplicationId() };
+        logDefaultEvent();
+        logDefaultEvent();
+        logDefaultEvent();
+        auditComponent.logEvent(new AuditEvent("logout", APPNAME, new EventData[0]));
+        PurgeReport report = auditRetentionService.purgeEventsBefore(APPNAME, "login", Instant.now().plusSeconds(1));
+        Assert.assertEquals(3, report.getEventCount());
+        Assert.assertEquals(6, report.getEventDataCount());
+        Assert.assertEquals(2, report.getChunkCount());
+        List<EventUi> remaining = auditComponent.findEvents(appIds, null, null, null, null, null, 0, 10);
+        Assert.assertEquals(1, remaining.size());
+        Assert.assertEquals("logout", remaining.get(0).getName());
+        report = auditRetentionService.purgeEventsBefore(APPNAME, null, Instant.now().minusSeconds(3600));
+        Assert.assertEquals(0, report.getEventCount());
+    }
+
+    @Test
+    public void readBinaryData() {
+        Application app = createDefaultApp();
+        Long[] appIds = new Long[] { app.getApplicationId() };
+        byte[] content = new byte[] { 1, 2, 3, 4, 5 };
+        auditComponent.logEvent(new AuditEvent("upload", APPNAME, new EventData[] {
+                new EventData("fileName", "a.bin"),
+                new EventData("content", content) }));
+        List<EventUi> events = auditComponent.findEvents(appIds, null, null, null, null, null, 0, 10);
+        Assert.assertEquals(1, events.size());
+        Assert.assertArrayEquals(content, events.get(0).getEventData().get("content").getBinaryValue());
+        long eventId = events.get(0).getId();
+        Assert.assertArrayEquals(content,
+                auditComponent.getEventById(eventId).getEventData().get("content").getBinaryValue());
+        EventData lazyContent = auditSearchService.findEvents(appIds, null, null, null, null, null, null, 10)
+                .getEvents().get(0).getEventData().get("content");
+        Assert.assertEquals(EventDataType.BINARY, lazyContent.getEventDataType());
+        Assert.assertNull(lazyContent.getBinaryValue());
+        Assert.assertArrayEquals(content,
+                binaryEventDataService.readBinaryData(eventId, "content", AuditComponentTest::readFully));
+        Assert.assertNull(binaryEventDataService.readBinaryData(eventId, "fileName", AuditComponentTest::readFully));
+    }
+
     @Test
     public void readEventAllDataFields() {
         createDefaultApp();
@@ -421,14 +1293,64 @@ public class AuditComponentTest {
         Assert.assertEquals(EventDataType.STRING, hostData.getEventDataType());
     }
 
+    private static byte[] readFully(final InputStream in) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public void setAuditArchiveService(final AuditArchiveService auditArchiveService) {
+        this.auditArchiveService = auditArchiveService;
+    }
+
+    public void setAuditCacheService(final AuditCacheService auditCacheService) {
+        this.auditCacheService = auditCacheService;
+    }
+
     public void setAuditComponent(final AuditService auditComponent) {
         this.auditComponent = auditComponent;
     }
 
+    public void setAuditMetricsService(final AuditMetricsService auditMetricsService) {
+        this.auditMetricsService = auditMetricsService;
+    }
+
+    public void setAuditRetentionService(final AuditRetentionService auditRetentionService) {
+        this.auditRetentionService = auditRetentionService;
+    }
+
+    public void setAuditSearchService(final AuditSearchService auditSearchService) {
+        this.auditSearchService = auditSearchService;
+    }
+
+    public void setBatchedKeysBulkAuditService(final BulkAuditService batchedKeysBulkAuditService) {
+        this.batchedKeysBulkAuditService = batchedKeysBulkAuditService;
+    }
+
+    public void setBinaryEventDataService(final BinaryEventDataService binaryEventDataService) {
+        this.binaryEventDataService = binaryEventDataService;
+    }
+
+    public void setBulkAuditService(final BulkAuditService bulkAuditService) {
+        this.bulkAuditService = bulkAuditService;
+    }
+
     public void setQuerydslSupport(final QuerydslSupport querydslSupport) {
         this.querydslSupport = querydslSupport;
     }
 
+    public void setTransactionHelper(final TransactionHelper transactionHelper) {
+        this.transactionHelper = transactionHelper;
+    }
+
     @Test
     public void testGetApplication() {
         createAuditApplication();